@@ -0,0 +1,72 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import university.*;
+
+/**
+ * Runs a semester-shaped {@link Workload} against a new university
+ * and prints the statistics of each phase.
+ *
+ * Arguments are {@code name=value} pairs, e.g.
+ * {@code java LoadTest seed=7 students=1000000 threads=8}; accepted names:
+ * seed, students, courses, perStudent, zipf, drop, exams, queries,
+ * threads, waitlist (FIFO or SENIORITY), log (true to keep the activity log).
+ */
+public class LoadTest {
+
+	public static void main(String[] args) throws InterruptedException {
+		long seed = 42;
+		for (String arg : args) {
+			if (arg.startsWith("seed=")) {
+				seed = Long.parseLong(arg.substring(5));
+			}
+		}
+		Workload workload = new Workload(seed);
+		University poli = new University("Politecnico di Torino");
+		boolean log = false;
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (eq < 0) {
+				throw new IllegalArgumentException("Expected name=value: " + arg);
+			}
+			String value = arg.substring(eq + 1);
+			switch (arg.substring(0, eq)) {
+			case "seed": break;	// the workload is created with it
+			case "students": workload.setStudents(Integer.parseInt(value)); break;
+			case "courses": workload.setCourses(Integer.parseInt(value)); break;
+			case "perStudent": workload.setCoursesPerStudent(Integer.parseInt(value)); break;
+			case "zipf": workload.setZipfExponent(Double.parseDouble(value)); break;
+			case "drop": workload.setDropRate(Double.parseDouble(value)); break;
+			case "exams": workload.setExamRate(Double.parseDouble(value)); break;
+			case "queries": workload.setReportQueries(Integer.parseInt(value)); break;
+			case "threads": workload.setThreads(Integer.parseInt(value)); break;
+			case "waitlist": poli.setWaitlistPriority(Waitlist.Priority.valueOf(value)); break;
+			case "log": log = Boolean.parseBoolean(value); break;
+			default: throw new IllegalArgumentException("Unknown argument: " + arg);
+			}
+		}
+		if (!log) {
+			Logger.getLogger("University").setLevel(Level.WARNING);
+		}
+
+		// full courses are expected, don't flood the console
+		PrintStream err = System.err;
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+		WorkloadReport report;
+		try {
+			report = workload.run(poli);
+		} finally {
+			System.setErr(err);
+		}
+		System.out.print(report);
+		System.out.println("Rejections:");
+		MetricsSnapshot metrics = poli.metrics();
+		for (Rejection cause : Rejection.values()) {
+			if (metrics.getRejected(cause) > 0) {
+				System.out.println("  " + cause + ": " + metrics.getRejected(cause));
+			}
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package university;
+
+/**
+ * Kinds of activity logged by the {@link University}.
+ *
+ * Each activity knows how to format its log message from the
+ * parameters of the operation, so that formatting can be deferred
+ * until the message is actually written.
+ */
+public enum Activity {
+	/** a student has been enrolled: id, first name, last name */
+	ENROLL("enroll") {
+		@Override
+		String format(int id, int unused1, int unused2, String firstName, String lastName) {
+			return "New student enrolled: " + id + ", " + firstName + " " + lastName;
+		}
+	},
+	/** a course has been activated: code, title, teacher */
+	ACTIVATE("activate") {
+		@Override
+		String format(int code, int unused1, int unused2, String title, String teacher) {
+			return "New course activated: " + code + ", " + title + " " + teacher;
+		}
+	},
+	/** a student signed up for a course: student id, course code */
+	REGISTER("register") {
+		@Override
+		String format(int studentId, int courseCode, int unused, String unused1, String unused2) {
+			return "Student " + studentId + " signed up for course " + courseCode;
+		}
+	},
+	/** a student has been put on the waitlist of a full course: student id, course code */
+	WAITLIST("register") {
+		@Override
+		String format(int studentId, int courseCode, int unused, String unused1, String unused2) {
+			return "Student " + studentId + " added to the waitlist of course " + courseCode;
+		}
+	},
+	/** a student left a course: student id, course code */
+	DEREGISTER("deregister") {
+		@Override
+		String format(int studentId, int courseCode, int unused, String unused1, String unused2) {
+			return "Student " + studentId + " withdrew from course " + courseCode;
+		}
+	},
+	/** a student took an exam: student id, course code, grade */
+	EXAM("exam") {
+		@Override
+		String format(int studentId, int courseCode, int grade, String unused1, String unused2) {
+			return "Student " + studentId + " took an exam in course " + courseCode + " with grade " + grade;
+		}
+	};
+
+	private final String method;
+
+	Activity(String method) {
+		this.method = method;
+	}
+
+	/**
+	 * @return name of the {@link University} method performing the activity
+	 */
+	String getMethod() {
+		return method;
+	}
+
+	/**
+	 * Formats the log message for the activity
+	 */
+	abstract String format(int n1, int n2, int n3, String s1, String s2);
+}
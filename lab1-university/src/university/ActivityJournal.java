@@ -0,0 +1,257 @@
+package university;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Asynchronous writer of the activity log of a {@link University}.
+ *
+ * Activities are stored, still unformatted, in a bounded ring buffer
+ * of preallocated slots and a background thread formats and writes
+ * them to the logger, in the same order and with the same messages
+ * that would be logged synchronously.
+ *
+ * When the buffer is full the behavior depends on the {@link Overflow}
+ * policy chosen when creating the journal.
+ */
+public class ActivityJournal implements AutoCloseable {
+
+	/**
+	 * Behavior when an activity is recorded while the buffer is full
+	 */
+	public enum Overflow {
+		/** wait until there is room in the buffer */
+		BLOCK,
+		/** discard the activity */
+		DROP,
+		/** discard the activities, except one out of every sample rate which waits */
+		SAMPLE
+	}
+
+	/** default sample rate for the {@link Overflow#SAMPLE} policy */
+	public static final int DEFAULT_SAMPLE_RATE = 10;
+
+	private static final String SOURCE_CLASS = University.class.getName();
+
+	/** an activity waiting to be logged */
+	private static class Slot {
+		Activity activity;
+		int n1, n2, n3;
+		String s1, s2;
+
+		void copy(Slot other) {
+			activity = other.activity;
+			n1 = other.n1;
+			n2 = other.n2;
+			n3 = other.n3;
+			s1 = other.s1;
+			s2 = other.s2;
+		}
+	}
+
+	private final Logger logger;
+	private final Overflow overflow;
+	private final int sampleRate;
+
+	private final Slot[] ring;
+	private long head;		// next slot to be drained
+	private long tail;		// next slot to be filled
+	private long written;	// activities written to the logger
+	private long dropped;
+	private long overflowed;
+	private boolean closed;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final Condition drained = lock.newCondition();
+
+	private final Thread writer;
+
+	/**
+	 * Creates a journal writing to {@link University#logger}
+	 *
+	 * @param capacity number of activities the buffer can hold
+	 * @param overflow behavior when the buffer is full
+	 */
+	public ActivityJournal(int capacity, Overflow overflow) {
+		this(University.logger, capacity, overflow, DEFAULT_SAMPLE_RATE);
+	}
+
+	/**
+	 * Creates a journal
+	 *
+	 * @param logger the logger receiving the messages
+	 * @param capacity number of activities the buffer can hold
+	 * @param overflow behavior when the buffer is full
+	 * @param sampleRate for the {@link Overflow#SAMPLE} policy,
+	 * 			one activity out of every {@code sampleRate} is kept
+	 */
+	public ActivityJournal(Logger logger, int capacity, Overflow overflow, int sampleRate) {
+		if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+		if (sampleRate < 1) throw new IllegalArgumentException("sample rate must be positive");
+		this.logger = logger;
+		this.overflow = overflow;
+		this.sampleRate = sampleRate;
+		ring = new Slot[capacity];
+		for (int i = 0; i < capacity; i++) {
+			ring[i] = new Slot();
+		}
+		writer = new Thread(this::drain, "university-activity-journal");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Records an activity to be logged.
+	 *
+	 * If the journal has been closed the activity is logged
+	 * synchronously by the calling thread.
+	 */
+	void record(Activity activity, int n1, int n2, int n3, String s1, String s2) {
+		lock.lock();
+		try {
+			while (!closed && tail - head == ring.length) {
+				if (overflow == Overflow.DROP
+						|| (overflow == Overflow.SAMPLE && ++overflowed % sampleRate != 0)) {
+					dropped++;
+					return;
+				}
+				try {
+					notFull.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					dropped++;
+					return;
+				}
+			}
+			if (!closed) {
+				Slot slot = ring[(int)(tail % ring.length)];
+				slot.activity = activity;
+				slot.n1 = n1;
+				slot.n2 = n2;
+				slot.n3 = n3;
+				slot.s1 = s1;
+				slot.s2 = s2;
+				tail++;
+				notEmpty.signal();
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+		write(activity, n1, n2, n3, s1, s2);
+	}
+
+	private void write(Activity activity, int n1, int n2, int n3, String s1, String s2) {
+		logger.logp(Level.INFO, SOURCE_CLASS, activity.getMethod(), activity.format(n1, n2, n3, s1, s2));
+	}
+
+	/**
+	 * Body of the background thread: moves the pending activities
+	 * out of the ring, so that producers can go on, then formats
+	 * and writes them.
+	 */
+	private void drain() {
+		Slot[] batch = new Slot[ring.length];
+		for (int i = 0; i < batch.length; i++) {
+			batch[i] = new Slot();
+		}
+		while (true) {
+			int count;
+			lock.lock();
+			try {
+				while (head == tail && !closed) {
+					notEmpty.awaitUninterruptibly();
+				}
+				if (head == tail) {
+					return;
+				}
+				count = (int)(tail - head);
+				for (int i = 0; i < count; i++) {
+					Slot slot = ring[(int)(head % ring.length)];
+					batch[i].copy(slot);
+					slot.s1 = slot.s2 = null;
+					head++;
+				}
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+
+			for (int i = 0; i < count; i++) {
+				Slot s = batch[i];
+				try {
+					write(s.activity, s.n1, s.n2, s.n3, s.s1, s.s2);
+				} catch (RuntimeException e) {
+					// a faulty handler must not stop the journal
+				}
+				s.s1 = s.s2 = null;
+			}
+
+			lock.lock();
+			try {
+				written += count;
+				drained.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Waits until all the activities recorded so far have been logged
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void flush() throws InterruptedException {
+		lock.lock();
+		try {
+			long target = tail;
+			while (written < target) {
+				drained.await();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of activities discarded because the buffer was full
+	 */
+	public long getDropped() {
+		lock.lock();
+		try {
+			return dropped;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Logs the pending activities and stops the background thread.
+	 *
+	 * Activities recorded afterwards are logged synchronously.
+	 * If the calling thread is interrupted while waiting for the
+	 * background thread, it returns with its interrupt status set
+	 * and the pending activities are still logged in background.
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signal();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package university;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads data into a {@link University} from a line-delimited file.
+ *
+ * Each line is a comma separated row whose first field is the operation:
+ * <pre>
+ * enroll,FIRST_NAME,LAST_NAME
+ * activate,COURSE_TITLE,TEACHER
+ * register,STUDENT_ID,COURSE_CODE
+ * exam,STUDENT_ID,COURSE_CODE,GRADE
+ * </pre>
+ * Operation names are case insensitive, fields are trimmed,
+ * blank lines and lines starting with {@code #} are ignored.
+ * Rows are applied in file order, so they may refer to students
+ * and courses defined earlier in the same file.
+ *
+ * Before loading, the file is scanned once through a memory mapping
+ * to count the new students and courses, so that the registries
+ * are grown only once.
+ */
+class BulkLoader {
+
+	static final int BUFFER_SIZE = 1 << 20;
+
+	private final University university;
+	private final int[] commas = new int[4];
+
+	BulkLoader(University university) {
+		this.university = university;
+	}
+
+	ImportReport load(Path file) throws IOException {
+		long start = System.nanoTime();
+		presize(file);
+
+		ImportReport report = new ImportReport();
+		try (BufferedReader in = new BufferedReader(
+				new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			String line;
+			int lineNumber = 0;
+			while ((line = in.readLine()) != null) {
+				lineNumber++;
+				if (line.isBlank() || line.startsWith("#")) {
+					continue;
+				}
+				Rejection rejection = apply(line);
+				if (rejection == null) {
+					report.accept();
+				} else {
+					report.reject(lineNumber, rejection);
+				}
+			}
+		}
+		report.setElapsedNanos(System.nanoTime() - start);
+		return report;
+	}
+
+	/**
+	 * Counts the enroll and activate rows and reserves room for them;
+	 * leading spaces are skipped as when the rows are applied.
+	 */
+	private void presize(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size == 0 || size > Integer.MAX_VALUE) {
+				return;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			int students = 0;
+			int courses = 0;
+			boolean lineStart = true;
+			for (int i = 0; i < size; i++) {
+				byte b = buffer.get(i);
+				if (lineStart && (b == ' ' || b == '\t')) {
+					continue;	// still before the operation
+				}
+				if (lineStart && i + 1 < size) {
+					byte next = buffer.get(i + 1);
+					if ((b == 'e' || b == 'E') && (next == 'n' || next == 'N')) students++;
+					else if (b == 'a' || b == 'A') courses++;
+				}
+				lineStart = b == '\n';
+			}
+			university.reserve(students, courses);
+		}
+	}
+
+	private Rejection apply(String line) {
+		int fields = splitFields(line, commas);
+		int typeEnd = fields > 1 ? commas[0] : line.length();
+		try {
+			if (isOperation(line, typeEnd, "enroll") && fields == 3) {
+				university.addStudent(field(line, commas, 1), field(line, commas, 2));
+				return null;
+			}
+			if (isOperation(line, typeEnd, "activate") && fields == 3) {
+				university.addCourse(field(line, commas, 1), field(line, commas, 2));
+				return null;
+			}
+			if (isOperation(line, typeEnd, "register") && fields == 3) {
+				return university.addRegistration(intField(line, commas, 1), intField(line, commas, 2));
+			}
+			if (isOperation(line, typeEnd, "exam") && fields == 4) {
+				return university.addExam(intField(line, commas, 1), intField(line, commas, 2),
+											intField(line, commas, 3));
+			}
+		} catch (NumberFormatException e) {
+			return Rejection.MALFORMED;
+		}
+		return Rejection.MALFORMED;
+	}
+
+	/**
+	 * Finds the positions of the commas in a line,
+	 * the positions past the last comma are set to the end of the line.
+	 *
+	 * @return the number of fields, or more than the
+	 * 			size of the array if there are too many
+	 */
+	private static int splitFields(String line, int[] commas) {
+		int count = 0;
+		int from = 0;
+		int comma;
+		while ((comma = line.indexOf(',', from)) >= 0) {
+			if (count == commas.length) {
+				return commas.length + 2;
+			}
+			commas[count++] = comma;
+			from = comma + 1;
+		}
+		for (int i = count; i < commas.length; i++) {
+			commas[i] = line.length();
+		}
+		return count + 1;
+	}
+
+	private static boolean isOperation(String line, int end, String operation) {
+		int begin = skipSpaces(line, 0, end);
+		end = trimSpaces(line, begin, end);
+		return end - begin == operation.length() && line.regionMatches(true, begin, operation, 0, end - begin);
+	}
+
+	private static String field(String line, int[] commas, int i) {
+		int end = fieldEnd(line, commas, i);
+		int begin = skipSpaces(line, commas[i - 1] + 1, end);
+		end = trimSpaces(line, begin, end);
+		return line.substring(begin, end);
+	}
+
+	private static int intField(String line, int[] commas, int i) {
+		int end = fieldEnd(line, commas, i);
+		int begin = skipSpaces(line, commas[i - 1] + 1, end);
+		end = trimSpaces(line, begin, end);
+		return Integer.parseInt(line, begin, end, 10);
+	}
+
+	private static int fieldEnd(String line, int[] commas, int i) {
+		return i < commas.length ? commas[i] : line.length();
+	}
+
+	private static int skipSpaces(String line, int begin, int end) {
+		while (begin < end && Character.isWhitespace(line.charAt(begin))) begin++;
+		return begin;
+	}
+
+	private static int trimSpaces(String line, int begin, int end) {
+		while (end > begin && Character.isWhitespace(line.charAt(end - 1))) end--;
+		return end;
+	}
+}
@@ -0,0 +1,211 @@
+package university;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Publishes the changes of a {@link University} to any number of
+ * {@link Flow.Subscriber subscribers}, in batches.
+ *
+ * Operations store their events in a bounded ring buffer, without
+ * ever waiting: if the buffer is full the events are dropped.
+ * A background thread moves the pending events, up to a maximum
+ * batch size, into lists that are offered to the subscribers through
+ * a {@link SubmissionPublisher}. Each subscriber has a bounded buffer
+ * of batches and receives them as it requests them; the batches that
+ * do not fit in the buffer of a slow subscriber are dropped for
+ * that subscriber only.
+ *
+ * Events are numbered in the order they are published, so that a
+ * subscriber can tell from a gap in the numbers that it missed some.
+ * Changes to the same student or course are published in the order
+ * they are made.
+ */
+public class ChangeFeed implements Flow.Publisher<List<UniversityEvent>>, AutoCloseable {
+
+	/** default maximum number of events in a batch */
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	private final UniversityEvent[] ring;
+	private final int batchSize;
+	private long head;		// next event to be dispatched
+	private long tail;		// next event to be stored
+	private long sequence;	// last event published
+	private long dropped;
+	private boolean closed;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+
+	private final SubmissionPublisher<List<UniversityEvent>> publisher;
+	private final Thread dispatcher;
+
+	/**
+	 * Creates a feed delivering through the common fork/join pool
+	 *
+	 * @param capacity number of events the buffer can hold
+	 */
+	public ChangeFeed(int capacity) {
+		this(capacity, DEFAULT_BATCH_SIZE, Flow.defaultBufferSize(), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a feed
+	 *
+	 * @param capacity number of events the buffer can hold
+	 * @param batchSize maximum number of events in a batch
+	 * @param subscriberBuffer number of batches each subscriber can have pending
+	 * @param executor runs the delivery to the subscribers
+	 */
+	public ChangeFeed(int capacity, int batchSize, int subscriberBuffer, Executor executor) {
+		if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+		if (batchSize < 1) throw new IllegalArgumentException("batch size must be positive");
+		this.ring = new UniversityEvent[capacity];
+		this.batchSize = batchSize;
+		this.publisher = new SubmissionPublisher<>(executor, subscriberBuffer);
+		dispatcher = new Thread(this::dispatch, "university-change-feed");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super List<UniversityEvent>> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+
+	/**
+	 * @return number of current subscribers
+	 */
+	public int getSubscriberCount() {
+		return publisher.getNumberOfSubscribers();
+	}
+
+	void enrolled(int studentId) {
+		publish(UniversityEvent.Type.ENROLLED, studentId, 0, -1, null);
+	}
+
+	void registered(int studentId, int courseCode) {
+		publish(UniversityEvent.Type.REGISTERED, studentId, courseCode, -1, null);
+	}
+
+	void deregistered(int studentId, int courseCode) {
+		publish(UniversityEvent.Type.DEREGISTERED, studentId, courseCode, -1, null);
+	}
+
+	void examined(int studentId, int courseCode, int grade) {
+		publish(UniversityEvent.Type.EXAM_RECORDED, studentId, courseCode, grade, null);
+	}
+
+	void rejected(int studentId, int courseCode, Rejection cause) {
+		publish(UniversityEvent.Type.CAPACITY_REJECTED, studentId, courseCode, -1, cause);
+	}
+
+	private void publish(UniversityEvent.Type type, int studentId, int courseCode, int grade, Rejection cause) {
+		if (!publisher.hasSubscribers()) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			sequence++;
+			if (tail - head == ring.length) {
+				dropped++;
+				return;
+			}
+			ring[(int)(tail % ring.length)] = new UniversityEvent(sequence, type, studentId, courseCode, grade, cause);
+			tail++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Body of the background thread: takes the pending events
+	 * in batches and offers them to the subscribers.
+	 */
+	private void dispatch() {
+		while (true) {
+			List<UniversityEvent> batch;
+			lock.lock();
+			try {
+				while (head == tail && !closed) {
+					notEmpty.awaitUninterruptibly();
+				}
+				if (head == tail) {
+					break;
+				}
+				int count = (int)Math.min(tail - head, batchSize);
+				batch = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					int slot = (int)(head % ring.length);
+					batch.add(ring[slot]);
+					ring[slot] = null;
+					head++;
+				}
+			} finally {
+				lock.unlock();
+			}
+			publisher.offer(batch, (subscriber, lost) -> {
+				countDropped(lost.size());
+				return false;
+			});
+		}
+		publisher.close();
+	}
+
+	private void countDropped(int count) {
+		lock.lock();
+		try {
+			dropped += count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of events not delivered, either because the buffer
+	 * 			of the feed was full or, for each subscriber, because the
+	 * 			subscriber's buffer was full
+	 */
+	public long getDropped() {
+		lock.lock();
+		try {
+			return dropped;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Offers the pending events to the subscribers, then completes them.
+	 *
+	 * Changes made afterwards are not published.
+	 * If the calling thread is interrupted while waiting for the
+	 * dispatcher, it returns with its interrupt status set and the
+	 * pending events are still offered in background.
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			dispatcher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
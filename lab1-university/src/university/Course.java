@@ -1,26 +1,36 @@
 package university;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Course {
 
-       private String title;
-       private String teacher;
-       private int id;
-       public List<String> studentEnrolled = new ArrayList<>();
-       public List<String> studentsGrade = new ArrayList<>();
+       private final String title;
+       private final String teacher;
+       private final int id;
+       public final IdColumn studentIds = new IdColumn();
+       public final IdSet attendeeSet = new IdSet();
+       public final GradeColumns studentsGrade = new GradeColumns();
+       final History history = new History();
+       Waitlist waitlist;	// created by the first student put on hold
+       final long version;
        public int currentEnrolled; 
 
        public Course(String title,String teacher,int id){
+              this(title, teacher, id, 0);
+       }
+
+       Course(String title, String teacher, int id, long version) {
               this.title = title;
               this.teacher = teacher;
               this.id = id;
+              this.version = version;
        }
 
        public String getInfo(){
               return title + " " + teacher + id;
        }
+       /** appends {@link #getInfo()} without building it */
+       void appendInfo(StringBuilder out) {
+              out.append(title).append(' ').append(teacher).append(id);
+       }
        public  String getTitle(){
               return title;
        }
@@ -0,0 +1,244 @@
+package university;
+
+import java.util.Arrays;
+
+/**
+ * Grades recorded for a student or for a course.
+ *
+ * Each grade is stored as a pair of primitive columns: the key
+ * (the course code for a student, the student id for a course)
+ * and the grade itself (0-30).
+ * The columns grow by doubling their capacity.
+ * The running sum and sum of squares of the grades are kept
+ * up to date, so that average and standard deviation are
+ * available in constant time.
+ *
+ * A histogram with one bucket per grade is kept up to date too,
+ * so that distribution, percentiles and mode take {@link #BUCKETS} steps.
+ * Its counts are bytes until one of them overflows, since most
+ * students take only a few exams.
+ */
+public class GradeColumns {
+
+	/** number of buckets of the histograms, one per grade (0-30) */
+	public static final int BUCKETS = 31;
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private int[] keys;
+	private byte[] grades;
+	private int size;
+	private long sum;
+	private long sumOfSquares;
+	private byte[] smallCounts;	// histogram, until a count exceeds a byte
+	private int[] counts;
+
+	public GradeColumns() {
+		keys = new int[INITIAL_CAPACITY];
+		grades = new byte[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Records a new grade
+	 *
+	 * @param key the course code or the student id
+	 * @param grade the grade (0-30)
+	 */
+	public void add(int key, int grade) {
+		if (size == keys.length) {
+			int capacity = size * 2;
+			keys = Arrays.copyOf(keys, capacity);
+			grades = Arrays.copyOf(grades, capacity);
+		}
+		keys[size] = key;
+		grades[size] = (byte)grade;
+		size++;
+		sum += grade;
+		sumOfSquares += (long)grade * grade;
+		count(grade);
+	}
+
+	private void count(int grade) {
+		if (counts != null) {
+			counts[grade]++;
+		} else if (smallCounts == null) {
+			smallCounts = new byte[BUCKETS];
+			smallCounts[grade] = 1;
+		} else if (smallCounts[grade] < Byte.MAX_VALUE) {
+			smallCounts[grade]++;
+		} else {
+			counts = new int[BUCKETS];
+			for (int g = 0; g < BUCKETS; g++) {
+				counts[g] = smallCounts[g];
+			}
+			counts[grade]++;
+			smallCounts = null;
+		}
+	}
+
+	/**
+	 * Makes room for at least the given number of grades
+	 *
+	 * @param capacity number of grades
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > keys.length) {
+			keys = Arrays.copyOf(keys, capacity);
+			grades = Arrays.copyOf(grades, capacity);
+		}
+	}
+
+	/**
+	 * @return number of recorded grades
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i position of the grade
+	 * @return the key (course code or student id) of the i-th grade
+	 */
+	public int key(int i) {
+		return keys[i];
+	}
+
+	/**
+	 * @param i position of the grade
+	 * @return the i-th grade
+	 */
+	public int grade(int i) {
+		return grades[i];
+	}
+
+	/**
+	 * @return the sum of all the recorded grades
+	 */
+	public long sum() {
+		return sum;
+	}
+
+	/**
+	 * @return the average of the recorded grades,
+	 * 			or {@code NaN} if no grade was recorded
+	 */
+	public double average() {
+		if (size == 0) return Double.NaN;
+		return (double)sum / size;
+	}
+
+	/**
+	 * @return the (population) standard deviation of the recorded grades,
+	 * 			or {@code NaN} if no grade was recorded
+	 */
+	public double stdDev() {
+		if (size == 0) return Double.NaN;
+		double mean = (double)sum / size;
+		double variance = (double)sumOfSquares / size - mean * mean;
+		return Math.sqrt(Math.max(variance, 0.0));
+	}
+
+	/**
+	 * @return the number of recorded grades for each grade (0-30)
+	 */
+	public int[] histogram() {
+		int[] histogram = new int[BUCKETS];
+		addTo(histogram);
+		return histogram;
+	}
+
+	/**
+	 * Adds the counts of the recorded grades to a histogram
+	 *
+	 * @param histogram the histogram, with {@link #BUCKETS} buckets
+	 */
+	public void addTo(int[] histogram) {
+		if (counts != null) {
+			for (int g = 0; g < BUCKETS; g++) histogram[g] += counts[g];
+		} else if (smallCounts != null) {
+			for (int g = 0; g < BUCKETS; g++) histogram[g] += smallCounts[g];
+		}
+	}
+
+	/**
+	 * Computes a percentile of a histogram with the nearest-rank method:
+	 * the smallest grade such that at least {@code p} percent
+	 * of the grades are lower or equal.
+	 *
+	 * @param histogram the number of grades for each grade
+	 * @param p the percentile (0-100)
+	 * @return the grade, or -1 if the histogram is empty
+	 */
+	public static int percentile(int[] histogram, double p) {
+		if (!(p >= 0 && p <= 100)) {
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		}
+		long total = total(histogram);
+		if (total == 0) {
+			return -1;
+		}
+		return atRank(histogram, Math.max(1, (long)Math.ceil(p / 100 * total)));
+	}
+
+	/**
+	 * @param histogram the number of grades for each grade
+	 * @return the median grade (the mean of the two middle ones
+	 * 			if the number of grades is even), or {@code NaN}
+	 * 			if the histogram is empty
+	 */
+	public static double median(int[] histogram) {
+		long total = total(histogram);
+		if (total == 0) {
+			return Double.NaN;
+		}
+		return (atRank(histogram, (total + 1) / 2) + atRank(histogram, total / 2 + 1)) / 2.0;
+	}
+
+	/**
+	 * @param histogram the number of grades for each grade
+	 * @return the most frequent grade (the highest one in case of ties),
+	 * 			or -1 if the histogram is empty
+	 */
+	public static int mode(int[] histogram) {
+		int mode = -1;
+		for (int g = 0; g < histogram.length; g++) {
+			if (histogram[g] > 0 && (mode < 0 || histogram[g] >= histogram[mode])) {
+				mode = g;
+			}
+		}
+		return mode;
+	}
+
+	private static long total(int[] histogram) {
+		long total = 0;
+		for (int count : histogram) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @return the grade at the given (1-based) rank
+	 */
+	private static int atRank(int[] histogram, long rank) {
+		long seen = 0;
+		for (int g = 0; g < histogram.length; g++) {
+			seen += histogram[g];
+			if (seen >= rank) {
+				return g;
+			}
+		}
+		return histogram.length - 1;
+	}
+
+	/**
+	 * Estimates the heap space taken by the columns and the histogram,
+	 * including the unused capacity and the array headers.
+	 *
+	 * @return size in bytes
+	 */
+	public long footprint() {
+		long histogram = counts != null ? 16 + 4 * BUCKETS : smallCounts != null ? 16 + BUCKETS : 0;
+		return 2 * 16 + 4L * keys.length + grades.length + histogram;
+	}
+}
@@ -0,0 +1,190 @@
+package university;
+
+/**
+ * Recent registrations, deregistrations and exams of a student
+ * or of a course, each stamped with the version of the change
+ * that recorded it (see {@link Versions}).
+ *
+ * The history is an undo log: the lists of the student or course hold
+ * the current state and a view at an older version undoes the entries
+ * newer than its version, starting from the most recent one.
+ * Only the changes newer than the horizon (the version of the oldest
+ * open view) are recorded, and the older entries are dropped, so that
+ * the history is empty as long as no view is open.
+ *
+ * The history is written and read under the lock of its owner.
+ */
+class History {
+
+	/** grade of the entries recording a registration */
+	static final byte REGISTERED = -1;
+	/** grade of the entries recording a deregistration */
+	static final byte DEREGISTERED = -2;
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	// allocated by the first entry, since most histories stay empty
+	private int[] keys;
+	private byte[] grades;
+	/** position of the deregistered key in the list of the owner */
+	private int[] positions;
+	private long[] versions;
+	/** entries from first to size - 1 are live */
+	private int first;
+	private int size;
+
+	/**
+	 * Records a registration, appended to the list of the owner
+	 *
+	 * @param key the course code or the student id
+	 * @param version version of the change
+	 * @param horizon version of the oldest open view
+	 */
+	void registered(int key, long version, long horizon) {
+		add(key, REGISTERED, 0, version, horizon);
+	}
+
+	/**
+	 * Records a deregistration
+	 *
+	 * @param key the course code or the student id
+	 * @param position position the key had in the list of the owner
+	 * @param version version of the change
+	 * @param horizon version of the oldest open view
+	 */
+	void deregistered(int key, int position, long version, long horizon) {
+		add(key, DEREGISTERED, position, version, horizon);
+	}
+
+	/**
+	 * Records an exam
+	 *
+	 * @param key the course code or the student id
+	 * @param grade the grade (0-30)
+	 * @param version version of the change
+	 * @param horizon version of the oldest open view
+	 */
+	void examined(int key, int grade, long version, long horizon) {
+		add(key, (byte)grade, 0, version, horizon);
+	}
+
+	private void add(int key, byte grade, int position, long version, long horizon) {
+		prune(horizon);
+		if (version <= horizon) {
+			return;	// no open view can need it
+		}
+		if (keys == null) {
+			keys = new int[INITIAL_CAPACITY];
+			grades = new byte[INITIAL_CAPACITY];
+			positions = new int[INITIAL_CAPACITY];
+			versions = new long[INITIAL_CAPACITY];
+		} else if (size == keys.length) {
+			int live = size - first;
+			int capacity = live * 2 > keys.length ? keys.length * 2 : keys.length;
+			keys = move(keys, capacity);
+			grades = move(grades, capacity);
+			positions = move(positions, capacity);
+			versions = move(versions, capacity);
+			first = 0;
+			size = live;
+		}
+		keys[size] = key;
+		grades[size] = grade;
+		positions[size] = position;
+		versions[size] = version;
+		size++;
+	}
+
+	private int[] move(int[] column, int capacity) {
+		int[] moved = capacity == column.length ? column : new int[capacity];
+		System.arraycopy(column, first, moved, 0, size - first);
+		return moved;
+	}
+
+	private byte[] move(byte[] column, int capacity) {
+		byte[] moved = capacity == column.length ? column : new byte[capacity];
+		System.arraycopy(column, first, moved, 0, size - first);
+		return moved;
+	}
+
+	private long[] move(long[] column, int capacity) {
+		long[] moved = capacity == column.length ? column : new long[capacity];
+		System.arraycopy(column, first, moved, 0, size - first);
+		return moved;
+	}
+
+	/**
+	 * Drops the entries no open view needs
+	 */
+	private void prune(long horizon) {
+		if (first == size || versions[first] > horizon) {
+			return;
+		}
+		first = newerThan(horizon);
+		if (first == size) {
+			first = size = 0;
+			if (keys.length > INITIAL_CAPACITY * 4) {
+				keys = null;	// release the columns of a burst of changes
+				grades = null;
+				positions = null;
+				versions = null;
+			}
+		}
+	}
+
+	/**
+	 * @param version a version
+	 * @return index of the oldest entry newer than the version;
+	 * 			entries from it to {@link #size()} - 1 are to be undone
+	 */
+	int newerThan(long version) {
+		int low = first;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (versions[middle] <= version) low = middle + 1;
+			else high = middle - 1;
+		}
+		return low;
+	}
+
+	/** @return index past the last entry */
+	int size() {
+		return size;
+	}
+
+	/** @return number of entries kept */
+	int entries() {
+		return size - first;
+	}
+
+	/** @return the key (course code or student id) of the i-th entry */
+	int key(int i) {
+		return keys[i];
+	}
+
+	/** @return whether the i-th entry records a registration */
+	boolean isRegistration(int i) {
+		return grades[i] == REGISTERED;
+	}
+
+	/** @return whether the i-th entry records a deregistration */
+	boolean isDeregistration(int i) {
+		return grades[i] == DEREGISTERED;
+	}
+
+	/** @return whether the i-th entry records an exam */
+	boolean isExam(int i) {
+		return grades[i] >= 0;
+	}
+
+	/** @return the grade of the i-th entry, if it records an exam */
+	int grade(int i) {
+		return grades[i];
+	}
+
+	/** @return the position of the key of the i-th entry, if it records a deregistration */
+	int position(int i) {
+		return positions[i];
+	}
+}
@@ -0,0 +1,71 @@
+package university;
+
+import java.util.Arrays;
+
+/**
+ * Growable column of ids (student ids or course codes),
+ * kept in insertion order.
+ */
+public class IdColumn {
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private int[] ids = new int[INITIAL_CAPACITY];
+	private int size;
+
+	/**
+	 * Appends an id to the column
+	 *
+	 * @param id the id
+	 */
+	public void add(int id) {
+		if (size == ids.length) {
+			ids = Arrays.copyOf(ids, size * 2);
+		}
+		ids[size++] = id;
+	}
+
+	/**
+	 * @param i position in the column
+	 * @return the i-th id
+	 */
+	public int get(int i) {
+		return ids[i];
+	}
+
+	/**
+	 * @param id the id
+	 * @return position of the first occurrence of the id, -1 if not in the column
+	 */
+	public int indexOf(int id) {
+		for (int i = 0; i < size; i++) {
+			if (ids[i] == id) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes the first occurrence of an id, shifting the following ones
+	 *
+	 * @param id the id
+	 * @return {@code false} if the id was not in the column
+	 */
+	public boolean remove(int id) {
+		int i = indexOf(id);
+		if (i < 0) {
+			return false;
+		}
+		System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+		size--;
+		return true;
+	}
+
+	/**
+	 * @return number of ids in the column
+	 */
+	public int size() {
+		return size;
+	}
+}
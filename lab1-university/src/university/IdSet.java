@@ -0,0 +1,252 @@
+package university;
+
+import java.util.Arrays;
+
+/**
+ * Set of ids (student ids or course codes), kept as a sorted array.
+ *
+ * This is the "array container" of compressed bitmaps: for sets of a few
+ * hundred elements, like the attendees of a course, it takes less memory
+ * than a bitmap over the whole id range and it is as fast to intersect.
+ * The static methods implement the set operations on sorted arrays.
+ *
+ * Changes must be made by one thread at a time, but the array is
+ * replaced rather than modified, so that readers can use it without
+ * locking the set and without copying it (see {@link #view()}).
+ */
+public class IdSet {
+
+	private static final int[] EMPTY = new int[0];
+
+	private volatile int[] ids = EMPTY;
+
+	/**
+	 * Adds an id to the set
+	 *
+	 * @param id the id
+	 * @return {@code false} if the id was already in the set
+	 */
+	public boolean add(int id) {
+		int[] current = ids;
+		int at = Arrays.binarySearch(current, id);
+		if (at >= 0) {
+			return false;
+		}
+		at = -at - 1;
+		int[] next = new int[current.length + 1];
+		System.arraycopy(current, 0, next, 0, at);
+		next[at] = id;
+		System.arraycopy(current, at, next, at + 1, current.length - at);
+		ids = next;
+		return true;
+	}
+
+	/**
+	 * Removes an id from the set
+	 *
+	 * @param id the id
+	 * @return {@code false} if the id was not in the set
+	 */
+	public boolean remove(int id) {
+		int[] current = ids;
+		int at = Arrays.binarySearch(current, id);
+		if (at < 0) {
+			return false;
+		}
+		int[] next = new int[current.length - 1];
+		System.arraycopy(current, 0, next, 0, at);
+		System.arraycopy(current, at + 1, next, at, next.length - at);
+		ids = next;
+		return true;
+	}
+
+	/**
+	 * @param id the id
+	 * @return whether the id is in the set
+	 */
+	public boolean contains(int id) {
+		return Arrays.binarySearch(ids, id) >= 0;
+	}
+
+	/**
+	 * @return number of ids in the set
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * @return the ids in increasing order
+	 */
+	public int[] toArray() {
+		return ids.clone();
+	}
+
+	/**
+	 * @return the ids in increasing order, shared with the set:
+	 * 			later changes do not affect it, and it must not be modified
+	 */
+	int[] view() {
+		return ids;
+	}
+
+	/**
+	 * @return ids in both sorted arrays
+	 */
+	static int[] intersection(int[] a, int[] b) {
+		int[] result = new int[Math.min(a.length, b.length)];
+		int n = 0;
+		for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+			if (a[i] < b[j]) i++;
+			else if (a[i] > b[j]) j++;
+			else {
+				result[n++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * @return number of ids of the first sorted array in all the others
+	 */
+	static int intersectionSize(int[] a, int[][] others) {
+		int n = 0;
+		for (int id : a) {
+			if (containedInAll(id, others)) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @return ids of the first sorted array not in any of the others
+	 */
+	static int[] difference(int[] a, int[][] others) {
+		int[] result = new int[a.length];
+		int n = 0;
+		for (int id : a) {
+			if (!containedInAny(id, others)) {
+				result[n++] = id;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * @return number of ids of the first sorted array not in any of the others
+	 */
+	static int differenceSize(int[] a, int[][] others) {
+		int n = 0;
+		for (int id : a) {
+			if (!containedInAny(id, others)) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private static boolean containedInAll(int id, int[][] sets) {
+		for (int[] set : sets) {
+			if (Arrays.binarySearch(set, id) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean containedInAny(int id, int[][] sets) {
+		for (int[] set : sets) {
+			if (Arrays.binarySearch(set, id) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return ids in any of the sorted arrays, in increasing order
+	 */
+	static int[] union(int[][] sets) {
+		int total = 0;
+		for (int[] set : sets) {
+			total += set.length;
+		}
+		int[] result = new int[total];
+		int n = merge(sets, result);
+		return n == total ? result : Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * @return number of distinct ids in the sorted arrays
+	 */
+	static int unionSize(int[][] sets) {
+		return merge(sets, null);
+	}
+
+	/**
+	 * Merges sorted arrays, taking each time the smallest next id
+	 * from a heap of the arrays not yet exhausted, so that the cost
+	 * depends on the sizes of the arrays and not on the ids they hold.
+	 *
+	 * @param result receives the distinct ids in increasing order;
+	 * 			{@code null} to count them only
+	 * @return number of distinct ids
+	 */
+	private static int merge(int[][] sets, int[] result) {
+		int[] heap = new int[sets.length];	// arrays by their next id
+		int[] next = new int[sets.length];	// position of the next id of each array
+		int size = 0;
+		for (int i = 0; i < sets.length; i++) {
+			if (sets[i].length > 0) {
+				heap[size++] = i;
+			}
+		}
+		for (int i = size / 2 - 1; i >= 0; i--) {
+			siftDown(sets, next, heap, size, i);
+		}
+		int n = 0;
+		int last = 0;
+		while (size > 0) {
+			int top = heap[0];
+			int id = sets[top][next[top]];
+			if (n == 0 || id != last) {
+				if (result != null) {
+					result[n] = id;
+				}
+				n++;
+				last = id;
+			}
+			if (++next[top] == sets[top].length && --size > 0) {
+				heap[0] = heap[size];
+			}
+			if (size > 0) {
+				siftDown(sets, next, heap, size, 0);
+			}
+		}
+		return n;
+	}
+
+	private static void siftDown(int[][] sets, int[] next, int[] heap, int size, int at) {
+		int moving = heap[at];
+		int id = head(sets, next, moving);
+		while (2 * at + 1 < size) {
+			int child = 2 * at + 1;
+			if (child + 1 < size && head(sets, next, heap[child + 1]) < head(sets, next, heap[child])) {
+				child++;
+			}
+			if (head(sets, next, heap[child]) >= id) {
+				break;
+			}
+			heap[at] = heap[child];
+			at = child;
+		}
+		heap[at] = moving;
+	}
+
+	private static int head(int[][] sets, int[] next, int set) {
+		return sets[set][next[set]];
+	}
+}
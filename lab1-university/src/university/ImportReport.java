@@ -0,0 +1,118 @@
+package university;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk import performed through {@link University#importFile}.
+ *
+ * It reports how many rows have been read and accepted, the number of
+ * rejected rows by cause, and the throughput of the import.
+ * The first {@value #MAX_DETAILED} rejected rows are also reported
+ * individually with their line number.
+ */
+public class ImportReport {
+
+	/** maximum number of rejected rows reported individually */
+	public static final int MAX_DETAILED = 1000;
+
+	/**
+	 * A row that has been rejected
+	 */
+	public static class RejectedRow {
+		private final int line;
+		private final Rejection cause;
+
+		RejectedRow(int line, Rejection cause) {
+			this.line = line;
+			this.cause = cause;
+		}
+
+		/** @return line number of the row, starting from 1 */
+		public int getLine() {
+			return line;
+		}
+
+		/** @return the cause of the rejection */
+		public Rejection getCause() {
+			return cause;
+		}
+
+		@Override
+		public String toString() {
+			return "line " + line + ": " + cause;
+		}
+	}
+
+	private int rows;
+	private int accepted;
+	private final Map<Rejection,Integer> rejectedByCause = new EnumMap<>(Rejection.class);
+	private final List<RejectedRow> rejectedRows = new ArrayList<>();
+	private long elapsedNanos;
+
+	void accept() {
+		rows++;
+		accepted++;
+	}
+
+	void reject(int line, Rejection cause) {
+		rows++;
+		rejectedByCause.merge(cause, 1, Integer::sum);
+		if (rejectedRows.size() < MAX_DETAILED) {
+			rejectedRows.add(new RejectedRow(line, cause));
+		}
+	}
+
+	void setElapsedNanos(long elapsedNanos) {
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/** @return number of rows read, excluding blank and comment lines */
+	public int getRows() {
+		return rows;
+	}
+
+	/** @return number of rows successfully applied */
+	public int getAccepted() {
+		return accepted;
+	}
+
+	/** @return number of rejected rows */
+	public int getRejected() {
+		return rows - accepted;
+	}
+
+	/**
+	 * @param cause a rejection cause
+	 * @return number of rows rejected for the given cause
+	 */
+	public int getRejected(Rejection cause) {
+		return rejectedByCause.getOrDefault(cause, 0);
+	}
+
+	/** @return the first rejected rows, in file order */
+	public List<RejectedRow> getRejectedRows() {
+		return Collections.unmodifiableList(rejectedRows);
+	}
+
+	/** @return duration of the import in milliseconds */
+	public long getElapsedMillis() {
+		return elapsedNanos / 1_000_000;
+	}
+
+	/** @return number of rows processed per second */
+	public double getRowsPerSecond() {
+		if (elapsedNanos == 0) return 0;
+		return rows * 1e9 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return rows + " rows, " + accepted + " accepted, " + getRejected() + " rejected "
+				+ rejectedByCause + " in " + getElapsedMillis() + " ms ("
+				+ Math.round(getRowsPerSecond()) + " rows/s)";
+	}
+}
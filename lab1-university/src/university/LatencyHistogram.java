@@ -0,0 +1,155 @@
+package university;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies, in nanoseconds, with a bounded relative error.
+ *
+ * As in HdrHistogram, buckets are log-linear: values below 64 have a bucket
+ * each, then every power of two is split into 32 equal buckets, so that
+ * any value is known within about 3% with less than 2000 buckets.
+ *
+ * Recording takes a few atomic increments and allocates nothing,
+ * so it can be done by several threads on every operation.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR = 2 * SUB_BUCKETS;
+	private static final int LINEAR_BITS = SUB_BUCKET_BITS + 1;
+	static final int BUCKETS = LINEAR + (63 - LINEAR_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param value a non negative value
+	 * @return the bucket of the value
+	 */
+	static int bucket(long value) {
+		if (value < LINEAR) {
+			return (int)value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int)(value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+		return LINEAR + (exponent - LINEAR_BITS) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * @param bucket a bucket
+	 * @return the smallest value of the bucket
+	 */
+	static long lowest(int bucket) {
+		if (bucket < LINEAR) {
+			return bucket;
+		}
+		int exponent = (bucket - LINEAR) / SUB_BUCKETS + LINEAR_BITS;
+		long sub = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+		return sub << (exponent - SUB_BUCKET_BITS);
+	}
+
+	/**
+	 * @param bucket a bucket
+	 * @return the value reported for the bucket, halfway between its bounds
+	 */
+	static long median(int bucket) {
+		if (bucket < LINEAR) {
+			return bucket;
+		}
+		int exponent = (bucket - LINEAR) / SUB_BUCKETS + LINEAR_BITS;
+		return lowest(bucket) + (1L << (exponent - SUB_BUCKET_BITS - 1));
+	}
+
+	/**
+	 * Records a latency
+	 *
+	 * @param nanos the latency in nanoseconds; negative values count as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * @return number of recorded latencies
+	 */
+	public long count() {
+		return count.sum();
+	}
+
+	/**
+	 * @return average latency in nanoseconds, {@code NaN} if none was recorded
+	 */
+	public double mean() {
+		long n = count.sum();
+		return n == 0 ? Double.NaN : (double)sum.sum() / n;
+	}
+
+	/**
+	 * @return highest latency in nanoseconds
+	 */
+	public long max() {
+		return max.get();
+	}
+
+	/**
+	 * Computes several percentiles on a single copy of the counts.
+	 *
+	 * @param percentiles the percentiles (0-100)
+	 * @return the latencies, in nanoseconds, below which the given
+	 * 			percentage of the recorded ones fall; 0 if none was recorded
+	 */
+	public long[] percentiles(double... percentiles) {
+		long[] copy = new long[BUCKETS];
+		long total = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			copy[b] = counts.get(b);
+			total += copy[b];
+		}
+		long[] result = new long[percentiles.length];
+		for (int i = 0; i < percentiles.length; i++) {
+			double p = percentiles[i];
+			if (!(p >= 0 && p <= 100)) {
+				throw new IllegalArgumentException("percentile must be between 0 and 100");
+			}
+			if (total == 0) {
+				continue;
+			}
+			long rank = Math.max(1, (long)Math.ceil(p / 100 * total));
+			long seen = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				seen += copy[b];
+				if (seen >= rank) {
+					result[i] = Math.min(median(b), max.get());
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Forgets the recorded latencies.
+	 *
+	 * Latencies recorded while resetting may be partially kept.
+	 */
+	public void reset() {
+		for (int b = 0; b < BUCKETS; b++) {
+			counts.set(b, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+}
@@ -0,0 +1,103 @@
+package university;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * Ranking of the students by award score.
+ *
+ * The score of a student is the average of their grades plus a bonus
+ * equal to the number of exams taken divided by the number of courses
+ * the student is registered to, multiplied by 10.
+ *
+ * Students are kept in a balanced tree ordered by decreasing score,
+ * so that the ranking is updated in O(log n) whenever a student's
+ * score changes and the best k students are found in O(k + log n).
+ * Students with the same score are ranked by increasing id.
+ * Only students that took at least one exam are ranked.
+ * The ranking can be updated and queried by several threads.
+ */
+public class Leaderboard {
+
+	private static final Comparator<Student> RANKING =
+			Comparator.comparingDouble(Student::getPoint).reversed()
+						.thenComparingInt(Student::getId);
+
+	private final TreeSet<Student> ranking = new TreeSet<>(RANKING);
+
+	/**
+	 * Computes the award score of a student
+	 *
+	 * @param s the student
+	 * @return the score
+	 */
+	public static float score(Student s) {
+		int examCount = s.exams.size();
+		int registered = s.courseCodes.size();
+		if (examCount == 0) {
+			return 0;
+		}
+		float avg = (float)s.exams.average();
+		float bonus = (registered > 0) ? (float)examCount / registered * 10 : 0;
+		return avg + bonus;
+	}
+
+	/**
+	 * Recomputes the score of a student and moves it
+	 * to its new position in the ranking.
+	 *
+	 * Must be called every time the exams or the registrations
+	 * of a ranked student change.
+	 *
+	 * @param s the student
+	 */
+	public synchronized void update(Student s) {
+		// the position in the tree depends on the score,
+		// so the student must be removed before changing it
+		ranking.remove(s);
+		s.setPoint(score(s));
+		if (s.exams.size() > 0) {
+			ranking.add(s);
+		}
+	}
+
+	/**
+	 * Retrieves the students with the highest score.
+	 *
+	 * Ids and scores are copied while the ranking is locked,
+	 * so they stay consistent with each other even if the scores
+	 * are updated before the caller reads them.
+	 *
+	 * @param k number of students
+	 * @return up to k students, by decreasing score
+	 */
+	synchronized ParallelScoring.Ranking topK(int k) {
+		ParallelScoring.Ranking top = new ParallelScoring.Ranking(Math.max(0, k));
+		Iterator<Student> it = ranking.iterator();
+		for (int i = 0; i < k && it.hasNext(); i++) {
+			Student s = it.next();
+			top.offer(s.getId(), s.getPoint());
+		}
+		return top;
+	}
+
+	/**
+	 * Retrieves the ids of the students with the highest score
+	 *
+	 * @param k number of students
+	 * @return up to k ids, by decreasing score
+	 */
+	public int[] topIds(int k) {
+		ParallelScoring.Ranking top = topK(k);
+		return Arrays.copyOf(top.ids, top.size);
+	}
+
+	/**
+	 * @return number of ranked students
+	 */
+	public synchronized int size() {
+		return ranking.size();
+	}
+}
@@ -0,0 +1,111 @@
+package university;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation of the operations of a {@link University}:
+ * a latency histogram for each kind of operation and
+ * a counter for each cause of refusal.
+ *
+ * Recording allocates nothing and takes a few atomic
+ * increments, so every operation is measured.
+ */
+public class Metrics implements UniversityMetricsMXBean {
+
+	/**
+	 * Kinds of measured operations
+	 */
+	public enum Operation {
+		ENROLL, ACTIVATE, REGISTER, DEREGISTER, EXAM, TOP_STUDENTS
+	}
+
+	private static final double[] PERCENTILES = { 50, 90, 99 };
+
+	private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+	private final Map<Rejection, LongAdder> rejections = new EnumMap<>(Rejection.class);
+
+	Metrics() {
+		for (Operation op : Operation.values()) {
+			latencies.put(op, new LatencyHistogram());
+		}
+		for (Rejection cause : Rejection.values()) {
+			rejections.put(cause, new LongAdder());
+		}
+	}
+
+	/**
+	 * Records a completed operation
+	 *
+	 * @param operation the kind of operation
+	 * @param startNanos the value of {@link System#nanoTime()} when the operation started
+	 */
+	void record(Operation operation, long startNanos) {
+		latencies.get(operation).record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Counts refused operations
+	 *
+	 * @param cause the cause of the refusal
+	 * @param count number of refused operations
+	 */
+	void rejected(Rejection cause, long count) {
+		rejections.get(cause).add(count);
+	}
+
+	/**
+	 * @return the current counts and latencies
+	 */
+	public MetricsSnapshot snapshot() {
+		Map<Operation, MetricsSnapshot.OperationStats> operations = new EnumMap<>(Operation.class);
+		for (Operation op : Operation.values()) {
+			operations.put(op, stats(op));
+		}
+		Map<Rejection, Long> rejected = new EnumMap<>(Rejection.class);
+		for (Rejection cause : Rejection.values()) {
+			rejected.put(cause, rejections.get(cause).sum());
+		}
+		return new MetricsSnapshot(operations, rejected);
+	}
+
+	private MetricsSnapshot.OperationStats stats(Operation op) {
+		LatencyHistogram h = latencies.get(op);
+		long count = h.count();
+		long[] p = h.percentiles(PERCENTILES);
+		return new MetricsSnapshot.OperationStats(op.name(), count, count == 0 ? 0 : h.mean() / 1e3,
+								p[0] / 1e3, p[1] / 1e3, p[2] / 1e3, h.max() / 1e3);
+	}
+
+	@Override
+	public List<MetricsSnapshot.OperationStats> getOperations() {
+		List<MetricsSnapshot.OperationStats> result = new ArrayList<>();
+		for (Operation op : Operation.values()) {
+			result.add(stats(op));
+		}
+		return result;
+	}
+
+	@Override
+	public Map<String, Long> getRejections() {
+		Map<String, Long> result = new LinkedHashMap<>();
+		for (Rejection cause : Rejection.values()) {
+			result.put(cause.name(), rejections.get(cause).sum());
+		}
+		return result;
+	}
+
+	@Override
+	public void reset() {
+		for (LatencyHistogram h : latencies.values()) {
+			h.reset();
+		}
+		for (LongAdder counter : rejections.values()) {
+			counter.reset();
+		}
+	}
+}
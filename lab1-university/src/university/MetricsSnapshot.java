@@ -0,0 +1,127 @@
+package university;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.management.ConstructorParameters;
+
+/**
+ * Counts and latencies of the operations of a {@link University},
+ * taken by {@link University#metrics()}.
+ */
+public class MetricsSnapshot {
+
+	/**
+	 * Statistics of one kind of operation; latencies are in microseconds
+	 */
+	public static class OperationStats {
+		private final String operation;
+		private final long count;
+		private final double meanMicros;
+		private final double p50Micros;
+		private final double p90Micros;
+		private final double p99Micros;
+		private final double maxMicros;
+
+		@ConstructorParameters({ "operation", "count", "meanMicros", "p50Micros", "p90Micros", "p99Micros", "maxMicros" })
+		public OperationStats(String operation, long count, double meanMicros,
+								double p50Micros, double p90Micros, double p99Micros, double maxMicros) {
+			this.operation = operation;
+			this.count = count;
+			this.meanMicros = meanMicros;
+			this.p50Micros = p50Micros;
+			this.p90Micros = p90Micros;
+			this.p99Micros = p99Micros;
+			this.maxMicros = maxMicros;
+		}
+
+		/** @return name of the operation */
+		public String getOperation() {
+			return operation;
+		}
+
+		/** @return number of operations performed */
+		public long getCount() {
+			return count;
+		}
+
+		/** @return average latency, 0 if no operation was performed */
+		public double getMeanMicros() {
+			return meanMicros;
+		}
+
+		/** @return median latency */
+		public double getP50Micros() {
+			return p50Micros;
+		}
+
+		/** @return 90th percentile of the latency */
+		public double getP90Micros() {
+			return p90Micros;
+		}
+
+		/** @return 99th percentile of the latency */
+		public double getP99Micros() {
+			return p99Micros;
+		}
+
+		/** @return highest latency */
+		public double getMaxMicros() {
+			return maxMicros;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d ops, mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us",
+									operation, count, meanMicros, p50Micros, p90Micros, p99Micros, maxMicros);
+		}
+	}
+
+	private final Map<Metrics.Operation, OperationStats> operations;
+	private final Map<Rejection, Long> rejections;
+
+	MetricsSnapshot(Map<Metrics.Operation, OperationStats> operations, Map<Rejection, Long> rejections) {
+		this.operations = Collections.unmodifiableMap(new EnumMap<>(operations));
+		this.rejections = Collections.unmodifiableMap(new EnumMap<>(rejections));
+	}
+
+	/**
+	 * @param operation the kind of operation
+	 * @return its statistics
+	 */
+	public OperationStats get(Metrics.Operation operation) {
+		return operations.get(operation);
+	}
+
+	/**
+	 * @return statistics of every kind of operation
+	 */
+	public Map<Metrics.Operation, OperationStats> getOperations() {
+		return operations;
+	}
+
+	/**
+	 * @param cause a rejection cause
+	 * @return number of operations refused for the given cause
+	 */
+	public long getRejected(Rejection cause) {
+		return rejections.getOrDefault(cause, 0L);
+	}
+
+	/**
+	 * @return number of refused operations by cause
+	 */
+	public Map<Rejection, Long> getRejections() {
+		return rejections;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (OperationStats stats : operations.values()) {
+			result.append(stats).append('\n');
+		}
+		return result.append("rejections: ").append(rejections).toString();
+	}
+}
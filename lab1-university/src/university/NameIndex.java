@@ -0,0 +1,366 @@
+package university;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Index of names (surnames, teacher names) searching ids by prefix
+ * and, allowing for typos, by similarity.
+ *
+ * Names are normalized (lower case, without accents and extra spaces)
+ * and each distinct name is stored once, in a sorted dictionary,
+ * together with the ids it refers to: a prefix search is a range
+ * of the dictionary.
+ *
+ * Similar names are found through a trigram index, built on the first
+ * similarity search and kept up to date afterwards: a name within
+ * {@code d} edits from the query shares with it all but at most
+ * {@code 3d} trigrams, so the candidates are taken from the postings
+ * of the rarest trigrams of the query and then checked with the
+ * edit distance.
+ *
+ * The index can be searched by several threads while another one adds names.
+ */
+public class NameIndex {
+
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+
+	/** a distinct name with the ids it refers to */
+	private static final class Term {
+		final String text;
+		final int ordinal;
+		int[] ids = new int[1];
+		int size;
+
+		Term(String text, int ordinal) {
+			this.text = text;
+			this.ordinal = ordinal;
+		}
+
+		void add(int id) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			ids[size++] = id;
+		}
+	}
+
+	/** a name found by a similarity search */
+	private static final class Match {
+		final Term term;
+		final int distance;
+
+		Match(Term term, int distance) {
+			this.term = term;
+			this.distance = distance;
+		}
+	}
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final TreeMap<String, Term> dictionary = new TreeMap<>();
+	private final List<Term> terms = new ArrayList<>();
+	private Map<Long, IdColumn> trigrams;	// built on demand
+
+	/**
+	 * Normalizes a name for indexing and searching
+	 *
+	 * @param name the name
+	 * @return the name in lower case, without accents and with single spaces
+	 */
+	public static String normalize(String name) {
+		String plain = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+		return SPACES.matcher(plain.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Adds a name to the index
+	 *
+	 * @param name the name, ignored if {@code null}
+	 * @param id the id the name refers to
+	 */
+	public void add(String name, int id) {
+		if (name == null) {
+			return;
+		}
+		String text = normalize(name);
+		lock.writeLock().lock();
+		try {
+			Term term = dictionary.get(text);
+			if (term == null) {
+				term = new Term(text, terms.size());
+				dictionary.put(text, term);
+				terms.add(term);
+				if (trigrams != null) {
+					addTrigrams(term);
+				}
+			}
+			term.add(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of distinct names
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return terms.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the ids of the names starting with a prefix.
+	 *
+	 * @param prefix the prefix, normalized as the names
+	 * @param limit maximum number of ids
+	 * @return the distinct ids, by name and then in the order they were added
+	 */
+	public int[] prefix(String prefix, int limit) {
+		if (limit < 0) throw new IllegalArgumentException("limit must not be negative");
+		String from = normalize(prefix);
+		Results results = new Results(limit);
+		lock.readLock().lock();
+		try {
+			for (Term term : dictionary.tailMap(from, true).values()) {
+				if (!term.text.startsWith(from) || !results.addAll(term)) {
+					break;
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return results.toArray();
+	}
+
+	/**
+	 * Finds the ids of the names within a number of edits
+	 * (insertions, deletions or replacements of a character) from a name.
+	 *
+	 * @param name the name, normalized as the names in the index
+	 * @param maxEdits maximum edit distance
+	 * @param limit maximum number of ids
+	 * @return the distinct ids, by edit distance, name and then
+	 * 			in the order they were added
+	 */
+	public int[] similar(String name, int maxEdits, int limit) {
+		if (maxEdits < 0) throw new IllegalArgumentException("edits must not be negative");
+		if (limit < 0) throw new IllegalArgumentException("limit must not be negative");
+		String query = normalize(name);
+		lock.readLock().lock();
+		if (trigrams == null) {
+			// the trigram index is built by the first similarity search
+			lock.readLock().unlock();
+			lock.writeLock().lock();
+			try {
+				if (trigrams == null) {
+					trigrams = new HashMap<>();
+					for (Term term : terms) {
+						addTrigrams(term);
+					}
+				}
+				lock.readLock().lock();
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		try {
+			List<Match> matches = new ArrayList<>();
+			for (int ordinal : candidates(query, maxEdits)) {
+				Term term = terms.get(ordinal);
+				int distance = distance(query, term.text, maxEdits);
+				if (distance <= maxEdits) {
+					matches.add(new Match(term, distance));
+				}
+			}
+			matches.sort(Comparator.<Match>comparingInt(m -> m.distance).thenComparing(m -> m.term.text));
+			Results results = new Results(limit);
+			for (Match m : matches) {
+				if (!results.addAll(m.term)) {
+					break;
+				}
+			}
+			return results.toArray();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Selects the names sharing enough trigrams with the query
+	 *
+	 * @return the ordinals of the candidate names
+	 */
+	private int[] candidates(String query, int maxEdits) {
+		long[] grams = trigrams(query);
+		int required = grams.length - 3 * maxEdits;
+		if (required <= 0) {
+			// too short to filter: every name of a compatible length
+			IdColumn all = new IdColumn();
+			for (Term term : terms) {
+				if (Math.abs(term.text.length() - query.length()) <= maxEdits) {
+					all.add(term.ordinal);
+				}
+			}
+			return toArray(all);
+		}
+		// a name missing all of the (grams - required + 1) rarest trigrams
+		// shares fewer than required trigrams with the query
+		IdColumn[] postings = new IdColumn[grams.length];
+		for (int i = 0; i < grams.length; i++) {
+			IdColumn posting = trigrams.get(grams[i]);
+			postings[i] = posting != null ? posting : new IdColumn();
+		}
+		Arrays.sort(postings, (a, b) -> Integer.compare(a.size(), b.size()));
+		int selected = grams.length - required + 1;
+		int total = 0;
+		for (int i = 0; i < selected; i++) {
+			total += postings[i].size();
+		}
+		int[] candidates = new int[total];
+		int n = 0;
+		for (int i = 0; i < selected; i++) {
+			for (int j = 0; j < postings[i].size(); j++) {
+				candidates[n++] = postings[i].get(j);
+			}
+		}
+		Arrays.sort(candidates);
+
+		// postings are sorted by ordinal, as names are added in that order
+		int kept = 0;
+		for (int i = 0; i < n; i++) {
+			int ordinal = candidates[i];
+			if (i > 0 && ordinal == candidates[i - 1]
+					|| Math.abs(terms.get(ordinal).text.length() - query.length()) > maxEdits) {
+				continue;
+			}
+			int shared = 0;
+			for (int p = 0; p < postings.length && shared + postings.length - p >= required; p++) {
+				if (contains(postings[p], ordinal)) {
+					shared++;
+				}
+			}
+			if (shared >= required) {
+				candidates[kept++] = ordinal;
+			}
+		}
+		return Arrays.copyOf(candidates, kept);
+	}
+
+	private static boolean contains(IdColumn sorted, int value) {
+		int low = 0;
+		int high = sorted.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int v = sorted.get(middle);
+			if (v < value) low = middle + 1;
+			else if (v > value) high = middle - 1;
+			else return true;
+		}
+		return false;
+	}
+
+	private void addTrigrams(Term term) {
+		for (long gram : trigrams(term.text)) {
+			trigrams.computeIfAbsent(gram, g -> new IdColumn()).add(term.ordinal);
+		}
+	}
+
+	/**
+	 * @return the distinct trigrams of a name, padded at both ends
+	 */
+	private static long[] trigrams(String text) {
+		String padded = "\u0002\u0002" + text + "\u0003";
+		long[] grams = new long[padded.length() - 2];
+		for (int i = 0; i < grams.length; i++) {
+			grams[i] = (long)padded.charAt(i) << 32 | (long)padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+		}
+		return Arrays.stream(grams).distinct().toArray();
+	}
+
+	/**
+	 * Computes the edit distance between two strings,
+	 * giving up as soon as it exceeds a bound.
+	 *
+	 * @return the distance, or {@code bound + 1} if greater than the bound
+	 */
+	static int distance(String a, String b, int bound) {
+		if (Math.abs(a.length() - b.length()) > bound) {
+			return bound + 1;
+		}
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			int best = current[0];
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1], previous[j]) + 1, previous[j - 1] + cost);
+				best = Math.min(best, current[j]);
+			}
+			if (best > bound) {
+				return bound + 1;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return Math.min(previous[b.length()], bound + 1);
+	}
+
+	private static int[] toArray(IdColumn column) {
+		int[] result = new int[column.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = column.get(i);
+		}
+		return result;
+	}
+
+	/** distinct ids collected up to a limit */
+	private static final class Results {
+		private final int limit;
+		private final IdColumn ids = new IdColumn();
+		private final Set<Integer> seen = new HashSet<>();
+
+		Results(int limit) {
+			this.limit = limit;
+		}
+
+		/**
+		 * @return {@code false} once the limit has been reached
+		 */
+		boolean addAll(Term term) {
+			for (int i = 0; i < term.size; i++) {
+				if (ids.size() == limit) {
+					return false;
+				}
+				if (seen.add(term.ids[i])) {
+					ids.add(term.ids[i]);
+				}
+			}
+			return ids.size() < limit;
+		}
+
+		int[] toArray() {
+			return NameIndex.toArray(ids);
+		}
+	}
+}
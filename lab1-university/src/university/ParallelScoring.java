@@ -0,0 +1,167 @@
+package university;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Recomputes from scratch the award scores of all the students,
+ * as defined in {@link Leaderboard#score}, in parallel.
+ *
+ * The range of the student ids is split recursively among the workers
+ * of a {@link ForkJoinPool}: each leaf computes the scores of its students
+ * into a shared primitive array and keeps its own best k students,
+ * then the partial rankings are merged going back up.
+ * Ties are broken by increasing id, as in {@link Leaderboard}, so that
+ * the result does not depend on how the range is split nor on the
+ * number of threads.
+ */
+class ParallelScoring {
+
+	/** students scored by a single task */
+	static final int LEAF_SIZE = 4096;
+
+	private final Registry<Student> students;
+	private final int first;
+	private final float[] scores;
+	private final int k;
+
+	/**
+	 * @param students the students
+	 * @param first the first student id
+	 * @param count number of student ids assigned so far
+	 * @param k number of students to rank
+	 */
+	ParallelScoring(Registry<Student> students, int first, int count, int k) {
+		this.students = students;
+		this.first = first;
+		this.scores = new float[count];
+		this.k = k;
+	}
+
+	/**
+	 * Computes the scores and the ranking
+	 *
+	 * @param pool the pool running the tasks
+	 * @return the best k students, by decreasing score
+	 */
+	Ranking run(ForkJoinPool pool) {
+		return pool.invoke(new Task(0, scores.length));
+	}
+
+	/**
+	 * @return the score of each student, indexed by {@code id - first};
+	 * 			{@code NaN} for students without exams
+	 */
+	float[] scores() {
+		return scores;
+	}
+
+	private class Task extends RecursiveTask<Ranking> {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+
+		Task(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Ranking compute() {
+			if (to - from <= LEAF_SIZE) {
+				return score(from, to);
+			}
+			int middle = (from + to) >>> 1;
+			Task left = new Task(from, middle);
+			left.fork();
+			Ranking right = new Task(middle, to).compute();
+			return left.join().merge(right);
+		}
+	}
+
+	private Ranking score(int from, int to) {
+		Ranking ranking = new Ranking(k);
+		for (int i = from; i < to; i++) {
+			Student s = students.get(first + i);
+			float score = Float.NaN;
+			if (s != null) {
+				synchronized (s) {
+					if (s.exams.size() > 0) {
+						score = Leaderboard.score(s);
+					}
+				}
+			}
+			scores[i] = score;
+			if (score == score) {
+				ranking.offer(first + i, score);
+			}
+		}
+		return ranking;
+	}
+
+	/**
+	 * Best k students of a range, by decreasing score and increasing id
+	 */
+	static final class Ranking {
+		private final int k;
+		int[] ids;
+		float[] scores;
+		int size;
+
+		Ranking(int k) {
+			this.k = k;
+			this.ids = new int[Math.min(k, 16)];
+			this.scores = new float[ids.length];
+		}
+
+		private static boolean before(float score, int id, float otherScore, int otherId) {
+			return score > otherScore || (score == otherScore && id < otherId);
+		}
+
+		/**
+		 * Adds a student, if among the best k
+		 */
+		void offer(int id, float score) {
+			if (k == 0 || size == k && !before(score, id, scores[size - 1], ids[size - 1])) {
+				return;
+			}
+			int at = size < k ? size : size - 1;
+			while (at > 0 && before(score, id, scores[at - 1], ids[at - 1])) {
+				at--;
+			}
+			if (size < k) {
+				if (size == ids.length) {
+					ids = Arrays.copyOf(ids, Math.min(k, size * 2));
+					scores = Arrays.copyOf(scores, ids.length);
+				}
+				size++;
+			}
+			System.arraycopy(ids, at, ids, at + 1, size - 1 - at);
+			System.arraycopy(scores, at, scores, at + 1, size - 1 - at);
+			ids[at] = id;
+			scores[at] = score;
+		}
+
+		/**
+		 * @return the best k students of both rankings
+		 */
+		Ranking merge(Ranking other) {
+			Ranking merged = new Ranking(k);
+			merged.ids = new int[Math.min(k, size + other.size)];
+			merged.scores = new float[merged.ids.length];
+			int i = 0, j = 0;
+			while (merged.size < merged.ids.length) {
+				boolean mine = j == other.size
+						|| (i < size && before(scores[i], ids[i], other.scores[j], other.ids[j]));
+				if (mine) {
+					merged.ids[merged.size] = ids[i];
+					merged.scores[merged.size++] = scores[i++];
+				} else {
+					merged.ids[merged.size] = other.ids[j];
+					merged.scores[merged.size++] = other.scores[j++];
+				}
+			}
+			return merged;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package university;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Id-indexed store used by {@link University} for students and courses.
+ *
+ * Ids are assigned progressively starting from a base value, so the
+ * entries are kept in an array indexed by {@code id - base}, which
+ * gives constant time lookups.
+ * Ids that do not fit the dense range (e.g. far away from the ones
+ * assigned so far) are kept in a hash index instead.
+ * Removed entries leave an empty slot in the array.
+ *
+ * Lookups can run concurrently with a single writer: updates must be
+ * serialized by the caller.
+ *
+ * @param <T> type of the stored entries
+ */
+public class Registry<T> implements Iterable<T> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private final int base;
+	private volatile Object[] dense;
+	private volatile int limit;	// slots of the dense array used so far
+	private final Map<Integer,T> sparse = new ConcurrentHashMap<>();
+	private int size;
+
+	/**
+	 * Constructor
+	 * @param base first id of the dense range
+	 */
+	public Registry(int base) {
+		this(base, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 * @param base first id of the dense range
+	 * @param initialCapacity expected number of entries
+	 */
+	public Registry(int base, int initialCapacity) {
+		this.base = base;
+		this.dense = new Object[Math.max(initialCapacity, 1)];
+	}
+
+	/**
+	 * Retrieves the entry with the given id
+	 *
+	 * @param id the id of the entry
+	 * @return the entry or {@code null} if not present
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int id) {
+		long offset = (long)id - base;
+		if (offset >= 0 && offset < limit) {
+			// limit is read before the array, which is
+			// replaced before the limit is extended
+			return (T)dense[(int)offset];
+		}
+		T value = sparse.isEmpty() ? null : sparse.get(id);
+		if (value == null && offset >= 0 && offset < limit) {
+			// moved to the dense range since the limit was read
+			return (T)dense[(int)offset];
+		}
+		return value;
+	}
+
+	/**
+	 * Stores an entry with the given id, replacing any previous one.
+	 *
+	 * Ids that extend the dense range by at most its current
+	 * capacity are stored in the array, the others in the hash index.
+	 *
+	 * @param id the id of the entry
+	 * @param value the entry
+	 */
+	public void put(int id, T value) {
+		long offset = (long)id - base;
+		if (offset >= 0 && offset < limit) {
+			if (dense[(int)offset] == null) size++;
+			dense[(int)offset] = value;
+			return;
+		}
+		if (offset >= limit && offset < (long)dense.length * 2) {
+			boolean present = sparse.containsKey(id);
+			ensureCapacity((int)offset + 1);
+			dense[(int)offset] = value;
+			extend((int)offset + 1);	// also drops the id from the hash index
+			if (!present) size++;
+			return;
+		}
+		if (sparse.put(id, value) == null) size++;
+	}
+
+	/**
+	 * Extends the dense range, moving in it the entries
+	 * of the hash index that now fall within the range.
+	 *
+	 * The entries are copied to the array before the limit is published
+	 * and removed from the hash index only after, so that a concurrent
+	 * lookup that misses them in the hash index finds them in the array
+	 * once it reads the limit again.
+	 */
+	private void extend(int newLimit) {
+		int oldLimit = limit;
+		if (sparse.isEmpty()) {
+			limit = newLimit;
+			return;
+		}
+		for (Map.Entry<Integer,T> e : sparse.entrySet()) {
+			long offset = (long)e.getKey() - base;
+			// a slot already set holds a newer value of the same id
+			if (offset >= oldLimit && offset < newLimit && dense[(int)offset] == null) {
+				dense[(int)offset] = e.getValue();
+			}
+		}
+		limit = newLimit;
+		Iterator<Integer> it = sparse.keySet().iterator();
+		while (it.hasNext()) {
+			long offset = (long)it.next() - base;
+			if (offset >= oldLimit && offset < newLimit) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes the entry with the given id
+	 *
+	 * @param id the id of the entry
+	 * @return the removed entry or {@code null} if not present
+	 */
+	@SuppressWarnings("unchecked")
+	public T remove(int id) {
+		long offset = (long)id - base;
+		T old;
+		if (offset >= 0 && offset < limit) {
+			old = (T)dense[(int)offset];
+			dense[(int)offset] = null;
+		} else {
+			old = sparse.remove(id);
+		}
+		if (old != null) size--;
+		return old;
+	}
+
+	/**
+	 * Checks whether an entry with the given id is present
+	 *
+	 * @param id the id of the entry
+	 * @return {@code true} if present
+	 */
+	public boolean contains(int id) {
+		return get(id) != null;
+	}
+
+	/**
+	 * Makes room in the dense array for at least the given number of entries,
+	 * so that bulk insertions do not need to grow it several times.
+	 *
+	 * @param capacity number of entries
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > dense.length) {
+			int newLength = (int)Math.min(Math.max((long)dense.length * 2, capacity), Integer.MAX_VALUE - 8);
+			dense = Arrays.copyOf(dense, newLength);
+		}
+	}
+
+	/**
+	 * @return number of stored entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Iterates over the entries, the ones in the dense range first
+	 * and in id order, then the ones in the hash index in id order.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int next = advance(0);
+			private Iterator<T> rest;
+
+			private int advance(int from) {
+				while (from < limit && dense[from] == null) from++;
+				return from;
+			}
+
+			@Override
+			public boolean hasNext() {
+				if (next < limit) return true;
+				if (rest == null) {
+					rest = sparse.entrySet().stream()
+								.sorted(Map.Entry.comparingByKey())
+								.map(Map.Entry::getValue)
+								.iterator();
+				}
+				return rest.hasNext();
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				if (next < limit) {
+					T value = (T)dense[next];
+					next = advance(next + 1);
+					return value;
+				}
+				return rest.next();
+			}
+		};
+	}
+}
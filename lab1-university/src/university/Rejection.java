@@ -0,0 +1,36 @@
+package university;
+
+/**
+ * Causes for which an operation on the {@link University} is refused.
+ */
+public enum Rejection {
+	/** the student id does not correspond to an enrolled student */
+	UNKNOWN_STUDENT("Error: Invalid student ID."),
+	/** the course code does not correspond to an activated course */
+	UNKNOWN_COURSE("Error: Invalid course code."),
+	/** the student already attends the maximum number of courses */
+	STUDENT_FULL("error, more than " + University.MAX_COURSES_PER_STUDENT + " course for a student is not allowed"),
+	/** the course already has the maximum number of attendees */
+	COURSE_FULL("error, more than " + University.MAX_STUDENTS_PER_COURSE + " student for a course is not allowed"),
+	/** the course is full and the student has been put on its waitlist */
+	WAITLISTED("Course full: student added to the waitlist."),
+	/** the student is neither registered to nor waiting for the course */
+	NOT_REGISTERED("Error: Student not registered to the course."),
+	/** the grade is outside the range 0-30 */
+	INVALID_GRADE("Error: Invalid grade."),
+	/** the input row could not be parsed */
+	MALFORMED("Error: Malformed row.");
+
+	private final String message;
+
+	Rejection(String message) {
+		this.message = message;
+	}
+
+	/**
+	 * @return the error message describing the cause
+	 */
+	public String getMessage() {
+		return message;
+	}
+}
@@ -0,0 +1,100 @@
+package university;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * Iterator over a range of the rows of a study plan or of a list
+ * of attendees.
+ *
+ * The ids of the rows (course codes or student ids) are copied in
+ * small chunks while holding the lock of their owner (the student or
+ * the course), so that a long export neither keeps the owner locked
+ * nor copies the whole list at once. Rows are rendered from the ids
+ * after releasing the lock.
+ * Rows added while iterating may or may not be returned.
+ */
+class RowCursor implements Iterator<String> {
+
+	static final int CHUNK = 256;
+
+	private final Object owner;
+	private final IdColumn ids;
+	private final IntFunction<String> render;
+	private final int end;
+	private int next;
+
+	private final int[] chunk;
+	private int position;
+	private int count;
+
+	/**
+	 * @param owner the object whose lock guards the rows
+	 * @param ids the ids of the rows
+	 * @param render formats the row of an id
+	 * @param offset position of the first row
+	 * @param limit maximum number of rows
+	 */
+	RowCursor(Object owner, IdColumn ids, IntFunction<String> render, int offset, int limit) {
+		if (offset < 0) throw new IllegalArgumentException("offset must not be negative");
+		if (limit < 0) throw new IllegalArgumentException("limit must not be negative");
+		this.owner = owner;
+		this.ids = ids;
+		this.render = render;
+		this.next = offset;
+		this.end = limit > Integer.MAX_VALUE - offset ? Integer.MAX_VALUE : offset + limit;
+		this.chunk = new int[Math.min(CHUNK, Math.max(limit, 1))];
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (position < count) {
+			return true;
+		}
+		if (next >= end) {
+			return false;
+		}
+		int n;
+		synchronized (owner) {
+			n = Math.min(chunk.length, Math.min(end, ids.size()) - next);
+			for (int i = 0; i < n; i++) {
+				chunk[i] = ids.get(next + i);
+			}
+		}
+		if (n <= 0) {
+			next = end;
+			count = position = 0;
+			return false;
+		}
+		next += n;
+		count = n;
+		position = 0;
+		return true;
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return render.apply(chunk[position++]);
+	}
+
+	/**
+	 * Writes the remaining rows, each one followed by {@code '\n'}
+	 *
+	 * @param out the destination
+	 * @return the number of rows written
+	 * @throws IOException in case of errors writing to {@code out}
+	 */
+	int writeTo(Appendable out) throws IOException {
+		int written = 0;
+		while (hasNext()) {
+			out.append(next()).append('\n');
+			written++;
+		}
+		return written;
+	}
+}
@@ -0,0 +1,371 @@
+package university;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the state of a {@link University}.
+ *
+ * The file is made of:
+ * <ol>
+ * <li> the magic number {@code "UNIV"} and the format version;
+ * <li> a table with all the distinct strings (names, titles, teachers),
+ * 		referred to by position in the rest of the file (0 stands for {@code null});
+ * <li> university name, rector and id counters;
+ * <li> students (id, first and last name) and courses (code, title, teacher);
+ * <li> the study plan of each student and the attendees of each course;
+ * <li> the grades of each student and of each course, as a column
+ * 		of ids followed by a column of one byte grades;
+ * <li> the order of the waitlists (0 if disabled) and the students
+ * 		waiting for each course, in the order they will be admitted
+ * 		(since version 2).
+ * </ol>
+ * All integers are stored as variable length quantities (7 bits per byte),
+ * ids as zig-zag encoded differences from the previous or the first id,
+ * so that most of them take one or two bytes.
+ *
+ * The snapshot is written from a {@link Cut} of the university and
+ * read through a memory mapping of the file.
+ */
+class SnapshotFile {
+
+	private static final int MAGIC = 0x554E4956;	// "UNIV"
+	private static final int VERSION = 2;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private SnapshotFile() {}
+
+	/**
+	 * The state of a university at a version, to be written while the
+	 * university keeps changing: a {@link UniversityView} of its students,
+	 * courses, registrations and exams, with a copy of the id counters and
+	 * of the waitlists, which views don't keep.
+	 *
+	 * Taking a cut takes time linear in the number of courses and
+	 * of waiting students; it should be done while no other thread
+	 * is modifying the university.
+	 */
+	static final class Cut implements AutoCloseable {
+		private final University university;
+		private final UniversityView view;
+		private final int studentIdCounter;
+		private final int courseCodeCounter;
+		private final Waitlist.Priority priority;
+		/** copies of the waitlists, by course code */
+		private final Map<Integer,Waitlist> waitlists = new HashMap<>();
+
+		Cut(University u) {
+			university = u;
+			view = new UniversityView(u);
+			studentIdCounter = u.studentIdCounter;
+			courseCodeCounter = u.courseCodeCounter;
+			priority = u.getWaitlistPriority();
+			for (Course c : u.courses) {
+				synchronized (c) {
+					if (c.waitlist != null) {
+						waitlists.put(c.getCode(), c.waitlist.copy());
+					}
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			view.close();
+		}
+	}
+
+	/**
+	 * Writes a snapshot of a university that no other thread is modifying
+	 */
+	static void write(University u, Path file) throws IOException {
+		try (Cut cut = new Cut(u)) {
+			write(cut, file);
+		}
+	}
+
+	static void write(Cut cut, Path file) throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE))) {
+				write(cut, out);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static void write(Cut cut, DataOutputStream out) throws IOException {
+		University u = cut.university;
+		UniversityView view = cut.view;
+		List<Student> students = new ArrayList<>(u.students.size());
+		for (Student s : u.students) {
+			if (s.version <= view.getVersion()) students.add(s);
+		}
+		List<Course> courses = new ArrayList<>(u.courses.size());
+		for (Course c : u.courses) {
+			if (c.version <= view.getVersion()) courses.add(c);
+		}
+
+		Map<String,Integer> strings = new HashMap<>();
+		List<String> table = new ArrayList<>();
+		intern(strings, table, u.getName());
+		intern(strings, table, u.getRector());
+		for (Student s : students) {
+			intern(strings, table, s.getFirstName());
+			intern(strings, table, s.getLastName());
+		}
+		for (Course c : courses) {
+			intern(strings, table, c.getTitle());
+			intern(strings, table, c.getTeacher());
+		}
+
+		out.writeInt(MAGIC);
+		writeVarint(out, VERSION);
+		writeVarint(out, table.size());
+		for (String str : table) {
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			writeVarint(out, bytes.length);
+			out.write(bytes);
+		}
+
+		writeVarint(out, ref(strings, u.getName()));
+		writeVarint(out, ref(strings, u.getRector()));
+		writeVarint(out, cut.studentIdCounter);
+		writeVarint(out, cut.courseCodeCounter);
+
+		writeVarint(out, students.size());
+		int previous = University.FIRST_STUDENT_ID;
+		for (Student s : students) {
+			writeVarint(out, zigzag(s.getId() - previous));
+			writeVarint(out, ref(strings, s.getFirstName()));
+			writeVarint(out, ref(strings, s.getLastName()));
+			previous = s.getId();
+		}
+		writeVarint(out, courses.size());
+		previous = University.FIRST_COURSE_CODE;
+		for (Course c : courses) {
+			writeVarint(out, zigzag(c.getCode() - previous));
+			writeVarint(out, ref(strings, c.getTitle()));
+			writeVarint(out, ref(strings, c.getTeacher()));
+			previous = c.getCode();
+		}
+
+		for (Student s : students) {
+			writeIds(out, view.studyPlan(s), University.FIRST_COURSE_CODE);
+		}
+		for (Course c : courses) {
+			writeIds(out, view.attendees(c), University.FIRST_STUDENT_ID);
+		}
+		for (Student s : students) {
+			writeGrades(out, view.grades(s), University.FIRST_COURSE_CODE);
+		}
+		for (Course c : courses) {
+			writeGrades(out, view.grades(c), University.FIRST_STUDENT_ID);
+		}
+		Waitlist.Priority priority = cut.priority;
+		writeVarint(out, priority == null ? 0 : priority.ordinal() + 1);
+		for (Course c : courses) {
+			Waitlist waitlist = cut.waitlists.get(c.getCode());
+			if (waitlist == null) {
+				writeVarint(out, 0);
+				continue;
+			}
+			int[] waiting = waitlist.toArray();
+			writeVarint(out, waiting.length);
+			if (waiting.length > 0) {
+				writeVarint(out, waitlist.getPriority().ordinal());
+			}
+			for (int id : waiting) {
+				writeVarint(out, zigzag(id - University.FIRST_STUDENT_ID));
+			}
+		}
+	}
+
+	private static void intern(Map<String,Integer> strings, List<String> table, String str) {
+		if (str != null && !strings.containsKey(str)) {
+			table.add(str);
+			strings.put(str, table.size());
+		}
+	}
+
+	private static int ref(Map<String,Integer> strings, String str) {
+		return str == null ? 0 : strings.get(str);
+	}
+
+	private static void writeIds(DataOutputStream out, int[] ids, int first) throws IOException {
+		writeVarint(out, ids.length);
+		for (int id : ids) {
+			writeVarint(out, zigzag(id - first));
+		}
+	}
+
+	private static void writeGrades(DataOutputStream out, GradeColumns grades, int first) throws IOException {
+		int n = grades.size();
+		writeVarint(out, n);
+		for (int i = 0; i < n; i++) {
+			writeVarint(out, zigzag(grades.key(i) - first));
+		}
+		for (int i = 0; i < n; i++) {
+			out.writeByte(grades.grade(i));
+		}
+	}
+
+	private static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	static University read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large to be mapped: " + size + " bytes");
+			}
+			ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			try {
+				return read(in);
+			} catch (RuntimeException e) {
+				throw new IOException("Corrupted snapshot " + file, e);
+			}
+		}
+	}
+
+	private static University read(ByteBuffer in) throws IOException {
+		if (in.getInt() != MAGIC) {
+			throw new IOException("Not a university snapshot");
+		}
+		int version = readVarint(in);
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported snapshot version " + version);
+		}
+		String[] table = new String[readVarint(in) + 1];
+		for (int i = 1; i < table.length; i++) {
+			byte[] bytes = new byte[readVarint(in)];
+			in.get(bytes);
+			table[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		University u = new University(table[readVarint(in)]);
+		for (int i = 1; i < table.length; i++) {
+			table[i] = u.strings.intern(table[i]);
+		}
+		u.rector = table[readVarint(in)];
+		u.studentIdCounter = readVarint(in);
+		u.courseCodeCounter = readVarint(in);
+
+		Student[] students = new Student[readVarint(in)];
+		u.students.ensureCapacity(students.length);
+		int previous = University.FIRST_STUDENT_ID;
+		for (int i = 0; i < students.length; i++) {
+			int id = previous + unzigzag(readVarint(in));
+			students[i] = new Student(id, table[readVarint(in)], table[readVarint(in)]);
+			u.students.put(id, students[i]);
+			u.indexStudent(students[i]);
+			previous = id;
+		}
+		Course[] courses = new Course[readVarint(in)];
+		u.courses.ensureCapacity(courses.length);
+		previous = University.FIRST_COURSE_CODE;
+		for (int i = 0; i < courses.length; i++) {
+			int code = previous + unzigzag(readVarint(in));
+			courses[i] = new Course(table[readVarint(in)], table[readVarint(in)], code);
+			u.courses.put(code, courses[i]);
+			u.indexCourse(courses[i]);
+			previous = code;
+		}
+
+		for (Student s : students) {
+			for (int n = readVarint(in); n > 0; n--) {
+				Course c = u.courses.get(University.FIRST_COURSE_CODE + unzigzag(readVarint(in)));
+				s.courseCodes.add(c.getCode());
+			}
+		}
+		for (Course c : courses) {
+			for (int n = readVarint(in); n > 0; n--) {
+				Student s = u.students.get(University.FIRST_STUDENT_ID + unzigzag(readVarint(in)));
+				c.studentIds.add(s.getId());
+				c.attendeeSet.add(s.getId());
+			}
+		}
+		int[] keys = new int[0];
+		for (Student s : students) {
+			keys = readGrades(in, s.exams, University.FIRST_COURSE_CODE, keys);
+			if (s.exams.size() > 0) {
+				u.leaderboard.update(s);
+			}
+		}
+		for (Course c : courses) {
+			keys = readGrades(in, c.studentsGrade, University.FIRST_STUDENT_ID, keys);
+		}
+		if (version >= 2) {
+			int priority = readVarint(in);
+			u.setWaitlistPriority(priority == 0 ? null : Waitlist.Priority.values()[priority - 1]);
+			for (Course c : courses) {
+				int n = readVarint(in);
+				if (n > 0) {
+					c.waitlist = new Waitlist(Waitlist.Priority.values()[readVarint(in)]);
+					for (; n > 0; n--) {
+						c.waitlist.add(University.FIRST_STUDENT_ID + unzigzag(readVarint(in)));
+					}
+				}
+			}
+		}
+		return u;
+	}
+
+	/**
+	 * Reads a grade column, using (and possibly growing) the given scratch array for the keys
+	 */
+	private static int[] readGrades(ByteBuffer in, GradeColumns grades, int first, int[] keys) {
+		int n = readVarint(in);
+		if (keys.length < n) {
+			keys = new int[Math.max(n, keys.length * 2)];
+		}
+		for (int i = 0; i < n; i++) {
+			keys[i] = first + unzigzag(readVarint(in));
+		}
+		grades.ensureCapacity(n);
+		for (int i = 0; i < n; i++) {
+			grades.add(keys[i], in.get());
+		}
+		return keys;
+	}
+
+	private static int readVarint(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	private static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,37 @@
+package university;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of the distinct strings (names, titles, teachers) of a university.
+ *
+ * Strings equal to one already in the pool are replaced by it, so that
+ * names shared by many students, or read again from each row of an
+ * input file, are kept in memory once.
+ * Unlike {@link String#intern()}, the pool goes away with its university.
+ * The pool can be used by several threads.
+ */
+public class StringPool {
+
+	private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+
+	/**
+	 * @param str a string, possibly {@code null}
+	 * @return the string of the pool equal to the given one,
+	 * 			which is added if not present yet
+	 */
+	public String intern(String str) {
+		if (str == null) {
+			return null;
+		}
+		String pooled = strings.putIfAbsent(str, str);
+		return pooled != null ? pooled : str;
+	}
+
+	/**
+	 * @return number of distinct strings in the pool
+	 */
+	public int size() {
+		return strings.size();
+	}
+}
@@ -1,26 +1,34 @@
 package university;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class Student {
-       private String fName, lName;
-       private int id;
-       public List<String> courseRegistred = new ArrayList<>();
-       public List<String> exams = new ArrayList<>();
-       private int point;
+       private final String fName, lName;
+       private final int id;
+       public final IdColumn courseCodes = new IdColumn();
+       public final GradeColumns exams = new GradeColumns();
+       final History history = new History();
+       final long version;
+       private float point;
        
 
        public Student(int id, String firstName, String lastName) {
+		this(id, firstName, lastName, 0);
+	}
+
+       Student(int id, String firstName, String lastName, long version) {
 		this.id = id;
 		this.fName = firstName;
 		this.lName = lastName;
+		this.version = version;
 	}
 
 
        public String getInfo(){
               return id + " " + fName + " " + lName;
        }
+       /** appends {@link #getInfo()} without building it */
+       void appendInfo(StringBuilder out) {
+              out.append(id).append(' ').append(fName).append(' ').append(lName);
+       }
        public String getFullName() {
               StringBuilder fullName = new StringBuilder();
               if (fName != null && !fName.isEmpty()) {
@@ -35,14 +43,20 @@ public class Student {
               return fullName.toString();
           }
        
+       public String getFirstName(){
+              return fName;
+       }
+       public String getLastName(){
+              return lName;
+       }
        public int getId(){
               return id;
        }
-       public void setPoint(int point){
+       public void setPoint(float point){
               this.point = point;
        }
        public float getPoint(){
-              return (float)point;
+              return point;
        }
 
 }
@@ -1,16 +1,32 @@
 package university;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 
 /**
  * This class represents a university education system.
  * 
  * It manages students and courses.
+ * 
+ * Its methods can be called concurrently by several threads:
+ * operations on a student or a course lock that student or course only,
+ * so that operations on different students and courses run in parallel.
  *
  */
 public class University {
@@ -19,24 +35,61 @@ public class University {
 	 * Constructor
 	 * @param name name of the university
 	 */
+	static final int FIRST_STUDENT_ID = 10000;
+	static final int FIRST_COURSE_CODE = 10;
+	static final int MAX_COURSES_PER_STUDENT = 25;
+	static final int MAX_STUDENTS_PER_COURSE = 100;
+	static final int MIN_GRADE = 0;
+	static final int MAX_GRADE = 30;
+
 	private String name;
-	private String rector;
-	private List<Student> students = new ArrayList<>();
-	private List<Course> courses = new ArrayList<>();
-	private int studentIdCounter = 0;
-	private int courseCodeCounter = 0;
+	String rector;
+	final int firstStudentId;
+	final int studentIdRange;
+	final int firstCourseCode;
+	final int courseCodeRange;
+	final Registry<Student> students;
+	final Registry<Course> courses;
+	final Leaderboard leaderboard = new Leaderboard();
+	/** names, titles and teachers, each kept once */
+	final StringPool strings = new StringPool();
+	final Versions versions = new Versions();
+	int studentIdCounter = 0;
+	int courseCodeCounter = 0;
 	
 
 	public University(String name) {
-		this.name = name;
+		this(name, FIRST_STUDENT_ID, Integer.MAX_VALUE - FIRST_STUDENT_ID,
+				FIRST_COURSE_CODE, Integer.MAX_VALUE - FIRST_COURSE_CODE);
 	   }
+
+	/**
+	 * Creates a university assigning ids from the given ranges,
+	 * used for the campuses of a {@link UniversityFederation}.
+	 */
+	University(String name, int firstStudentId, int studentIdRange, int firstCourseCode, int courseCodeRange) {
+		this.name = name;
+		this.firstStudentId = firstStudentId;
+		this.studentIdRange = studentIdRange;
+		this.firstCourseCode = firstCourseCode;
+		this.courseCodeRange = courseCodeRange;
+		this.students = new Registry<>(firstStudentId);
+		this.courses = new Registry<>(firstCourseCode);
+	}
       
 	   public String getName() {
 		return name;
 	   }
       
 	   public void setRector(String firstName, String lastName) {
-		this.rector = firstName + " " + lastName;
+		WriteAheadLog w = beginChange();
+		try {
+			this.rector = firstName + " " + lastName;
+			if (w != null) w.rectorChanged(firstName, lastName);
+		} finally {
+			endChange(w);
+		}
+		awaitDurable();
 	   }
       
 	   public String getRector() {
@@ -44,40 +97,81 @@ public class University {
 	   }
 // R2
 	   public int enroll(String firstName, String lastName) {
-		int id = 10000 + studentIdCounter;
-		Student student = new Student(id, firstName, lastName);
-		students.add(student);
-		studentIdCounter++;
-		logger.info("New student enrolled: " + id + ", " + firstName + " " + lastName);
+		long start = System.nanoTime();
+		int id = addStudent(firstName, lastName);
+		awaitDurable();
+		log(Activity.ENROLL, id, 0, 0, firstName, lastName);
+		metrics.record(Metrics.Operation.ENROLL, start);
 		return id;
 	   }
+
+	   int addStudent(String firstName, String lastName) {
+		WriteAheadLog w = beginChange();
+		try {
+			synchronized (students) {
+				if (studentIdCounter == studentIdRange) {
+					throw new IllegalStateException("No more student ids available");
+				}
+				int id = firstStudentId + studentIdCounter;
+				long version = versions.begin();
+				Student student = new Student(id, strings.intern(firstName), strings.intern(lastName), version);
+				students.put(id, student);
+				indexStudent(student);
+				studentIdCounter++;
+				if (w != null) w.enrolled(id, firstName, lastName);
+				ChangeFeed f = feed;
+				if (f != null) f.enrolled(id);
+				return id;
+			}
+		} finally {
+			endChange(w);
+		}
+	   }
       
 	   public String student(int id) {
-		for (Student s : students) {
-		    if (s.getId() == id) {
-			 return s.getInfo();
-		    }
+		Student s = students.get(id);
+		if (s == null) {
+			return null;
 		}
-		return null;
+		return s.getInfo();
 	   }
 // R3
 	   public int activate(String courseTitle, String teacherName) {
-		int code = 10 + courseCodeCounter;
-		Course course = new Course(courseTitle, teacherName, code);
-		courses.add(course);
-		
-		courseCodeCounter++;
-		logger.info("New course activated: " + code + ", " + courseTitle + " " + teacherName);
+		long start = System.nanoTime();
+		int code = addCourse(courseTitle, teacherName);
+		awaitDurable();
+		log(Activity.ACTIVATE, code, 0, 0, courseTitle, teacherName);
+		metrics.record(Metrics.Operation.ACTIVATE, start);
 		return code;
 	   }
+
+	   int addCourse(String courseTitle, String teacherName) {
+		WriteAheadLog w = beginChange();
+		try {
+			synchronized (courses) {
+				if (courseCodeCounter == courseCodeRange) {
+					throw new IllegalStateException("No more course codes available");
+				}
+				int code = firstCourseCode + courseCodeCounter;
+				long version = versions.begin();
+				Course course = new Course(strings.intern(courseTitle), strings.intern(teacherName), code, version);
+				courses.put(code, course);
+				indexCourse(course);
+				courseCodeCounter++;
+				if (w != null) w.activated(code, courseTitle, teacherName);
+				return code;
+			}
+		} finally {
+			endChange(w);
+		}
+	   }
       
 	   public String course(int code) {
-		for (Course c : courses) {
-		    if (c.getCode() == code) {
-			 return c.getCode() + "," + c.getTitle() + "," + c.getTeacher();
-		    }
+		Course c = courses.get(code);
+		if (c == null) {
+			return null;
 		}
-		return null;
+		return c.getCode() + "," + c.getTitle() + "," + c.getTeacher();
 	   }
 	
 // R4
@@ -87,32 +181,350 @@ public class University {
 	 * @param courseCode id of the course
 	 */
 	public void register(int studentID, int courseCode){
-		int sIndex = studentID - 10000;
-		int cIndex = courseCode - 10;
-		if (sIndex < 0 || sIndex >= students.size()) {
-			System.err.println("Error: Invalid student ID.");
+		long start = System.nanoTime();
+		Rejection rejection = addRegistration(studentID, courseCode);
+		// a waiting student is journaled like a registration
+		if (rejection != Rejection.WAITLISTED && refused(rejection)) {
 			return;
 		}
-		if (cIndex < 0 || cIndex >= courses.size()) {
-			System.err.println("Error: Invalid course code.");
+		completed(Metrics.Operation.REGISTER, start, rejection == null ? Activity.REGISTER : Activity.WAITLIST,
+					studentID, courseCode, 0, null, null);
+	}
+
+	/**
+	 * Registers a student to a course without logging.
+	 * 
+ 	 * The registration is refused as a whole if either the student
+	 * or the course has reached its limit.
+	 * 
+	 * Both the student and the course are locked while checking
+	 * the limits and updating the lists, so that concurrent
+	 * registrations never exceed them. Locks are always taken
+	 * in the same order (student, then course).
+	 * The registration is journaled while the locks are held,
+	 * so that the journal replays registrations in the same order.
+	 * 
+	 * When waitlists are enabled (see {@link #setWaitlistPriority}),
+	 * a student not attending a full course, or a course whose waitlist
+	 * is not empty, is put on the waitlist instead.
+	 * Once they are disabled, a waiting student may find a free seat
+	 * before the waitlist reaches it, and leaves the waitlist when registered.
+	 * 
+	 * @return {@code null} if the student has been registered,
+	 * 			the cause of the refusal otherwise
+	 */
+	Rejection addRegistration(int studentID, int courseCode) {
+		Student s = students.get(studentID);
+		Course c = courses.get(courseCode);
+		if (s == null) {
+			return Rejection.UNKNOWN_STUDENT;
+		}
+		if (c == null) {
+			return Rejection.UNKNOWN_COURSE;
+		}
+		WriteAheadLog w = beginChange();
+		try {
+			synchronized (s) {
+				if (s.courseCodes.size() >= MAX_COURSES_PER_STUDENT) {
+					return capacityRejected(studentID, courseCode, Rejection.STUDENT_FULL);
+				}
+				synchronized (c) {
+					Waitlist.Priority priority = waitlistPriority;
+					if (priority != null && !c.attendeeSet.contains(studentID)
+							&& (c.studentIds.size() >= MAX_STUDENTS_PER_COURSE
+								|| c.waitlist != null && c.waitlist.size() > 0)) {
+						if (c.waitlist == null) {
+							c.waitlist = new Waitlist(priority);
+						}
+						if (c.waitlist.add(studentID) && w != null) {
+							w.registered(studentID, courseCode);
+						}
+						return capacityRejected(studentID, courseCode, Rejection.WAITLISTED);
+					}
+					if (c.studentIds.size() >= MAX_STUDENTS_PER_COURSE) {
+						return capacityRejected(studentID, courseCode, Rejection.COURSE_FULL);
+					}
+					if (c.waitlist != null) {
+						c.waitlist.remove(studentID);
+					}
+					applyRegistration(s, c, w);
+				}
+			}
+		} finally {
+			endChange(w);
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a registration, journals it and publishes it to the change feed.
+	 * 
+	 * The student and the course must be locked, with their limits checked,
+	 * inside a change entered by {@link #beginChange()}.
+	 * 
+	 * @param w the journal returned by {@link #beginChange()}, {@code null}
+	 * 			on the campuses of a {@link UniversityFederation}, which are not journaled
+	 */
+	void applyRegistration(Student s, Course c, WriteAheadLog w) {
+		long version = versions.begin();
+		enlist(s, c, version);
+		if (w != null) w.registered(s.getId(), c.getCode());
+		ChangeFeed f = feed;
+		if (f != null) f.registered(s.getId(), c.getCode());
+		if (s.exams.size() > 0 && ownsStudent(s.getId())) {
+			leaderboard.update(s);
+		}
+	}
+
+	private Rejection capacityRejected(int studentID, int courseCode, Rejection cause) {
+		ChangeFeed f = feed;
+		if (f != null) f.rejected(studentID, courseCode, cause);
+		return cause;
+	}
+
+	/**
+	 * Adds a registration to the lists of the student and of the course;
+	 * both must be locked.
+	 */
+	private void enlist(Student s, Course c, long version) {
+		long horizon = versions.horizon();
+		s.history.registered(c.getCode(), version, horizon);
+		c.history.registered(s.getId(), version, horizon);
+		s.courseCodes.add(c.getCode());
+		c.studentIds.add(s.getId());
+		c.attendeeSet.add(s.getId());
+	}
+
+// Waitlists
+	/** order of the new waitlists, {@code null} if disabled */
+	private volatile Waitlist.Priority waitlistPriority;
+
+	/**
+	 * Enables the waitlists: from now on, students asking for a full course
+	 * wait for a seat to free up instead of being refused, and are registered
+	 * in the given order as other students leave the course (see {@link #deregister}).
+	 * 
+	 * The courses that already have a waitlist keep their order.
+	 * When waitlists are disabled, full courses refuse new students again,
+	 * but the students already waiting are still admitted as seats free up.
+	 * Waitlists are not supported by the campuses of a {@link UniversityFederation}.
+	 * 
+	 * @param priority order in which waiting students are admitted,
+	 * 			or {@code null} to disable the waitlists
+	 */
+	public void setWaitlistPriority(Waitlist.Priority priority) {
+		WriteAheadLog w = beginChange();
+		try {
+			this.waitlistPriority = priority;
+			if (w != null) w.waitlistPriorityChanged(priority);
+		} finally {
+			endChange(w);
+		}
+		awaitDurable();
+	}
+
+	/**
+	 * @return order of the new waitlists, {@code null} if disabled
+	 */
+	public Waitlist.Priority getWaitlistPriority() {
+		return waitlistPriority;
+	}
+
+	/**
+	 * Removes a student from a course, or from its waitlist.
+	 * 
+	 * The freed seat goes to the next student on the waitlist of the course,
+	 * if any; waiting students that meanwhile reached the maximum number
+	 * of courses leave the waitlist without being registered.
+	 * 
+	 * @param studentID id of the student
+	 * @param courseCode id of the course
+	 */
+	public void deregister(int studentID, int courseCode) {
+		long start = System.nanoTime();
+		Rejection rejection = removeRegistration(studentID, courseCode);
+		if (rejection != null) {
+			metrics.rejected(rejection, 1);
+			System.err.println(rejection.getMessage());
 			return;
 		}
-		Student s = students.get(sIndex);
-		Course c = courses.get(cIndex);
-		if (s.courseRegistred.size()<25){
-			s.courseRegistred.add(c.getInfo());
+		IdColumn admitted = new IdColumn();
+		promote(courses.get(courseCode), admitted);
+		awaitDurable();
+		log(Activity.DEREGISTER, studentID, courseCode, 0, null, null);
+		for (int i = 0; i < admitted.size(); i++) {
+			log(Activity.REGISTER, admitted.get(i), courseCode, 0, null, null);
 		}
-		else {
-			System.err.println("error, more than 25 course for a student is not allowed");
+		metrics.record(Metrics.Operation.DEREGISTER, start);
+	}
+
+	/**
+	 * Removes a student from a course, or from its waitlist, without
+	 * logging and without admitting students from the waitlist.
+	 * 
+	 * @return {@code null} if the student has been removed,
+	 * 			the cause of the refusal otherwise
+	 */
+	Rejection removeRegistration(int studentID, int courseCode) {
+		Student s = students.get(studentID);
+		Course c = courses.get(courseCode);
+		if (s == null) {
+			return Rejection.UNKNOWN_STUDENT;
 		}
-		if (c.studentEnrolled.size()<100){
-			c.studentEnrolled.add(s.getInfo());
+		if (c == null) {
+			return Rejection.UNKNOWN_COURSE;
 		}
-		else {
-			System.err.println("error, more than 100 student for a course is not allowed");
+		WriteAheadLog w = beginChange();
+		try {
+			synchronized (s) {
+				synchronized (c) {
+					if (!c.attendeeSet.contains(studentID)) {
+						if (c.waitlist == null || !c.waitlist.remove(studentID)) {
+							return Rejection.NOT_REGISTERED;
+						}
+						if (w != null) w.deregistered(studentID, courseCode);
+						return null;
+					}
+					long version = versions.begin();
+					long horizon = versions.horizon();
+					s.history.deregistered(courseCode, s.courseCodes.indexOf(courseCode), version, horizon);
+					c.history.deregistered(studentID, c.studentIds.indexOf(studentID), version, horizon);
+					s.courseCodes.remove(courseCode);
+					c.studentIds.remove(studentID);
+					if (c.studentIds.indexOf(studentID) < 0) {
+						c.attendeeSet.remove(studentID);
+					}
+					if (w != null) w.deregistered(studentID, courseCode);
+					ChangeFeed f = feed;
+					if (f != null) f.deregistered(studentID, courseCode);
+				}
+				if (s.exams.size() > 0 && ownsStudent(studentID)) {
+					leaderboard.update(s);
+				}
+			}
+		} finally {
+			endChange(w);
+		}
+		return null;
+	}
+
+	/**
+	 * Admits students from the waitlist of a course while it has free seats.
+	 * 
+	 * The head of the waitlist is read with the course locked, then
+	 * the student and the course are locked in the usual order and the
+	 * head is checked again, since other threads may have admitted it
+	 * or taken the seat in between.
+	 * 
+	 * @param admitted collects the ids of the registered students
+	 */
+	private void promote(Course c, IdColumn admitted) {
+		while (true) {
+			int head;
+			synchronized (c) {
+				if (c.waitlist == null || c.waitlist.size() == 0
+						|| c.studentIds.size() >= MAX_STUDENTS_PER_COURSE) {
+					return;
+				}
+				head = c.waitlist.peek();
+			}
+			admit(c, head, admitted);
+		}
+	}
+
+	/**
+	 * Admits the head of the waitlist of a course, as done by {@link #deregister}
+	 * for each free seat, without logging.
+	 * 
+	 * @return {@code false} if the course has no waiting students or no free seats
+	 */
+	boolean promoteHead(int courseCode) {
+		Course c = courses.get(courseCode);
+		if (c == null) {
+			return false;
+		}
+		int head;
+		synchronized (c) {
+			if (c.waitlist == null || c.waitlist.size() == 0) {
+				return false;
+			}
+			head = c.waitlist.peek();
+		}
+		return admit(c, head, null);
+	}
+
+	/**
+	 * Takes a student off the waitlist of a course, registering it
+	 * unless it already attends the maximum number of courses.
+	 * 
+	 * @param head the student expected at the head of the waitlist
+	 * @param admitted collects the id of the student if registered; may be {@code null}
+	 * @return {@code false} if the student is no longer the head
+	 * 			or the course has no free seats
+	 */
+	private boolean admit(Course c, int head, IdColumn admitted) {
+		Student s = students.get(head);
+		WriteAheadLog w = beginChange();
+		try {
+			synchronized (s) {
+				synchronized (c) {
+					if (c.waitlist.peek() != head || c.studentIds.size() >= MAX_STUDENTS_PER_COURSE) {
+						return false;
+					}
+					c.waitlist.poll();
+					if (w != null) w.promoted(c.getCode());
+					if (s.courseCodes.size() >= MAX_COURSES_PER_STUDENT) {
+						return true;
+					}
+					long version = versions.begin();
+					enlist(s, c, version);
+					ChangeFeed f = feed;
+					if (f != null) f.registered(head, c.getCode());
+				}
+				if (s.exams.size() > 0 && ownsStudent(head)) {
+					leaderboard.update(s);
+				}
+				if (admitted != null) {
+					admitted.add(head);
+				}
+			}
+		} finally {
+			endChange(w);
+		}
+		return true;
+	}
+
+	/**
+	 * Lists the students waiting for a seat in a course.
+	 * 
+	 * @param courseCode code of the course
+	 * @return ids of the students, in the order they will be admitted;
+	 * 			empty if the course is unknown or has no waitlist
+	 */
+	public int[] waitlist(int courseCode) {
+		Course c = courses.get(courseCode);
+		if (c == null) {
+			return new int[0];
+		}
+		synchronized (c) {
+			return c.waitlist == null ? new int[0] : c.waitlist.toArray();
+		}
+	}
+
+	/**
+	 * @param studentID id of the student
+	 * @param courseCode code of the course
+	 * @return number of students to be admitted to the course before the student,
+	 * 			-1 if the student is not waiting for the course
+	 */
+	public int waitlistPosition(int studentID, int courseCode) {
+		Course c = courses.get(courseCode);
+		if (c == null) {
+			return -1;
+		}
+		synchronized (c) {
+			return c.waitlist == null ? -1 : c.waitlist.position(studentID);
 		}
-		logger.info("Student " + studentID + " signed up for course " + courseCode);
-		
 	}
 	
 	/**
@@ -125,24 +537,18 @@ public class University {
 	 * @return list of attendees separated by "\n"
 	 */
 	public String listAttendees(int courseCode){
-		Course selectedCourse = null;
-		for (Course course : courses) {
-			if (course.getCode() == courseCode) {
-				selectedCourse = course;
-				break;
-			}
-		}
+		Course selectedCourse = courses.get(courseCode);
 		if (selectedCourse == null) {
 			return "Course not found.";
 		}
 
-		if (selectedCourse.studentEnrolled == null) {
-			return "No students enrolled in this course.";
-		   }
-	      
 		   StringBuilder result = new StringBuilder();
-		   for (String enrolledStudent : selectedCourse.studentEnrolled) {
-			result.append(enrolledStudent).append("\n");
+		   synchronized (selectedCourse) {
+			IdColumn attendees = selectedCourse.studentIds;
+			for (int i = 0; i < attendees.size(); i++) {
+				students.get(attendees.get(i)).appendInfo(result);
+				result.append("\n");
+			}
 		   }
 	      
 		   if (result.length() == 0) {
@@ -164,224 +570,1082 @@ public class University {
 	 * @return the list of courses the student is registered for
 	 */
 	public String studyPlan(int studentID){
-		Student selectedStudent = null;
-		for (Student student : students) {
-			if (student.getId() == studentID) {
-				selectedStudent = student;
-				break;
-			}
-		}
+		Student selectedStudent = students.get(studentID);
 		if (selectedStudent == null) {
 			return "Student not found.";
 		}
 
 		StringBuilder result = new StringBuilder();
 		
-		for (String course : selectedStudent.courseRegistred) {
-			result.append(course).append("\n");
+		synchronized (selectedStudent) {
+			IdColumn plan = selectedStudent.courseCodes;
+			for (int i = 0; i < plan.size(); i++) {
+				courses.get(plan.get(i)).appendInfo(result);
+				result.append("\n");
+			}
 		}
 		return result.toString();
 	}
 
-// R5
+// Read views
 	/**
-	 * records the grade (integer 0-30) for an exam can 
+	 * Takes a consistent, read-only view of the university, for reports
+	 * that must not be affected by the registrations and exams recorded
+	 * while they run.
 	 * 
-	 * @param studentId the ID of the student
-	 * @param courseID	course code 
-	 * @param grade		grade ( 0-30)
+	 * The view is taken in constant time and shares the data of the
+	 * university: each change is stamped with a version and, while the
+	 * view is open, recorded in the history of the students and courses
+	 * it affects, so that the view can undo the changes newer than its
+	 * version. Each student or course is read under its lock, hence the
+	 * view never sees a registration on one side (student or course) only;
+	 * a writer waits while a view copies the lists of a student or course
+	 * it modifies, but never for a view to close.
+	 * 
+	 * @return the view, to be closed when no longer needed
 	 */
-	public void exam(int studentId, int courseID, int grade) {
-		Student selectedStudent = null;
-		for (Student student : students) {
-			if (student.getId() == studentId) {
-				selectedStudent = student;
-				break;
-			}
-		}
-		StringBuilder result = new StringBuilder();
-		result.append(courseID).append(" ").append(grade);
-		selectedStudent.exams.add(result.toString());
-
-		Course selectedCourse = null;
-		for (Course course : courses) {
-			if (course.getCode() == courseID) {
-				selectedCourse = course;
-				break;
-			}
-		}
-		StringBuilder resultc = new StringBuilder();
-		resultc.append(studentId).append(" ").append(grade);
-		selectedCourse.studentsGrade.add(result.toString());
-		logger.info("Student " + studentId + " took an exam in course " + courseID + " with grade " + grade);
+	public UniversityView snapshot() {
+		return new UniversityView(this);
 	}
 
+// Streaming output
 	/**
-	 * Computes the average grade for a student and formats it as a string
-	 * using the following format 
-	 * 
-	 * {@code "Student STUDENT_ID : AVG_GRADE"}. 
+	 * Writes the list of attendees, formatted as in {@link #listAttendees(int)},
+	 * directly to a destination, without building the whole list in memory.
 	 * 
-	 * If the student has no exam recorded the method
-	 * returns {@code "Student STUDENT_ID hasn't taken any exams"}.
+	 * Rows are read in small chunks, so that registrations to the course
+	 * are not held off by a slow destination; students registered
+	 * while the list is being written may or may not be included.
 	 * 
-	 * @param studentId the ID of the student
-	 * @return the average grade formatted as a string.
+	 * @param courseCode unique id of the course
+	 * @param out the destination
+	 * @throws IOException in case of errors writing to {@code out}
 	 */
-	public String studentAvg(int studentId) {
-		Student selectedStudent = null;
-		for (Student student : students) {
-			if (student.getId() == studentId) {
-				selectedStudent = student;
-				break;
-			}
-		}
-		if (selectedStudent.exams.size()<1){
-			return "Student " + selectedStudent.getId() + " hasn't taken any exams";
+	public void listAttendees(int courseCode, Appendable out) throws IOException {
+		Course selectedCourse = courses.get(courseCode);
+		if (selectedCourse == null) {
+			out.append("Course not found.");
+			return;
 		}
-		int sum = 0;
-		int countexams = 0;
-		for (String exam : selectedStudent.exams){
-			String [] parts = exam.split(" ");
-			int score = Integer.parseInt(parts[1]);
-			sum = sum + score;
-			countexams++;
+		if (attendeeRows(selectedCourse, 0, Integer.MAX_VALUE).writeTo(out) == 0) {
+			out.append("No students enrolled in this course.");
 		}
-		float avg = sum/countexams;
-		return "Student" + " " + selectedStudent.getId() + " : " + avg;
 	}
-	
+
 	/**
-	 * Computes the average grades of all students that took the exam for a given course.
-	 * 
-	 * The format is the following: 
-	 * {@code "The average for the course COURSE_TITLE is: COURSE_AVG"}.
-	 * 
-	 * If no student took the exam for that course it returns {@code "No student has taken the exam in COURSE_TITLE"}.
+	 * Retrieves a page of the list of attendees, formatted
+	 * as in {@link #listAttendees(int)}.
 	 * 
-	 * @param courseId	course code 
-	 * @return the course average formatted as a string
+	 * @param courseCode unique id of the course
+	 * @param offset position of the first attendee, starting from 0
+	 * @param limit maximum number of attendees
+	 * @return the attendees in the page, one per row; an empty string
+	 * 			if there are none
 	 */
-	public String courseAvg(int courseId) {
-		Course selectedCourse = null;
-		for (Course course : courses) {
-			if (course.getCode() == courseId) {
-				selectedCourse = course;
-				break;
-			}
-		}
+	public String listAttendees(int courseCode, int offset, int limit) {
+		Course selectedCourse = courses.get(courseCode);
 		if (selectedCourse == null) {
 			return "Course not found.";
 		}
-		if (selectedCourse.studentsGrade.size()<1){
-			return "No student has taken the exam in" + selectedCourse.getTitle();
-		}
-		int sum = 0;
-		int countexams = 0;
-		for (String studentgrade : selectedCourse.studentsGrade){
-			String [] parts = studentgrade.split(" ");
-			int score = Integer.parseInt(parts[1]);
-			sum = sum + score;
-			countexams++;
+		StringBuilder result = new StringBuilder();
+		RowCursor rows = attendeeRows(selectedCourse, offset, limit);
+		while (rows.hasNext()) {
+			result.append(rows.next()).append("\n");
 		}
-		float avg = sum/countexams;
-		return "The average for the course" + selectedCourse.getTitle() + "is : " + avg;
+		return result.toString();
+	}
 
+	/**
+	 * Lists the attendees of a course lazily, each row formatted
+	 * as in {@link #student} (without the trailing new-line).
+	 * 
+	 * @param courseCode unique id of the course
+	 * @return the attendees, an empty stream if the course is unknown
+	 */
+	public Stream<String> streamAttendees(int courseCode) {
+		Course selectedCourse = courses.get(courseCode);
+		if (selectedCourse == null) {
+			return Stream.empty();
+		}
+		return stream(attendeeRows(selectedCourse, 0, Integer.MAX_VALUE));
+	}
 
-		
+	/**
+	 * Writes the study plan, formatted as in {@link #studyPlan(int)},
+	 * directly to a destination, without building it in memory.
+	 * 
+	 * @param studentID id of the student
+	 * @param out the destination
+	 * @throws IOException in case of errors writing to {@code out}
+	 */
+	public void studyPlan(int studentID, Appendable out) throws IOException {
+		Student selectedStudent = students.get(studentID);
+		if (selectedStudent == null) {
+			out.append("Student not found.");
+			return;
+		}
+		studyPlanRows(selectedStudent, 0, Integer.MAX_VALUE).writeTo(out);
 	}
-	
 
-// R6
 	/**
-	 * Retrieve information for the best students to award a price.
+	 * Retrieves a page of the study plan, formatted
+	 * as in {@link #studyPlan(int)}.
 	 * 
-	 * The students' score is evaluated as the average grade of the exams they've taken. 
-	 * To take into account the number of exams taken and not only the grades, 
-	 * a special bonus is assigned on top of the average grade: 
-	 * the number of taken exams divided by the number of courses the student is enrolled to, multiplied by 10.
-	 * The bonus is added to the exam average to compute the student score.
+	 * @param studentID id of the student
+	 * @param offset position of the first course, starting from 0
+	 * @param limit maximum number of courses
+	 * @return the courses in the page, one per row
+	 */
+	public String studyPlan(int studentID, int offset, int limit) {
+		Student selectedStudent = students.get(studentID);
+		if (selectedStudent == null) {
+			return "Student not found.";
+		}
+		StringBuilder result = new StringBuilder();
+		RowCursor rows = studyPlanRows(selectedStudent, offset, limit);
+		while (rows.hasNext()) {
+			result.append(rows.next()).append("\n");
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Lists the courses in the study plan of a student lazily
+	 * (without the trailing new-line).
 	 * 
-	 * The method returns a string with the information about the three students with the highest score. 
-	 * The students appear one per row (rows are terminated by a new-line character {@code '\n'}) 
-	 * and each one of them is formatted as: {@code "STUDENT_FIRSTNAME STUDENT_LASTNAME : SCORE"}.
+	 * @param studentID id of the student
+	 * @return the courses, an empty stream if the student is unknown
+	 */
+	public Stream<String> streamStudyPlan(int studentID) {
+		Student selectedStudent = students.get(studentID);
+		if (selectedStudent == null) {
+			return Stream.empty();
+		}
+		return stream(studyPlanRows(selectedStudent, 0, Integer.MAX_VALUE));
+	}
+
+	private RowCursor attendeeRows(Course c, int offset, int limit) {
+		return new RowCursor(c, c.studentIds, id -> students.get(id).getInfo(), offset, limit);
+	}
+
+	private RowCursor studyPlanRows(Student s, int offset, int limit) {
+		return new RowCursor(s, s.courseCodes, code -> courses.get(code).getInfo(), offset, limit);
+	}
+
+	private static Stream<String> stream(RowCursor rows) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows,
+						Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+// Enrollment matrix
+	/**
+	 * Checks whether a student is registered to a course.
 	 * 
-	 * @return info on the best three students.
+	 * @param studentID id of the student
+	 * @param courseCode code of the course
+	 * @return {@code true} if the student attends the course
 	 */
-	
-	public String topThreeStudents() {
-		// for (Student student : students) {
-		// 	String show = studentAvg(student.getId());
-		// 	String [] parts = show.split(" ");
-		// 	int avg = Integer.parseInt(parts[2]);
-		// 	int point = avg + student.exams.size() + 10;
-		// 	student.setPoint(point);
-		// }
-		// students.sort(Comparator.comparing(Student::getPoint));
-		// StringBuilder result = new StringBuilder();
-		// for(int i=0 ; i<3; i++){
-		// 	result.append(students.get(i).getFullName()).append(" : ").append(students.get(i).getPoint());
-		// }
-		List<Student> studentPoints = new ArrayList<>();
-		for (Student student : students) {
-			int sum = 0;
-			int examCount = student.exams.size();
-			
-			// Calculate the sum of exam scores
-			for (String exam : student.exams) {
-			    String[] parts = exam.split(" ");
-			    int score = Integer.parseInt(parts[1]);
-			    sum += score;
-			}
-			// Calculate average; handle division by zero
-			int avg = (examCount > 0) ? sum / examCount : 0;
-			int bounos = (examCount/student.courseRegistred.size()) * 10;
-			// Calculate total points
-			int point = avg + bounos;
-	      
-			// Set the calculated point to the student
-			student.setPoint(point);
-			// Add student to the list
-			if (examCount > 0){
-				studentPoints.add(student);
-			}
+	public boolean isRegistered(int studentID, int courseCode) {
+		Course c = courses.get(courseCode);
+		if (c == null) {
+			return false;
 		}
-	   
-		// Sort students by points in descending order
-		studentPoints.sort(Comparator.comparingDouble(Student::getPoint).reversed());
-	   
-		// Prepare the result string
-		if (studentPoints.get(0).getPoint() == studentPoints.get(1).getPoint()){
-			return "error" ; 
+		synchronized (c) {
+			return c.attendeeSet.contains(studentID);
 		}
-		if (studentPoints.isEmpty()) {
-			return "No students have taken exams.";
-		   }
+	}
 
-		StringBuilder result = new StringBuilder();
-		if(studentPoints.size()>=3){
-			int count = 3;
+	/**
+	 * Finds the students registered to all the given courses.
+	 * 
+	 * @param courseCodes codes of the courses
+	 * @return ids of the students, in increasing order
+	 */
+	public int[] registeredToAll(int... courseCodes) {
+		int[][] sets = attendeeSets(courseCodes, true);
+		if (sets == null || sets.length == 0) {
+			return new int[0];
 		}
-		else{
-			int count = studentPoints.size();
+		if (sets.length == 1) {
+			return sets[0].clone();
 		}
-		
-		for (int i = 0; i < 3 && i<studentPoints.size(); i++) {
-		    Student topStudent = studentPoints.get(i);
-		    result.append(topStudent.getFullName()).append(" : ").append(topStudent.getPoint()).append("\n");
+		int[] result = sets[0];
+		for (int i = 1; i < sets.length && result.length > 0; i++) {
+			result = IdSet.intersection(result, sets[i]);
 		}
-	   
-		return result.toString();
-	//    }
-	      
-		// return result.toString();
+		return result;
 	}
 
-// R7
-    /**
-     * This field points to the logger for the class that can be used
-     * throughout the methods to log the activities.
-     */
-    public static final Logger logger = Logger.getLogger("University");
+	/**
+	 * Counts the students registered to all the given courses,
+	 * without listing them.
+	 * 
+	 * @param courseCodes codes of the courses
+	 * @return number of students
+	 */
+	public int countRegisteredToAll(int... courseCodes) {
+		int[][] sets = attendeeSets(courseCodes, true);
+		if (sets == null || sets.length == 0) {
+			return 0;
+		}
+		return IdSet.intersectionSize(sets[0], Arrays.copyOfRange(sets, 1, sets.length));
+	}
+
+	/**
+	 * Finds the students registered to at least one of the given courses.
+	 * Unknown courses are ignored.
+	 * 
+	 * @param courseCodes codes of the courses
+	 * @return ids of the students, in increasing order
+	 */
+	public int[] registeredToAny(int... courseCodes) {
+		return IdSet.union(attendeeSets(courseCodes, false));
+	}
+
+	/**
+	 * Counts the students registered to at least one of the given courses,
+	 * without listing them.
+	 * 
+	 * @param courseCodes codes of the courses
+	 * @return number of students
+	 */
+	public int countRegisteredToAny(int... courseCodes) {
+		return IdSet.unionSize(attendeeSets(courseCodes, false));
+	}
+
+	/**
+	 * Finds the students registered to a course but to none of the excluded ones.
+	 * Unknown excluded courses are ignored.
+	 * 
+	 * @param courseCode code of the course
+	 * @param excluded codes of the excluded courses
+	 * @return ids of the students, in increasing order
+	 */
+	public int[] registeredToExcept(int courseCode, int... excluded) {
+		int[][] sets = attendeeSets(new int[] { courseCode }, true);
+		if (sets == null) {
+			return new int[0];
+		}
+		return IdSet.difference(sets[0], attendeeSets(excluded, false));
+	}
+
+	/**
+	 * Counts the students registered to a course but to none of the
+	 * excluded ones, without listing them.
+	 * 
+	 * @param courseCode code of the course
+	 * @param excluded codes of the excluded courses
+	 * @return number of students
+	 */
+	public int countRegisteredToExcept(int courseCode, int... excluded) {
+		int[][] sets = attendeeSets(new int[] { courseCode }, true);
+		if (sets == null) {
+			return 0;
+		}
+		return IdSet.differenceSize(sets[0], attendeeSets(excluded, false));
+	}
+
+	/**
+	 * Takes the attendee sets of the courses as they are now, one course
+	 * at a time, without locking nor copying them (see {@link IdSet#view()});
+	 * the sets are sorted by increasing size, so that intersections
+	 * start from the smallest set.
+	 * 
+	 * @param required whether an unknown course makes the result {@code null}
+	 * 			or is skipped
+	 */
+	private int[][] attendeeSets(int[] courseCodes, boolean required) {
+		int[][] sets = new int[courseCodes.length][];
+		int n = 0;
+		for (int code : courseCodes) {
+			Course c = courses.get(code);
+			if (c == null) {
+				if (required) {
+					return null;
+				}
+				continue;
+			}
+			sets[n++] = c.attendeeSet.view();
+		}
+		sets = Arrays.copyOf(sets, n);
+		Arrays.sort(sets, Comparator.comparingInt(set -> set.length));
+		return sets;
+	}
+
+// R5
+	/**
+	 * records the grade (integer 0-30) for an exam can 
+	 * 
+	 * @param studentId the ID of the student
+	 * @param courseID	course code 
+	 * @param grade		grade ( 0-30)
+	 */
+	public void exam(int studentId, int courseID, int grade) {
+		long start = System.nanoTime();
+		Rejection rejection = addExam(studentId, courseID, grade);
+		if (refused(rejection)) {
+			return;
+		}
+		completed(Metrics.Operation.EXAM, start, Activity.EXAM, studentId, courseID, grade, null, null);
+	}
+
+	/**
+	 * Records the grade for an exam without logging.
+	 * 
+	 * @return {@code null} if the grade has been recorded,
+	 * 			the cause of the refusal otherwise
+	 */
+	Rejection addExam(int studentId, int courseID, int grade) {
+		Student selectedStudent = students.get(studentId);
+		Course selectedCourse = courses.get(courseID);
+		if (selectedStudent == null) {
+			return Rejection.UNKNOWN_STUDENT;
+		}
+		if (selectedCourse == null) {
+			return Rejection.UNKNOWN_COURSE;
+		}
+		if (grade < MIN_GRADE || grade > MAX_GRADE) {
+			return Rejection.INVALID_GRADE;
+		}
+		WriteAheadLog w = beginChange();
+		try {
+			synchronized (selectedStudent) {
+				synchronized (selectedCourse) {
+					applyExam(selectedStudent, selectedCourse, grade, w);
+				}
+			}
+		} finally {
+			endChange(w);
+		}
+		return null;
+	}
+
+	/**
+	 * Records the grade of an exam, journals it and publishes it to the change feed.
+	 * 
+	 * The student and the course must be locked, inside a change
+	 * entered by {@link #beginChange()}.
+	 * 
+	 * @param w the journal returned by {@link #beginChange()}, {@code null}
+	 * 			on the campuses of a {@link UniversityFederation}, which are not journaled
+	 */
+	void applyExam(Student s, Course c, int grade, WriteAheadLog w) {
+		int studentId = s.getId();
+		int courseID = c.getCode();
+		long version = versions.begin();
+		long horizon = versions.horizon();
+		s.exams.add(courseID, grade);
+		s.history.examined(courseID, grade, version, horizon);
+		c.history.examined(studentId, grade, version, horizon);
+		c.studentsGrade.add(studentId, grade);
+		if (w != null) w.examined(studentId, courseID, grade);
+		ChangeFeed f = feed;
+		if (f != null) f.examined(studentId, courseID, grade);
+		if (ownsStudent(studentId)) {
+			leaderboard.update(s);
+		}
+	}
+
+	/**
+	 * Computes the average grade for a student and formats it as a string
+	 * using the following format 
+	 * 
+	 * {@code "Student STUDENT_ID : AVG_GRADE"}. 
+	 * 
+	 * If the student has no exam recorded the method
+	 * returns {@code "Student STUDENT_ID hasn't taken any exams"}.
+	 * 
+	 * @param studentId the ID of the student
+	 * @return the average grade formatted as a string.
+	 */
+	public String studentAvg(int studentId) {
+		Student selectedStudent = students.get(studentId);
+		if (selectedStudent == null) {
+			return "Student not found.";
+		}
+		float avg;
+		synchronized (selectedStudent) {
+			if (selectedStudent.exams.size()<1){
+				return "Student " + selectedStudent.getId() + " hasn't taken any exams";
+			}
+			avg = (float)selectedStudent.exams.average();
+		}
+		return "Student" + " " + selectedStudent.getId() + " : " + avg;
+	}
+	
+	/**
+	 * Computes the average grades of all students that took the exam for a given course.
+	 * 
+	 * The format is the following: 
+	 * {@code "The average for the course COURSE_TITLE is: COURSE_AVG"}.
+	 * 
+	 * If no student took the exam for that course it returns {@code "No student has taken the exam in COURSE_TITLE"}.
+	 * 
+	 * @param courseId	course code 
+	 * @return the course average formatted as a string
+	 */
+	public String courseAvg(int courseId) {
+		Course selectedCourse = courses.get(courseId);
+		if (selectedCourse == null) {
+			return "Course not found.";
+		}
+		float avg;
+		synchronized (selectedCourse) {
+			if (selectedCourse.studentsGrade.size()<1){
+				return "No student has taken the exam in" + selectedCourse.getTitle();
+			}
+			avg = (float)selectedCourse.studentsGrade.average();
+		}
+		return "The average for the course" + selectedCourse.getTitle() + "is : " + avg;
+
+
+		
+	}
+
+	/**
+	 * Computes the standard deviation of the grades of a student.
+	 *
+	 * @param studentId the ID of the student
+	 * @return the standard deviation, or {@code NaN} if the student
+	 * 			is unknown or hasn't taken any exams
+	 */
+	public double studentStdDev(int studentId) {
+		Student selectedStudent = students.get(studentId);
+		if (selectedStudent == null) {
+			return Double.NaN;
+		}
+		synchronized (selectedStudent) {
+			return selectedStudent.exams.stdDev();
+		}
+	}
+
+	/**
+	 * Computes the standard deviation of the grades of all students
+	 * that took the exam for a given course.
+	 *
+	 * @param courseId	course code
+	 * @return the standard deviation, or {@code NaN} if the course
+	 * 			is unknown or no student has taken the exam
+	 */
+	public double courseStdDev(int courseId) {
+		Course selectedCourse = courses.get(courseId);
+		if (selectedCourse == null) {
+			return Double.NaN;
+		}
+		synchronized (selectedCourse) {
+			return selectedCourse.studentsGrade.stdDev();
+		}
+	}
+	
+// Grade distribution
+	/** codes of the courses of each teacher */
+	private final ConcurrentHashMap<String, IdColumn> coursesByTeacher = new ConcurrentHashMap<>();
+
+	/**
+	 * Adds a new course to the indexes
+	 */
+	void indexCourse(Course c) {
+		if (c.getTeacher() == null) {
+			return;
+		}
+		IdColumn codes = coursesByTeacher.computeIfAbsent(c.getTeacher(), t -> new IdColumn());
+		synchronized (codes) {
+			codes.add(c.getCode());
+		}
+		// the teacher can be found by the whole name or starting from any of the following words
+		String name = NameIndex.normalize(c.getTeacher());
+		int from = 0;
+		while (true) {
+			teacherNames.add(name.substring(from), c.getCode());
+			int space = name.indexOf(' ', from);
+			if (space < 0) {
+				break;
+			}
+			from = space + 1;
+		}
+	}
+
+	/**
+	 * Retrieves the distribution of the grades of a course.
+	 * 
+	 * @param courseId course code
+	 * @return the number of grades for each grade from 0 to 30,
+	 * 			or {@code null} if the course is unknown
+	 */
+	public int[] courseHistogram(int courseId) {
+		Course selectedCourse = courses.get(courseId);
+		if (selectedCourse == null) {
+			return null;
+		}
+		synchronized (selectedCourse) {
+			return selectedCourse.studentsGrade.histogram();
+		}
+	}
+
+	/**
+	 * Retrieves the distribution of the grades of a student.
+	 * 
+	 * @param studentId the ID of the student
+	 * @return the number of grades for each grade from 0 to 30,
+	 * 			or {@code null} if the student is unknown
+	 */
+	public int[] studentHistogram(int studentId) {
+		Student selectedStudent = students.get(studentId);
+		if (selectedStudent == null) {
+			return null;
+		}
+		synchronized (selectedStudent) {
+			return selectedStudent.exams.histogram();
+		}
+	}
+
+	/**
+	 * Computes a percentile of the grades of a course,
+	 * as defined in {@link GradeColumns#percentile}.
+	 * 
+	 * @param courseId course code
+	 * @param p the percentile (0-100)
+	 * @return the grade, or -1 if the course is unknown or no student has taken the exam
+	 */
+	public int coursePercentile(int courseId, double p) {
+		int[] histogram = courseHistogram(courseId);
+		return histogram == null ? -1 : GradeColumns.percentile(histogram, p);
+	}
+
+	/**
+	 * @param courseId course code
+	 * @return the median grade of the course, or {@code NaN}
+	 * 			if the course is unknown or no student has taken the exam
+	 */
+	public double courseMedian(int courseId) {
+		int[] histogram = courseHistogram(courseId);
+		return histogram == null ? Double.NaN : GradeColumns.median(histogram);
+	}
+
+	/**
+	 * @param courseId course code
+	 * @return the most frequent grade of the course (the highest in case of ties),
+	 * 			or -1 if the course is unknown or no student has taken the exam
+	 */
+	public int courseMode(int courseId) {
+		int[] histogram = courseHistogram(courseId);
+		return histogram == null ? -1 : GradeColumns.mode(histogram);
+	}
+
+	/**
+	 * Computes a percentile of the grades of a student,
+	 * as defined in {@link GradeColumns#percentile}.
+	 * 
+	 * @param studentId the ID of the student
+	 * @param p the percentile (0-100)
+	 * @return the grade, or -1 if the student is unknown or hasn't taken any exams
+	 */
+	public int studentPercentile(int studentId, double p) {
+		int[] histogram = studentHistogram(studentId);
+		return histogram == null ? -1 : GradeColumns.percentile(histogram, p);
+	}
+
+	/**
+	 * @param studentId the ID of the student
+	 * @return the median grade of the student, or {@code NaN}
+	 * 			if the student is unknown or hasn't taken any exams
+	 */
+	public double studentMedian(int studentId) {
+		int[] histogram = studentHistogram(studentId);
+		return histogram == null ? Double.NaN : GradeColumns.median(histogram);
+	}
+
+	/**
+	 * @param studentId the ID of the student
+	 * @return the most frequent grade of the student (the highest in case of ties),
+	 * 			or -1 if the student is unknown or hasn't taken any exams
+	 */
+	public int studentMode(int studentId) {
+		int[] histogram = studentHistogram(studentId);
+		return histogram == null ? -1 : GradeColumns.mode(histogram);
+	}
+
+	/**
+	 * Merges the distributions of the grades of several courses.
+	 * Unknown courses are ignored.
+	 * 
+	 * @param courseIds course codes
+	 * @return the number of grades for each grade from 0 to 30
+	 */
+	public int[] coursesHistogram(int... courseIds) {
+		int[] histogram = new int[GradeColumns.BUCKETS];
+		for (int code : courseIds) {
+			Course c = courses.get(code);
+			if (c != null) {
+				synchronized (c) {
+					c.studentsGrade.addTo(histogram);
+				}
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Merges the distributions of the grades of all the courses of a teacher.
+	 * 
+	 * @param teacherName name of the teacher, as given when activating the courses
+	 * @return the number of grades for each grade from 0 to 30
+	 */
+	public int[] teacherHistogram(String teacherName) {
+		IdColumn codes = coursesByTeacher.get(teacherName);
+		if (codes == null) {
+			return new int[GradeColumns.BUCKETS];
+		}
+		int[] copy;
+		synchronized (codes) {
+			copy = new int[codes.size()];
+			for (int i = 0; i < copy.length; i++) {
+				copy[i] = codes.get(i);
+			}
+		}
+		return coursesHistogram(copy);
+	}
+
+	/**
+	 * Estimates the heap space taken by the grades recorded so far,
+	 * both in the per-student and in the per-course columns
+	 * (histograms included).
+	 *
+	 * @return size in bytes
+	 */
+	public long gradeFootprint() {
+		long bytes = 0;
+		for (Student s : students) {
+			bytes += s.exams.footprint();
+		}
+		for (Course c : courses) {
+			bytes += c.studentsGrade.footprint();
+		}
+		return bytes;
+	}
+
+
+// Campuses
+	/**
+	 * @return whether the student id belongs to the range of this university,
+	 * 			rather than to a replica of a student of another campus
+	 */
+	boolean ownsStudent(int id) {
+		return (long)id - firstStudentId >= 0 && (long)id - firstStudentId < studentIdRange;
+	}
+
+	/**
+	 * @return whether the course code belongs to the range of this university
+	 */
+	boolean ownsCourse(int code) {
+		return (long)code - firstCourseCode >= 0 && (long)code - firstCourseCode < courseCodeRange;
+	}
+
+	/**
+	 * Retrieves the replica of a student of another campus, creating it if needed.
+	 * 
+	 * The replica has the same id and name and records the registrations
+	 * and exams of the student to the courses of this university,
+	 * but is not ranked nor indexed by name.
+	 */
+	Student replica(Student original) {
+		synchronized (students) {
+			Student replica = students.get(original.getId());
+			if (replica == null) {
+				replica = new Student(original.getId(), original.getFirstName(), original.getLastName());
+				students.put(replica.getId(), replica);
+			}
+			return replica;
+		}
+	}
+
+	/**
+	 * Retrieves the replica of a course of another campus, creating it if needed.
+	 * 
+	 * The replica has the same code, title and teacher and records the
+	 * registrations and exams of the students of this university to the course.
+	 */
+	Course replica(Course original) {
+		synchronized (courses) {
+			Course replica = courses.get(original.getCode());
+			if (replica == null) {
+				replica = new Course(original.getTitle(), original.getTeacher(), original.getCode());
+				courses.put(replica.getCode(), replica);
+			}
+			return replica;
+		}
+	}
+
+// Bulk loading
+	/**
+	 * Loads enrollments, course activations, registrations and exams
+	 * from a line-delimited file, as described in {@link BulkLoader}.
+	 * 
+	 * Rows are not logged one by one, a single summary is logged
+	 * at the end of the import.
+	 * 
+	 * @param file the file to be imported
+	 * @return the outcome of the import
+	 * @throws IOException in case of errors reading the file
+	 */
+	public ImportReport importFile(Path file) throws IOException {
+		ImportReport report = new BulkLoader(this).load(file);
+		awaitDurable();
+		for (Rejection cause : Rejection.values()) {
+			metrics.rejected(cause, report.getRejected(cause));
+		}
+		logger.info("Imported " + file + ": " + report);
+		return report;
+	}
+
+	/**
+	 * Makes room for the given number of additional students and courses.
+	 */
+	void reserve(int moreStudents, int moreCourses) {
+		students.ensureCapacity(studentIdCounter + moreStudents);
+		courses.ensureCapacity(courseCodeCounter + moreCourses);
+	}
+
+// Snapshots
+	/**
+	 * Saves the state of the university to a binary file,
+	 * in the format described in {@link SnapshotFile}.
+	 * 
+	 * The file is written to a temporary file first and then moved
+	 * in place, so that an existing snapshot is never left half written.
+	 * The snapshot should be taken while no other thread is
+	 * modifying the university.
+	 * 
+	 * @param file the snapshot file
+	 * @throws IOException in case of errors writing the file
+	 */
+	public void snapshot(Path file) throws IOException {
+		SnapshotFile.write(this, file);
+	}
+
+	/**
+	 * Rebuilds a university from a snapshot saved by {@link #snapshot(Path)}.
+	 * 
+	 * @param file the snapshot file
+	 * @return the restored university
+	 * @throws IOException in case of errors reading the file
+	 */
+	public static University restore(Path file) throws IOException {
+		return SnapshotFile.read(file);
+	}
+
+// Write-ahead log
+	/** the journal of the changes, set by {@link WriteAheadLog} */
+	volatile WriteAheadLog wal;
+
+	/**
+	 * Enters a change that must be journaled, if a journal is attached.
+	 * 
+	 * @return the journal, or {@code null} if the change is not journaled
+	 */
+	private WriteAheadLog beginChange() {
+		WriteAheadLog w = wal;
+		return w != null && w.begin() ? w : null;
+	}
+
+	private static void endChange(WriteAheadLog w) {
+		if (w != null) {
+			w.end();
+		}
+	}
+
+	/**
+	 * Waits, if the journal requires it, until the changes
+	 * made so far are on disk.
+	 */
+	private void awaitDurable() {
+		WriteAheadLog w = wal;
+		if (w != null) {
+			w.awaitDurable();
+		}
+	}
+
+	/**
+	 * Reports the refusal of an operation and counts it in the metrics.
+	 * 
+	 * @param rejection the cause of the refusal, {@code null} if the operation succeeded
+	 * @return whether the operation has been refused
+	 */
+	boolean refused(Rejection rejection) {
+		if (rejection == null) {
+			return false;
+		}
+		metrics.rejected(rejection, 1);
+		System.err.println(rejection.getMessage());
+		return true;
+	}
+
+	/**
+	 * Completes an operation once its changes are applied and all locks
+	 * released: waits until the changes are durable, if the journal
+	 * requires it, logs the activity and records the latency.
+	 * 
+	 * @param start time the operation started, from {@link System#nanoTime()}
+	 */
+	void completed(Metrics.Operation operation, long start, Activity activity,
+					int n1, int n2, int n3, String s1, String s2) {
+		awaitDurable();
+		log(activity, n1, n2, n3, s1, s2);
+		metrics.record(operation, start);
+	}
+
+// R6
+	/**
+	 * Retrieve information for the best students to award a price.
+	 * 
+	 * The students' score is evaluated as the average grade of the exams they've taken. 
+	 * To take into account the number of exams taken and not only the grades, 
+	 * a special bonus is assigned on top of the average grade: 
+	 * the number of taken exams divided by the number of courses the student is enrolled to, multiplied by 10.
+	 * The bonus is added to the exam average to compute the student score.
+	 * 
+	 * The method returns a string with the information about the three students with the highest score. 
+	 * The students appear one per row (rows are terminated by a new-line character {@code '\n'}) 
+	 * and each one of them is formatted as: {@code "STUDENT_FIRSTNAME STUDENT_LASTNAME : SCORE"}.
+	 * 
+	 * @return info on the best three students.
+	 */
+	
+	public String topThreeStudents() {
+		return topStudents(3);
+	}
+
+	/**
+	 * Retrieve information for the best students, formatted
+	 * as described in method {@link #topThreeStudents}.
+	 * 
+	 * Students with the same score are listed by increasing id.
+	 * 
+	 * @param k number of students to report
+	 * @return info on the best k students.
+	 */
+	public String topStudents(int k) {
+		long start = System.nanoTime();
+		ParallelScoring.Ranking best = leaderboard.topK(k);
+		if (best.size == 0) {
+			metrics.record(Metrics.Operation.TOP_STUDENTS, start);
+			return "No students have taken exams.";
+		}
+
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < best.size; i++) {
+		    result.append(students.get(best.ids[i]).getFullName()).append(" : ").append(best.scores[i]).append("\n");
+		}
+		metrics.record(Metrics.Operation.TOP_STUDENTS, start);
+		return result.toString();
+	}
+
+// Name search
+	private final NameIndex surnames = new NameIndex();
+	private final NameIndex teacherNames = new NameIndex();
+
+	/**
+	 * Adds a new student to the indexes
+	 */
+	void indexStudent(Student s) {
+		surnames.add(s.getLastName(), s.getId());
+	}
+
+	/**
+	 * Finds the students whose surname starts with the given prefix,
+	 * ignoring case and accents.
+	 * 
+	 * @param prefix beginning of the surname
+	 * @param limit maximum number of students
+	 * @return ids of the students, by surname and then by id
+	 */
+	public int[] findStudents(String prefix, int limit) {
+		return surnames.prefix(prefix, limit);
+	}
+
+	/**
+	 * Finds the students whose surname differs from the given one
+	 * by at most the given number of characters (inserted, deleted or replaced),
+	 * ignoring case and accents.
+	 * 
+	 * @param surname the surname, possibly misspelled
+	 * @param maxEdits maximum number of differences
+	 * @param limit maximum number of students
+	 * @return ids of the students, closest surnames first
+	 */
+	public int[] findStudentsLike(String surname, int maxEdits, int limit) {
+		return surnames.similar(surname, maxEdits, limit);
+	}
+
+	/**
+	 * Finds the courses of the teachers whose name, or surname,
+	 * starts with the given prefix, ignoring case and accents.
+	 * 
+	 * @param prefix beginning of the name or of the surname of the teacher
+	 * @param limit maximum number of courses
+	 * @return codes of the courses
+	 */
+	public int[] findCoursesByTeacher(String prefix, int limit) {
+		return teacherNames.prefix(prefix, limit);
+	}
+
+	/**
+	 * Finds the courses of the teachers whose name, or surname,
+	 * differs from the given one by at most the given number of characters.
+	 * 
+	 * @param teacherName the name or the surname of the teacher, possibly misspelled
+	 * @param maxEdits maximum number of differences
+	 * @param limit maximum number of courses
+	 * @return codes of the courses, closest names first
+	 */
+	public int[] findCoursesByTeacherLike(String teacherName, int maxEdits, int limit) {
+		return teacherNames.similar(teacherName, maxEdits, limit);
+	}
+
+// Parallel scoring
+	/**
+	 * Retrieve information for the best students, formatted as described in
+	 * method {@link #topThreeStudents}, recomputing the scores of all
+	 * the students in parallel instead of using the ranking kept up to date
+	 * by each operation.
+	 * 
+	 * The result is the same whatever the number of threads of the pool.
+	 * 
+	 * @param k number of students to report
+	 * @param pool the pool running the computation
+	 * @return info on the best k students.
+	 */
+	public String topStudents(int k, ForkJoinPool pool) {
+		ParallelScoring.Ranking best = scoring(k).run(pool);
+		if (best.size == 0) {
+			return "No students have taken exams.";
+		}
+
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < best.size; i++) {
+			result.append(students.get(best.ids[i]).getFullName()).append(" : ").append(best.scores[i]).append("\n");
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Computes the award scores of all the students in parallel.
+	 * 
+	 * @param pool the pool running the computation
+	 * @return the score of each student, indexed by {@code id - FIRST_STUDENT_ID};
+	 * 			{@code NaN} for the students that haven't taken any exams
+	 */
+	public float[] scores(ForkJoinPool pool) {
+		ParallelScoring scoring = scoring(0);
+		scoring.run(pool);
+		return scoring.scores();
+	}
+
+	private ParallelScoring scoring(int k) {
+		if (k < 0) throw new IllegalArgumentException("k must not be negative");
+		int count;
+		synchronized (students) {
+			count = studentIdCounter;
+		}
+		return new ParallelScoring(students, firstStudentId, count, k);
+	}
+
+// Change feed
+	private volatile ChangeFeed feed;
+
+	/**
+	 * Publishes the enrollments, registrations (including the ones refused
+	 * or put on hold because the student or the course is full),
+	 * deregistrations and exams through a feed,
+	 * whether they come from the single operations or from {@link #importFile}.
+	 * 
+	 * Publishing never waits for the subscribers of the feed.
+	 * 
+	 * @param feed the feed, or {@code null} to stop publishing
+	 */
+	public void setChangeFeed(ChangeFeed feed) {
+		this.feed = feed;
+	}
+
+// Metrics
+	private final Metrics metrics = new Metrics();
+
+	/**
+	 * Takes the counts and latencies of the operations performed so far.
+	 * 
+	 * Each call to {@link #enroll}, {@link #activate}, {@link #register},
+	 * {@link #deregister}, {@link #exam} and {@link #topStudents(int)} is timed; refused operations,
+	 * including the rows refused by {@link #importFile}, are counted by cause.
+	 * 
+	 * @return the metrics
+	 */
+	public MetricsSnapshot metrics() {
+		return metrics.snapshot();
+	}
+
+	/**
+	 * Exposes the metrics through JMX, registering them with the platform
+	 * MBean server as {@code university:type=Metrics,name="<university name>"}.
+	 * 
+	 * @return the name of the registered MBean
+	 * @throws JMException if the MBean cannot be registered,
+	 * 			e.g. when another university with the same name is registered
+	 */
+	public ObjectName registerMBean() throws JMException {
+		ObjectName objectName = metricsName();
+		ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+		return objectName;
+	}
+
+	/**
+	 * Removes the MBean registered by {@link #registerMBean()}.
+	 * 
+	 * @throws JMException if the MBean is not registered
+	 */
+	public void unregisterMBean() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName());
+	}
+
+	private ObjectName metricsName() throws MalformedObjectNameException {
+		return new ObjectName("university:type=Metrics,name=" + ObjectName.quote(String.valueOf(name)));
+	}
+
+// R7
+    /**
+     * This field points to the logger for the class that can be used
+     * throughout the methods to log the activities.
+     */
+    public static final Logger logger = Logger.getLogger("University");
+
+	private volatile ActivityJournal journal;
+
+	/**
+	 * Sends the activity log through an asynchronous journal
+	 * instead of writing it synchronously from each operation.
+	 * 
+	 * @param journal the journal, or {@code null} to go back to synchronous logging
+	 */
+	public void setActivityJournal(ActivityJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Logs an activity.
+	 * 
+	 * The message is formatted only if the logger accepts it,
+	 * and by the journal thread if a journal is set.
+	 */
+	private void log(Activity activity, int n1, int n2, int n3, String s1, String s2) {
+		if (!logger.isLoggable(Level.INFO)) {
+			return;
+		}
+		ActivityJournal j = journal;
+		if (j != null) {
+			j.record(activity, n1, n2, n3, s1, s2);
+		} else {
+			logger.logp(Level.INFO, University.class.getName(), activity.getMethod(),
+						activity.format(n1, n2, n3, s1, s2));
+		}
+	}
 
 }
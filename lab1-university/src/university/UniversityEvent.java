@@ -0,0 +1,86 @@
+package university;
+
+/**
+ * A change to a {@link University}, published by a {@link ChangeFeed}.
+ */
+public class UniversityEvent {
+
+	/**
+	 * Kinds of change
+	 */
+	public enum Type {
+		/** a student has been enrolled */
+		ENROLLED,
+		/** a student has been registered to a course, possibly from its waitlist */
+		REGISTERED,
+		/** a student has been removed from a course */
+		DEREGISTERED,
+		/** the grade of an exam has been recorded */
+		EXAM_RECORDED,
+		/** a registration has been refused, or put on the waitlist, because the student or the course was full */
+		CAPACITY_REJECTED
+	}
+
+	private final long sequence;
+	private final Type type;
+	private final int studentId;
+	private final int courseCode;
+	private final int grade;
+	private final Rejection cause;
+
+	UniversityEvent(long sequence, Type type, int studentId, int courseCode, int grade, Rejection cause) {
+		this.sequence = sequence;
+		this.type = type;
+		this.studentId = studentId;
+		this.courseCode = courseCode;
+		this.grade = grade;
+		this.cause = cause;
+	}
+
+	/**
+	 * @return position of the event in the feed, starting from 1;
+	 * 			a gap means that events have been dropped
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/** @return kind of change */
+	public Type getType() {
+		return type;
+	}
+
+	/** @return id of the student */
+	public int getStudentId() {
+		return studentId;
+	}
+
+	/** @return code of the course, 0 for {@link Type#ENROLLED} */
+	public int getCourseCode() {
+		return courseCode;
+	}
+
+	/** @return the grade, for {@link Type#EXAM_RECORDED}; -1 otherwise */
+	public int getGrade() {
+		return grade;
+	}
+
+	/** @return why the registration was refused, for {@link Type#CAPACITY_REJECTED}; {@code null} otherwise */
+	public Rejection getCause() {
+		return cause;
+	}
+
+	@Override
+	public String toString() {
+		switch (type) {
+		case ENROLLED:
+			return sequence + " " + type + " " + studentId;
+		case EXAM_RECORDED:
+			return sequence + " " + type + " " + studentId + " " + courseCode + " " + grade;
+		case CAPACITY_REJECTED:
+			return sequence + " " + type + " " + studentId + " " + courseCode + " " + cause;
+		default:
+			return sequence + " " + type + " " + studentId + " " + courseCode;
+		}
+	}
+}
@@ -0,0 +1,383 @@
+package university;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A university spread over several campuses, each managed by its own
+ * {@link University}.
+ *
+ * The ranges of student ids and course codes are split evenly among the
+ * campuses, so that each campus assigns ids from its own counter and
+ * the campus of a student or a course is found from its id alone.
+ * New students and courses are placed on a campus given by the caller
+ * or, by default, in turn by each thread, so that threads enrolling
+ * at the same time do not compete for the same counter.
+ *
+ * A student can attend courses of other campuses: the campus of the
+ * student keeps a replica of the course and the campus of the course
+ * keeps a replica of the student, so that the study plan and the
+ * averages of a student are answered by its campus alone, and the
+ * attendees and the averages of a course by the campus of the course.
+ * Limits are checked on the original student and course, which are
+ * locked together with their replicas (students before courses), and
+ * both campuses apply the change in the same locked section.
+ * The campuses are not journaled. Once the locks are released,
+ * the operation is logged as by {@link University}.
+ * The best students are ranked by each campus in parallel and the
+ * rankings are merged.
+ *
+ * Results are formatted as the corresponding methods of {@link University}.
+ */
+public class UniversityFederation {
+
+	private final String name;
+	private final University[] campuses;
+	private final int studentIdRange;
+	private final int courseCodeRange;
+	private final Executor executor;
+	private final ThreadLocal<int[]> nextCampus;
+
+	/**
+	 * Creates a federation ranking students on the common fork/join pool
+	 *
+	 * @param name name of the university
+	 * @param campuses number of campuses
+	 */
+	public UniversityFederation(String name, int campuses) {
+		this(name, campuses, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a federation
+	 *
+	 * @param name name of the university
+	 * @param campuses number of campuses
+	 * @param executor runs the queries on the campuses in parallel
+	 */
+	public UniversityFederation(String name, int campuses, Executor executor) {
+		if (campuses < 1) throw new IllegalArgumentException("there must be at least one campus");
+		this.name = name;
+		this.executor = executor;
+		this.campuses = new University[campuses];
+		this.studentIdRange = (Integer.MAX_VALUE - University.FIRST_STUDENT_ID) / campuses;
+		this.courseCodeRange = (Integer.MAX_VALUE - University.FIRST_COURSE_CODE) / campuses;
+		for (int i = 0; i < campuses; i++) {
+			this.campuses[i] = new University(name + " #" + i,
+					University.FIRST_STUDENT_ID + i * studentIdRange, studentIdRange,
+					University.FIRST_COURSE_CODE + i * courseCodeRange, courseCodeRange);
+		}
+		this.nextCampus = ThreadLocal.withInitial(() -> new int[] { (int)(Thread.currentThread().getId() % campuses) });
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return number of campuses
+	 */
+	public int getCampusCount() {
+		return campuses.length;
+	}
+
+	/**
+	 * @param id id of a student
+	 * @return the campus the id belongs to, or -1 if outside all ranges
+	 */
+	public int campusOfStudent(int id) {
+		long offset = (long)id - University.FIRST_STUDENT_ID;
+		return offset < 0 || offset >= (long)studentIdRange * campuses.length ? -1 : (int)(offset / studentIdRange);
+	}
+
+	/**
+	 * @param code code of a course
+	 * @return the campus the code belongs to, or -1 if outside all ranges
+	 */
+	public int campusOfCourse(int code) {
+		long offset = (long)code - University.FIRST_COURSE_CODE;
+		return offset < 0 || offset >= (long)courseCodeRange * campuses.length ? -1 : (int)(offset / courseCodeRange);
+	}
+
+	private Student student0(int id) {
+		int campus = campusOfStudent(id);
+		return campus < 0 ? null : campuses[campus].students.get(id);
+	}
+
+	private Course course0(int code) {
+		int campus = campusOfCourse(code);
+		return campus < 0 ? null : campuses[campus].courses.get(code);
+	}
+
+	private int nextCampus() {
+		int[] next = nextCampus.get();
+		int campus = next[0];
+		next[0] = (campus + 1) % campuses.length;
+		return campus;
+	}
+
+	/**
+	 * Enrolls a student on the next campus of the calling thread
+	 *
+	 * @param firstName first name of the student
+	 * @param lastName last name of the student
+	 * @return the unique id of the newly enrolled student
+	 */
+	public int enroll(String firstName, String lastName) {
+		return enroll(nextCampus(), firstName, lastName);
+	}
+
+	/**
+	 * Enrolls a student on a given campus
+	 *
+	 * @param campus the campus (0 to {@link #getCampusCount()} - 1)
+	 * @param firstName first name of the student
+	 * @param lastName last name of the student
+	 * @return the unique id of the newly enrolled student
+	 */
+	public int enroll(int campus, String firstName, String lastName) {
+		return campuses[campus].enroll(firstName, lastName);
+	}
+
+	/**
+	 * Activates a course on the next campus of the calling thread
+	 *
+	 * @param courseTitle title of the course
+	 * @param teacherName name of the teacher
+	 * @return the unique code assigned to the course
+	 */
+	public int activate(String courseTitle, String teacherName) {
+		return activate(nextCampus(), courseTitle, teacherName);
+	}
+
+	/**
+	 * Activates a course on a given campus
+	 *
+	 * @param campus the campus (0 to {@link #getCampusCount()} - 1)
+	 * @param courseTitle title of the course
+	 * @param teacherName name of the teacher
+	 * @return the unique code assigned to the course
+	 */
+	public int activate(int campus, String courseTitle, String teacherName) {
+		return campuses[campus].activate(courseTitle, teacherName);
+	}
+
+	public String student(int id) {
+		Student s = student0(id);
+		return s == null ? null : s.getInfo();
+	}
+
+	public String course(int code) {
+		University host = campus(code);
+		return host == null ? null : host.course(code);
+	}
+
+	private University campus(int code) {
+		int campus = campusOfCourse(code);
+		return campus < 0 ? null : campuses[campus];
+	}
+
+	private University home(int id) {
+		int campus = campusOfStudent(id);
+		return campus < 0 ? null : campuses[campus];
+	}
+
+	/**
+	 * @return the campus that reports the refusal of an operation of a student on a course
+	 */
+	private University measuring(University home, University host) {
+		return home != null ? home : host != null ? host : campuses[0];
+	}
+
+	/**
+	 * Registers a student to a course, possibly of another campus
+	 *
+	 * @param studentID id of the student
+	 * @param courseCode id of the course
+	 */
+	public void register(int studentID, int courseCode) {
+		University home = home(studentID);
+		University host = campus(courseCode);
+		if (home != null && home == host) {
+			home.register(studentID, courseCode);
+			return;
+		}
+		long start = System.nanoTime();
+		Rejection rejection = addRegistration(studentID, courseCode);
+		if (measuring(home, host).refused(rejection)) {
+			return;
+		}
+		home.completed(Metrics.Operation.REGISTER, start, Activity.REGISTER, studentID, courseCode, 0, null, null);
+	}
+
+	Rejection addRegistration(int studentID, int courseCode) {
+		Student s = student0(studentID);
+		Course c = course0(courseCode);
+		if (s == null) {
+			return Rejection.UNKNOWN_STUDENT;
+		}
+		if (c == null) {
+			return Rejection.UNKNOWN_COURSE;
+		}
+		University home = home(studentID);
+		University host = campus(courseCode);
+		if (home == host) {
+			return home.addRegistration(studentID, courseCode);
+		}
+		Student replica = host.replica(s);
+		Course local = home.replica(c);
+		synchronized (s) {
+			synchronized (replica) {
+				synchronized (local) {
+					synchronized (c) {
+						if (s.courseCodes.size() >= University.MAX_COURSES_PER_STUDENT) {
+							return Rejection.STUDENT_FULL;
+						}
+						if (c.studentIds.size() >= University.MAX_STUDENTS_PER_COURSE) {
+							return Rejection.COURSE_FULL;
+						}
+						// both limits are checked before either campus changes, and with
+						// the originals locked the limits of the replicas cannot be reached
+						home.applyRegistration(s, local, null);
+						host.applyRegistration(replica, c, null);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Records the grade of an exam, possibly in a course of another campus
+	 *
+	 * @param studentId the ID of the student
+	 * @param courseID course code
+	 * @param grade grade (0-30)
+	 */
+	public void exam(int studentId, int courseID, int grade) {
+		University home = home(studentId);
+		University host = campus(courseID);
+		if (home != null && home == host) {
+			home.exam(studentId, courseID, grade);
+			return;
+		}
+		long start = System.nanoTime();
+		Rejection rejection = addExam(studentId, courseID, grade);
+		if (measuring(home, host).refused(rejection)) {
+			return;
+		}
+		home.completed(Metrics.Operation.EXAM, start, Activity.EXAM, studentId, courseID, grade, null, null);
+	}
+
+	Rejection addExam(int studentId, int courseID, int grade) {
+		Student s = student0(studentId);
+		Course c = course0(courseID);
+		if (s == null) {
+			return Rejection.UNKNOWN_STUDENT;
+		}
+		if (c == null) {
+			return Rejection.UNKNOWN_COURSE;
+		}
+		if (grade < University.MIN_GRADE || grade > University.MAX_GRADE) {
+			return Rejection.INVALID_GRADE;
+		}
+		University home = home(studentId);
+		University host = campus(courseID);
+		if (home == host) {
+			return home.addExam(studentId, courseID, grade);
+		}
+		Student replica = host.replica(s);
+		Course local = home.replica(c);
+		synchronized (s) {
+			synchronized (replica) {
+				synchronized (local) {
+					synchronized (c) {
+						home.applyExam(s, local, grade, null);
+						host.applyExam(replica, c, grade, null);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param courseCode unique id of the course
+	 * @return list of attendees separated by "\n"
+	 * @see University#listAttendees(int)
+	 */
+	public String listAttendees(int courseCode) {
+		University host = campus(courseCode);
+		return host == null ? "Course not found." : host.listAttendees(courseCode);
+	}
+
+	/**
+	 * @param studentID id of the student
+	 * @return the list of courses the student is registered for, on any campus
+	 * @see University#studyPlan(int)
+	 */
+	public String studyPlan(int studentID) {
+		University home = home(studentID);
+		return home == null ? "Student not found." : home.studyPlan(studentID);
+	}
+
+	/**
+	 * @param studentId the ID of the student
+	 * @return the average grade formatted as a string.
+	 * @see University#studentAvg(int)
+	 */
+	public String studentAvg(int studentId) {
+		University home = home(studentId);
+		return home == null ? "Student not found." : home.studentAvg(studentId);
+	}
+
+	/**
+	 * @param courseId course code
+	 * @return the course average formatted as a string
+	 * @see University#courseAvg(int)
+	 */
+	public String courseAvg(int courseId) {
+		University host = campus(courseId);
+		return host == null ? "Course not found." : host.courseAvg(courseId);
+	}
+
+	/**
+	 * @return info on the best three students of all the campuses.
+	 * @see University#topThreeStudents()
+	 */
+	public String topThreeStudents() {
+		return topStudents(3);
+	}
+
+	/**
+	 * Ranks the students of all the campuses: each campus finds its
+	 * best k students in parallel, then the rankings are merged.
+	 *
+	 * @param k number of students to report
+	 * @return info on the best k students.
+	 * @see University#topStudents(int)
+	 */
+	public String topStudents(int k) {
+		if (k < 0) throw new IllegalArgumentException("k must not be negative");
+		List<CompletableFuture<ParallelScoring.Ranking>> parts = new ArrayList<>(campuses.length);
+		for (University campus : campuses) {
+			parts.add(CompletableFuture.supplyAsync(() -> campus.leaderboard.topK(k), executor));
+		}
+		ParallelScoring.Ranking best = new ParallelScoring.Ranking(k);
+		for (CompletableFuture<ParallelScoring.Ranking> part : parts) {
+			best = best.merge(part.join());
+		}
+		if (best.size == 0) {
+			return "No students have taken exams.";
+		}
+
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < best.size; i++) {
+			result.append(student0(best.ids[i]).getFullName()).append(" : ").append(best.scores[i]).append("\n");
+		}
+		return result.toString();
+	}
+}
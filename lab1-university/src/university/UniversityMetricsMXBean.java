@@ -0,0 +1,26 @@
+package university;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management interface of the {@link Metrics} of a {@link University},
+ * registered through {@link University#registerMBean()}.
+ */
+public interface UniversityMetricsMXBean {
+
+	/**
+	 * @return count and latency statistics for each operation
+	 */
+	List<MetricsSnapshot.OperationStats> getOperations();
+
+	/**
+	 * @return number of refused operations by cause
+	 */
+	Map<String, Long> getRejections();
+
+	/**
+	 * Forgets the recorded counts and latencies
+	 */
+	void reset();
+}
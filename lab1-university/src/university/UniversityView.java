@@ -0,0 +1,367 @@
+package university;
+
+import java.lang.ref.Cleaner;
+import java.util.Arrays;
+
+/**
+ * Read-only view of a {@link University} at a given version,
+ * taken by {@link University#snapshot()}.
+ *
+ * The view shares the data of the university and ignores the students,
+ * courses, registrations and exams added after its version, so that
+ * it keeps answering the same while the university changes.
+ * Results are formatted as the corresponding methods of {@link University}.
+ *
+ * Each query reads the current lists of a student or course under its
+ * lock, only while copying them, and undoes the changes newer than the
+ * view recorded in its history (see {@link History}). Views are not
+ * lock-free: as with the queries of {@link University}, a change waits
+ * while a view copies the lists of the student or course it modifies.
+ * The university
+ * records these changes while the view is open: views should be closed
+ * when no longer needed, otherwise they are closed when garbage collected.
+ * Views can be used by several threads.
+ */
+public class UniversityView implements AutoCloseable {
+
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	private final University university;
+	private final long version;
+	private final Cleaner.Cleanable cleanable;
+
+	UniversityView(University university) {
+		this.university = university;
+		Versions versions = university.versions;
+		long v = versions.openView();
+		this.version = v;
+		this.cleanable = CLEANER.register(this, () -> versions.closeView(v));
+	}
+
+	/**
+	 * @return the number of changes to the university seen by the view
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Stops recording the changes this view would need to undo;
+	 * the view must no longer be used.
+	 */
+	@Override
+	public void close() {
+		cleanable.clean();
+	}
+
+	private Student student0(int id) {
+		Student s = university.students.get(id);
+		return s != null && s.version <= version ? s : null;
+	}
+
+	private Course course0(int code) {
+		Course c = university.courses.get(code);
+		return c != null && c.version <= version ? c : null;
+	}
+
+	/**
+	 * Registrations of a student or course at the version of the view
+	 */
+	private static final class Registered {
+		int[] keys;
+		int size;
+	}
+
+	/**
+	 * Exams of a student or course at the version of the view
+	 */
+	private static final class Exams {
+		long sum;
+		int count;
+
+		double average() {
+			return (double)sum / count;
+		}
+	}
+
+	/**
+	 * Copies a list of registrations and undoes the newer changes;
+	 * the owner of the list and of the history must be locked.
+	 */
+	private Registered registered(IdColumn live, History history) {
+		int from = history.newerThan(version);
+		Registered r = new Registered();
+		r.size = live.size();
+		r.keys = new int[r.size + history.size() - from];
+		for (int i = 0; i < r.size; i++) {
+			r.keys[i] = live.get(i);
+		}
+		for (int i = history.size() - 1; i >= from; i--) {
+			if (history.isRegistration(i)) {
+				r.size--;	// registrations are appended
+			} else if (history.isDeregistration(i)) {
+				int at = history.position(i);
+				System.arraycopy(r.keys, at, r.keys, at + 1, r.size - at);
+				r.keys[at] = history.key(i);
+				r.size++;
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Counts the exams and undoes the newer ones;
+	 * the owner of the grades and of the history must be locked.
+	 */
+	private Exams exams(GradeColumns live, History history) {
+		Exams e = new Exams();
+		e.sum = live.sum();
+		e.count = live.size();
+		for (int i = history.newerThan(version); i < history.size(); i++) {
+			if (history.isExam(i)) {
+				e.sum -= history.grade(i);
+				e.count--;
+			}
+		}
+		return e;
+	}
+
+	private Registered registered(Student s) {
+		synchronized (s) {
+			return registered(s.courseCodes, s.history);
+		}
+	}
+
+	private Registered registered(Course c) {
+		synchronized (c) {
+			return registered(c.studentIds, c.history);
+		}
+	}
+
+	private Exams exams(Student s) {
+		synchronized (s) {
+			return exams(s.exams, s.history);
+		}
+	}
+
+	private Exams exams(Course c) {
+		synchronized (c) {
+			return exams(c.studentsGrade, c.history);
+		}
+	}
+
+	/**
+	 * @return the course codes of the study plan of a student in the view
+	 */
+	int[] studyPlan(Student s) {
+		Registered plan = registered(s);
+		return Arrays.copyOf(plan.keys, plan.size);
+	}
+
+	/**
+	 * @return the ids of the attendees of a course in the view
+	 */
+	int[] attendees(Course c) {
+		Registered attendees = registered(c);
+		return Arrays.copyOf(attendees.keys, attendees.size);
+	}
+
+	/**
+	 * @return a copy of the grades of a student in the view
+	 */
+	GradeColumns grades(Student s) {
+		synchronized (s) {
+			return grades(s.exams, s.history);
+		}
+	}
+
+	/**
+	 * @return a copy of the grades of a course in the view
+	 */
+	GradeColumns grades(Course c) {
+		synchronized (c) {
+			return grades(c.studentsGrade, c.history);
+		}
+	}
+
+	/**
+	 * Copies the grades but the newer ones, which are the last recorded;
+	 * the owner of the grades and of the history must be locked.
+	 */
+	private GradeColumns grades(GradeColumns live, History history) {
+		int n = live.size();
+		for (int i = history.newerThan(version); i < history.size(); i++) {
+			if (history.isExam(i)) {
+				n--;
+			}
+		}
+		GradeColumns copy = new GradeColumns();
+		copy.ensureCapacity(n);
+		for (int i = 0; i < n; i++) {
+			copy.add(live.key(i), live.grade(i));
+		}
+		return copy;
+	}
+
+	/**
+	 * @param id the id of the student
+	 * @return information about the student, or {@code null} if not enrolled in the view
+	 * @see University#student(int)
+	 */
+	public String student(int id) {
+		Student s = student0(id);
+		return s == null ? null : s.getInfo();
+	}
+
+	/**
+	 * @param code unique code of the course
+	 * @return information about the course, or {@code null} if not activated in the view
+	 * @see University#course(int)
+	 */
+	public String course(int code) {
+		Course c = course0(code);
+		return c == null ? null : c.getCode() + "," + c.getTitle() + "," + c.getTeacher();
+	}
+
+	/**
+	 * @param courseCode unique id of the course
+	 * @return list of attendees separated by "\n"
+	 * @see University#listAttendees(int)
+	 */
+	public String listAttendees(int courseCode) {
+		Course c = course0(courseCode);
+		if (c == null) {
+			return "Course not found.";
+		}
+		Registered attendees = registered(c);
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < attendees.size; i++) {
+			university.students.get(attendees.keys[i]).appendInfo(result);
+			result.append("\n");
+		}
+		if (result.length() == 0) {
+			return "No students enrolled in this course.";
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @param studentID id of the student
+	 * @return the list of courses the student is registered for
+	 * @see University#studyPlan(int)
+	 */
+	public String studyPlan(int studentID) {
+		Student s = student0(studentID);
+		if (s == null) {
+			return "Student not found.";
+		}
+		Registered plan = registered(s);
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < plan.size; i++) {
+			university.courses.get(plan.keys[i]).appendInfo(result);
+			result.append("\n");
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @param studentID id of the student
+	 * @param courseCode code of the course
+	 * @return {@code true} if the student attends the course in the view
+	 */
+	public boolean isRegistered(int studentID, int courseCode) {
+		Student s = student0(studentID);
+		if (s == null) {
+			return false;
+		}
+		Registered plan = registered(s);
+		for (int i = 0; i < plan.size; i++) {
+			if (plan.keys[i] == courseCode) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param studentId the ID of the student
+	 * @return the average grade formatted as a string.
+	 * @see University#studentAvg(int)
+	 */
+	public String studentAvg(int studentId) {
+		Student s = student0(studentId);
+		if (s == null) {
+			return "Student not found.";
+		}
+		Exams exams = exams(s);
+		if (exams.count == 0) {
+			return "Student " + s.getId() + " hasn't taken any exams";
+		}
+		return "Student" + " " + s.getId() + " : " + (float)exams.average();
+	}
+
+	/**
+	 * @param courseId course code
+	 * @return the course average formatted as a string
+	 * @see University#courseAvg(int)
+	 */
+	public String courseAvg(int courseId) {
+		Course c = course0(courseId);
+		if (c == null) {
+			return "Course not found.";
+		}
+		Exams exams = exams(c);
+		if (exams.count == 0) {
+			return "No student has taken the exam in" + c.getTitle();
+		}
+		return "The average for the course" + c.getTitle() + "is : " + (float)exams.average();
+	}
+
+	/**
+	 * @return info on the best three students.
+	 * @see University#topThreeStudents()
+	 */
+	public String topThreeStudents() {
+		return topStudents(3);
+	}
+
+	/**
+	 * Ranks the students as in {@link University#topStudents(int)}.
+	 * 
+	 * The scores are computed from the registrations and exams in the
+	 * view, so the ranking takes time linear in the number of students
+	 * and locks each of them in turn.
+	 * 
+	 * @param k number of students to report
+	 * @return info on the best k students.
+	 */
+	public String topStudents(int k) {
+		if (k < 0) throw new IllegalArgumentException("k must not be negative");
+		ParallelScoring.Ranking best = new ParallelScoring.Ranking(k);
+		for (Student s : university.students) {
+			if (s.version > version) {
+				continue;
+			}
+			Exams exams;
+			int registered;
+			synchronized (s) {
+				exams = exams(s.exams, s.history);
+				registered = exams.count > 0 ? registered(s.courseCodes, s.history).size : 0;
+			}
+			if (exams.count > 0) {
+				float avg = (float)exams.average();
+				float bonus = (registered > 0) ? (float)exams.count / registered * 10 : 0;
+				best.offer(s.getId(), avg + bonus);
+			}
+		}
+		if (best.size == 0) {
+			return "No students have taken exams.";
+		}
+
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < best.size; i++) {
+			result.append(university.students.get(best.ids[i]).getFullName()).append(" : ").append(best.scores[i]).append("\n");
+		}
+		return result.toString();
+	}
+}
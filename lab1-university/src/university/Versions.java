@@ -0,0 +1,80 @@
+package university;
+
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version numbers of the changes to a {@link University}, used to take
+ * consistent read views that lock one student or course at a time.
+ *
+ * Each change gets the next version while it holds the locks of the
+ * students and courses it modifies, and records itself in their
+ * {@link History} in the same locked section. A view at version V reads
+ * a student or a course under its lock, hence never while a change to it
+ * is half done, and undoes the changes newer than V. A writer waits
+ * for a view only while the view copies the lists of an entity the
+ * writer modifies; views never wait for each other, and a view holds
+ * no lock between the entities it reads.
+ *
+ * Changes are recorded in the histories only while some open view may
+ * need to undo them, i.e. when they are newer than the horizon, the
+ * version of the oldest open view; older entries are pruned.
+ */
+class Versions {
+
+	private final AtomicLong last = new AtomicLong();
+	/** version of the oldest open view, {@code Long.MAX_VALUE} if none */
+	private volatile long horizon = Long.MAX_VALUE;
+	/** number of open views at each version */
+	private final TreeMap<Long, Integer> open = new TreeMap<>();
+
+	/**
+	 * Assigns a version to a change; must be called while holding
+	 * the locks of the modified students and courses.
+	 *
+	 * @return the version of the change
+	 */
+	long begin() {
+		return last.incrementAndGet();
+	}
+
+	/**
+	 * @return the version of the latest change
+	 */
+	long last() {
+		return last.get();
+	}
+
+	/**
+	 * @return the version of the oldest open view: the changes up to it
+	 * 			need not be recorded in the histories
+	 */
+	long horizon() {
+		return horizon;
+	}
+
+	/**
+	 * Opens a view at the latest version
+	 *
+	 * @return the version of the view
+	 */
+	synchronized long openView() {
+		// until the view is registered, writers record every change,
+		// so that those newer than the version read below are not missed
+		horizon = 0;
+		long version = last.get();
+		open.merge(version, 1, Integer::sum);
+		horizon = open.firstKey();
+		return version;
+	}
+
+	/**
+	 * Closes a view opened by {@link #openView()}
+	 *
+	 * @param version the version of the view
+	 */
+	synchronized void closeView(long version) {
+		open.computeIfPresent(version, (v, n) -> n == 1 ? null : n - 1);
+		horizon = open.isEmpty() ? Long.MAX_VALUE : open.firstKey();
+	}
+}
@@ -0,0 +1,296 @@
+package university;
+
+import java.util.Arrays;
+
+/**
+ * Students waiting for a seat in a full course.
+ *
+ * The waiting students are kept in a binary heap of primitive keys,
+ * so that the next student to be admitted is found in constant time
+ * and removed in O(log n). Each key holds the priority of the student
+ * in the high half and the student id in the low half, so that students
+ * with the same priority are ordered by id.
+ * An open addressing index from student id to position in the heap
+ * avoids duplicates and finds any waiting student in constant time,
+ * so that a student that no longer waits is also removed in O(log n).
+ */
+public class Waitlist {
+
+	/**
+	 * Order in which waiting students are admitted
+	 */
+	public enum Priority {
+		/** in the order they asked to register */
+		FIFO,
+		/** by enrollment date, i.e. by increasing student id */
+		SENIORITY
+	}
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private final Priority priority;
+	private long[] heap = new long[INITIAL_CAPACITY];
+	/** slot in the index of each key of the heap */
+	private int[] slots = new int[INITIAL_CAPACITY];
+	private int size;
+	private int requests;
+	// the index, with linear probing, is twice as large as the heap
+	private int[] ids = new int[INITIAL_CAPACITY * 2];
+	/** position in the heap + 1 of the student in each slot, 0 if the slot is free */
+	private int[] positions = new int[INITIAL_CAPACITY * 2];
+
+	/**
+	 * @param priority order in which students are admitted
+	 */
+	public Waitlist(Priority priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * @return order in which students are admitted
+	 */
+	public Priority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Adds a student at the position given by its priority
+	 *
+	 * @param studentId id of the student
+	 * @return {@code false} if the student was already waiting
+	 */
+	public boolean add(int studentId) {
+		int slot = find(studentId);
+		if (slot >= 0) {
+			return false;
+		}
+		if (size == heap.length) {
+			grow();
+			slot = find(studentId);
+		}
+		slot = ~slot;
+		ids[slot] = studentId;
+		long rank = priority == Priority.FIFO ? requests++ : studentId;
+		heap[size] = rank << 32 | (studentId & 0xFFFFFFFFL);
+		slots[size] = slot;
+		positions[slot] = size + 1;
+		up(size++);
+		return true;
+	}
+
+	/**
+	 * @return the id of the next student to be admitted, -1 if none is waiting
+	 */
+	public int peek() {
+		return size == 0 ? -1 : (int)heap[0];
+	}
+
+	/**
+	 * Removes the next student to be admitted
+	 *
+	 * @return its id, -1 if none is waiting
+	 */
+	public int poll() {
+		if (size == 0) {
+			return -1;
+		}
+		int head = (int)heap[0];
+		removeAt(0);
+		return head;
+	}
+
+	/**
+	 * Removes a student that no longer waits
+	 *
+	 * @param studentId id of the student
+	 * @return {@code false} if the student was not waiting
+	 */
+	public boolean remove(int studentId) {
+		int slot = find(studentId);
+		if (slot < 0) {
+			return false;
+		}
+		removeAt(positions[slot] - 1);
+		return true;
+	}
+
+	/**
+	 * @param studentId id of the student
+	 * @return whether the student is waiting
+	 */
+	public boolean contains(int studentId) {
+		return find(studentId) >= 0;
+	}
+
+	/**
+	 * Counts the students to be admitted before a student, in a single
+	 * pass over the heap that takes time linear in the number of
+	 * waiting students
+	 *
+	 * @param studentId id of the student
+	 * @return number of students to be admitted before the student,
+	 * 			-1 if the student is not waiting
+	 */
+	public int position(int studentId) {
+		int slot = find(studentId);
+		if (slot < 0) {
+			return -1;
+		}
+		long key = heap[positions[slot] - 1];
+		int before = 0;
+		for (int i = 0; i < size; i++) {
+			if (heap[i] < key) {
+				before++;
+			}
+		}
+		return before;
+	}
+
+	/**
+	 * @return number of waiting students
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Copies the waitlist in time linear in the number of waiting students
+	 *
+	 * @return an independent waitlist with the same students and order
+	 */
+	Waitlist copy() {
+		Waitlist copy = new Waitlist(priority);
+		copy.heap = heap.clone();
+		copy.slots = slots.clone();
+		copy.size = size;
+		copy.requests = requests;
+		copy.ids = ids.clone();
+		copy.positions = positions.clone();
+		return copy;
+	}
+
+	/**
+	 * Sorts a copy of the heap, taking time O(n log n)
+	 *
+	 * @return the ids of the waiting students, in the order they will be admitted
+	 */
+	public int[] toArray() {
+		long[] sorted = Arrays.copyOf(heap, size);
+		Arrays.sort(sorted);
+		int[] ids = new int[size];
+		for (int i = 0; i < size; i++) {
+			ids[i] = (int)sorted[i];
+		}
+		return ids;
+	}
+
+	private void removeAt(int i) {
+		free(slots[i]);
+		size--;
+		if (i == size) {
+			return;
+		}
+		move(size, i);
+		down(i);
+		up(i);
+	}
+
+	private void up(int i) {
+		long key = heap[i];
+		int slot = slots[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heap[parent] <= key) {
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		heap[i] = key;
+		slots[i] = slot;
+		positions[slot] = i + 1;
+	}
+
+	private void down(int i) {
+		long key = heap[i];
+		int slot = slots[i];
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (key <= heap[child]) {
+				break;
+			}
+			move(child, i);
+			i = child;
+		}
+		heap[i] = key;
+		slots[i] = slot;
+		positions[slot] = i + 1;
+	}
+
+	/**
+	 * Moves a key of the heap and updates its position in the index
+	 */
+	private void move(int from, int to) {
+		heap[to] = heap[from];
+		slots[to] = slots[from];
+		positions[slots[to]] = to + 1;
+	}
+
+	private int home(int studentId) {
+		int h = studentId * 0x9E3779B9;
+		return (h ^ h >>> 16) & (ids.length - 1);
+	}
+
+	/**
+	 * @return the slot of the student in the index,
+	 * 			or {@code ~slot} of the free slot where it would go
+	 */
+	private int find(int studentId) {
+		int mask = ids.length - 1;
+		for (int slot = home(studentId); ; slot = (slot + 1) & mask) {
+			if (positions[slot] == 0) {
+				return ~slot;
+			}
+			if (ids[slot] == studentId) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Frees a slot of the index, moving back the following entries
+	 * of the same probe sequence so that lookups never miss them
+	 */
+	private void free(int slot) {
+		int mask = ids.length - 1;
+		positions[slot] = 0;
+		for (int next = (slot + 1) & mask; positions[next] != 0; next = (next + 1) & mask) {
+			int home = home(ids[next]);
+			boolean reachable = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+			if (!reachable) {
+				ids[slot] = ids[next];
+				positions[slot] = positions[next];
+				slots[positions[slot] - 1] = slot;
+				positions[next] = 0;
+				slot = next;
+			}
+		}
+	}
+
+	private void grow() {
+		heap = Arrays.copyOf(heap, heap.length * 2);
+		slots = Arrays.copyOf(slots, heap.length);
+		ids = new int[heap.length * 2];
+		positions = new int[heap.length * 2];
+		for (int i = 0; i < size; i++) {
+			int slot = ~find((int)heap[i]);
+			ids[slot] = (int)heap[i];
+			positions[slot] = i + 1;
+			slots[i] = slot;
+		}
+	}
+}
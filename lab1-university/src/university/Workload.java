@@ -0,0 +1,351 @@
+package university;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Synthetic, reproducible load shaped as a semester, for sizing
+ * and comparing deployments of a {@link University}.
+ *
+ * The workload runs in phases: courses are activated, students enroll,
+ * then each student asks for a number of courses (the registration spike),
+ * some of them drop a course, exams are recorded and finally the reports
+ * are queried. Courses are picked with a Zipf distribution, so that a few
+ * popular courses fill up while most of them stay half empty.
+ *
+ * Every choice is drawn from a random generator seeded with the seed of
+ * the workload, the phase and the student (or query) it concerns, so that
+ * the same seed issues the same operations whatever the number of threads.
+ * With one thread the final state of the university is reproducible too;
+ * with more threads, registrations competing for the last seats of a
+ * course may be decided differently.
+ *
+ * Only the public methods of the university are called, each one timed.
+ * Refused operations print their message on {@code System.err},
+ * which callers running large workloads may want to silence.
+ */
+public class Workload {
+
+	/**
+	 * Phases of the workload, in the order they run
+	 */
+	public enum Phase {
+		/** every course is activated */
+		ACTIVATION,
+		/** every student enrolls */
+		ENROLLMENT,
+		/** every student registers to its courses */
+		REGISTRATION,
+		/** some students deregister from one of their courses */
+		DROP,
+		/** some registrations are followed by an exam */
+		EXAMS,
+		/** study plans, attendee lists and the best students are queried */
+		REPORTS
+	}
+
+	private static final int MIN_PASSING_GRADE = 18;
+
+	private final long seed;
+	private int students = 100_000;
+	private int courses = 10_000;
+	private int coursesPerStudent = 10;
+	private double zipfExponent = 1.0;
+	private double dropRate = 0.05;
+	private double examRate = 0.8;
+	private int reportQueries = 10_000;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean measureHeap = true;
+
+	/**
+	 * Creates a workload with the default size: 100000 students,
+	 * 10000 courses (as many seats as requests), 10 courses per student.
+	 *
+	 * @param seed seed of all the random choices
+	 */
+	public Workload(long seed) {
+		this.seed = seed;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @param students number of students enrolled
+	 */
+	public void setStudents(int students) {
+		if (students < 1) throw new IllegalArgumentException("there must be at least one student");
+		this.students = students;
+	}
+
+	public int getStudents() {
+		return students;
+	}
+
+	/**
+	 * @param courses number of courses activated
+	 */
+	public void setCourses(int courses) {
+		if (courses < 1) throw new IllegalArgumentException("there must be at least one course");
+		this.courses = courses;
+	}
+
+	public int getCourses() {
+		return courses;
+	}
+
+	/**
+	 * @param coursesPerStudent number of distinct courses each student asks for;
+	 * 			capped by the number of courses
+	 */
+	public void setCoursesPerStudent(int coursesPerStudent) {
+		if (coursesPerStudent < 0) throw new IllegalArgumentException("courses per student must not be negative");
+		this.coursesPerStudent = coursesPerStudent;
+	}
+
+	public int getCoursesPerStudent() {
+		return coursesPerStudent;
+	}
+
+	/**
+	 * @param zipfExponent skew of the popularity of the courses,
+	 * 			0 for uniform (see {@link ZipfSampler})
+	 */
+	public void setZipfExponent(double zipfExponent) {
+		if (!(zipfExponent >= 0)) throw new IllegalArgumentException("exponent must not be negative");
+		this.zipfExponent = zipfExponent;
+	}
+
+	public double getZipfExponent() {
+		return zipfExponent;
+	}
+
+	/**
+	 * @param dropRate fraction of the students dropping one of their courses
+	 */
+	public void setDropRate(double dropRate) {
+		this.dropRate = rate(dropRate);
+	}
+
+	public double getDropRate() {
+		return dropRate;
+	}
+
+	/**
+	 * @param examRate fraction of the requested courses followed by an exam
+	 */
+	public void setExamRate(double examRate) {
+		this.examRate = rate(examRate);
+	}
+
+	public double getExamRate() {
+		return examRate;
+	}
+
+	private static double rate(double rate) {
+		if (!(rate >= 0 && rate <= 1)) throw new IllegalArgumentException("rate must be between 0 and 1");
+		return rate;
+	}
+
+	/**
+	 * @param reportQueries number of queries in the {@link Phase#REPORTS} phase
+	 */
+	public void setReportQueries(int reportQueries) {
+		if (reportQueries < 0) throw new IllegalArgumentException("queries must not be negative");
+		this.reportQueries = reportQueries;
+	}
+
+	public int getReportQueries() {
+		return reportQueries;
+	}
+
+	/**
+	 * @param threads number of threads issuing the operations of each phase
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1) throw new IllegalArgumentException("there must be at least one thread");
+		this.threads = threads;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param measureHeap whether to collect the garbage and measure the heap
+	 * 			after each phase
+	 */
+	public void setMeasureHeap(boolean measureHeap) {
+		this.measureHeap = measureHeap;
+	}
+
+	/**
+	 * Runs the workload against a university
+	 *
+	 * @param university the university, normally empty
+	 * @return throughput, latencies and heap usage of each phase
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	public WorkloadReport run(University university) throws InterruptedException {
+		ZipfSampler popularity = new ZipfSampler(courses, zipfExponent);
+		int[] codes = new int[courses];
+		int[] ids = new int[students];
+		WorkloadReport report = new WorkloadReport(this);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			report.add(run(pool, university, Phase.ACTIVATION, courses, (i, latencies) -> {
+				long start = System.nanoTime();
+				codes[i] = university.activate("Course " + i, "Teacher " + i % 100);
+				latencies.record(System.nanoTime() - start);
+				return 1;
+			}));
+			report.add(run(pool, university, Phase.ENROLLMENT, students, (i, latencies) -> {
+				long start = System.nanoTime();
+				ids[i] = university.enroll("Name" + i, "Surname" + i);
+				latencies.record(System.nanoTime() - start);
+				return 1;
+			}));
+			report.add(run(pool, university, Phase.REGISTRATION, students, (i, latencies) -> {
+				int[] chosen = chosenCourses(popularity, i);
+				for (int rank : chosen) {
+					long start = System.nanoTime();
+					university.register(ids[i], codes[rank]);
+					latencies.record(System.nanoTime() - start);
+				}
+				return chosen.length;
+			}));
+			report.add(run(pool, university, Phase.DROP, students, (i, latencies) -> {
+				SplittableRandom random = random(Phase.DROP, i);
+				int[] chosen = chosenCourses(popularity, i);
+				if (chosen.length == 0 || random.nextDouble() >= dropRate) {
+					return 0;
+				}
+				long start = System.nanoTime();
+				university.deregister(ids[i], codes[chosen[random.nextInt(chosen.length)]]);
+				latencies.record(System.nanoTime() - start);
+				return 1;
+			}));
+			report.add(run(pool, university, Phase.EXAMS, students, (i, latencies) -> {
+				SplittableRandom random = random(Phase.EXAMS, i);
+				int n = 0;
+				for (int rank : chosenCourses(popularity, i)) {
+					if (random.nextDouble() < examRate) {
+						int grade = MIN_PASSING_GRADE + random.nextInt(University.MAX_GRADE - MIN_PASSING_GRADE + 1);
+						long start = System.nanoTime();
+						university.exam(ids[i], codes[rank], grade);
+						latencies.record(System.nanoTime() - start);
+						n++;
+					}
+				}
+				return n;
+			}));
+			report.add(run(pool, university, Phase.REPORTS, reportQueries, (i, latencies) -> {
+				SplittableRandom random = random(Phase.REPORTS, i);
+				int query = random.nextInt(100);
+				long start = System.nanoTime();
+				if (query == 0) {
+					university.topThreeStudents();
+				} else if (query < 50) {
+					university.listAttendees(codes[popularity.sample(random)]);
+				} else {
+					university.studyPlan(ids[random.nextInt(students)]);
+				}
+				latencies.record(System.nanoTime() - start);
+				return 1;
+			}));
+		} finally {
+			pool.shutdown();
+		}
+		return report;
+	}
+
+	/** operations on one student, course or query */
+	private interface Step {
+		/**
+		 * @return number of operations issued
+		 */
+		int run(int i, LatencyHistogram latencies);
+	}
+
+	private WorkloadReport.PhaseStats run(ExecutorService pool, University university, Phase phase,
+											int items, Step step) throws InterruptedException {
+		LatencyHistogram latencies = new LatencyHistogram();
+		long rejectedBefore = rejected(university);
+		List<Callable<Long>> workers = new ArrayList<>(threads);
+		for (int t = 0; t < threads; t++) {
+			final int first = t;
+			workers.add(() -> {
+				long n = 0;
+				for (int i = first; i < items; i += threads) {
+					n += step.run(i, latencies);
+				}
+				return n;
+			});
+		}
+		long start = System.nanoTime();
+		long operations = 0;
+		for (Future<Long> f : pool.invokeAll(workers)) {
+			try {
+				operations += f.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Phase " + phase + " failed", e.getCause());
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		long rejected = rejected(university) - rejectedBefore;
+		long heap = -1;
+		if (measureHeap) {
+			System.gc();
+			heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		}
+		return new WorkloadReport.PhaseStats(phase, operations, rejected, elapsed,
+												latencies.percentiles(50, 90, 99), latencies.max(), heap);
+	}
+
+	private static long rejected(University university) {
+		MetricsSnapshot metrics = university.metrics();
+		long n = 0;
+		for (Rejection cause : Rejection.values()) {
+			n += metrics.getRejected(cause);
+		}
+		return n;
+	}
+
+	/**
+	 * Draws the courses a student asks for
+	 *
+	 * @return the distinct ranks of the courses, in the order they were drawn
+	 */
+	private int[] chosenCourses(ZipfSampler popularity, int student) {
+		SplittableRandom random = random(Phase.REGISTRATION, student);
+		int n = Math.min(coursesPerStudent, courses);
+		IdSet seen = new IdSet();
+		int[] chosen = new int[n];
+		int found = 0;
+		// with a strong skew, repeated draws of the same courses are likely:
+		// give up on the least popular ones rather than loop for long
+		for (int attempts = 0; found < n && attempts < 20 * n; attempts++) {
+			int rank = popularity.sample(random);
+			if (seen.add(rank)) {
+				chosen[found++] = rank;
+			}
+		}
+		return found == n ? chosen : Arrays.copyOf(chosen, found);
+	}
+
+	/**
+	 * @return the random generator of a phase for a student or query
+	 */
+	private SplittableRandom random(Phase phase, int i) {
+		return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + ((long)phase.ordinal() << 40) + i);
+	}
+}
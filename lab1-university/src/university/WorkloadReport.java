@@ -0,0 +1,136 @@
+package university;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a {@link Workload}: throughput, latencies and heap usage
+ * of each of its phases.
+ */
+public class WorkloadReport {
+
+	/**
+	 * Statistics of one phase; latencies are in microseconds
+	 */
+	public static class PhaseStats {
+		private final Workload.Phase phase;
+		private final long operations;
+		private final long rejected;
+		private final long elapsedNanos;
+		private final long[] percentiles;
+		private final long maxNanos;
+		private final long heapBytes;
+
+		PhaseStats(Workload.Phase phase, long operations, long rejected, long elapsedNanos,
+					long[] percentiles, long maxNanos, long heapBytes) {
+			this.phase = phase;
+			this.operations = operations;
+			this.rejected = rejected;
+			this.elapsedNanos = elapsedNanos;
+			this.percentiles = percentiles;
+			this.maxNanos = maxNanos;
+			this.heapBytes = heapBytes;
+		}
+
+		/** @return the phase */
+		public Workload.Phase getPhase() {
+			return phase;
+		}
+
+		/** @return number of operations issued */
+		public long getOperations() {
+			return operations;
+		}
+
+		/** @return number of operations refused by the university */
+		public long getRejected() {
+			return rejected;
+		}
+
+		/** @return duration of the phase in milliseconds */
+		public long getElapsedMillis() {
+			return elapsedNanos / 1_000_000;
+		}
+
+		/** @return number of operations per second */
+		public double getThroughput() {
+			if (elapsedNanos == 0) return 0;
+			return operations * 1e9 / elapsedNanos;
+		}
+
+		/** @return median latency */
+		public double getP50Micros() {
+			return percentiles[0] / 1e3;
+		}
+
+		/** @return 90th percentile of the latency */
+		public double getP90Micros() {
+			return percentiles[1] / 1e3;
+		}
+
+		/** @return 99th percentile of the latency */
+		public double getP99Micros() {
+			return percentiles[2] / 1e3;
+		}
+
+		/** @return highest latency */
+		public double getMaxMicros() {
+			return maxNanos / 1e3;
+		}
+
+		/** @return heap in use after the phase, -1 if not measured */
+		public long getHeapBytes() {
+			return heapBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-12s %10d ops %8d rejected %8d ms %10.0f ops/s  p50 %8.1f us  p90 %8.1f us  p99 %8.1f us  max %9.1f us  heap %s",
+									phase, operations, rejected, getElapsedMillis(), getThroughput(),
+									getP50Micros(), getP90Micros(), getP99Micros(), getMaxMicros(),
+									heapBytes < 0 ? "-" : heapBytes / (1 << 20) + " MB");
+		}
+	}
+
+	private final Workload workload;
+	private final List<PhaseStats> phases = new ArrayList<>();
+
+	WorkloadReport(Workload workload) {
+		this.workload = workload;
+	}
+
+	void add(PhaseStats stats) {
+		phases.add(stats);
+	}
+
+	/** @return statistics of the phases, in the order they ran */
+	public List<PhaseStats> getPhases() {
+		return Collections.unmodifiableList(phases);
+	}
+
+	/**
+	 * @param phase a phase
+	 * @return statistics of the phase, {@code null} if it did not run
+	 */
+	public PhaseStats get(Workload.Phase phase) {
+		for (PhaseStats stats : phases) {
+			if (stats.phase == phase) {
+				return stats;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append(String.format("Workload seed %d: %d students, %d courses, %d courses per student, zipf %.2f, %d threads%n",
+									workload.getSeed(), workload.getStudents(), workload.getCourses(),
+									workload.getCoursesPerStudent(), workload.getZipfExponent(), workload.getThreads()));
+		for (PhaseStats stats : phases) {
+			result.append(stats).append(System.lineSeparator());
+		}
+		return result.toString();
+	}
+}
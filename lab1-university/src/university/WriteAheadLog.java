@@ -0,0 +1,814 @@
+package university;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead journal of the changes made to a {@link University}.
+ *
+ * Every enrollment, course activation, registration (or addition to
+ * a waitlist), deregistration, promotion from a waitlist, rector change
+ * and exam accepted by the university is appended to a journal file,
+ * kept in a directory next to a snapshot (see {@link SnapshotFile})
+ * of the state the journal starts from. Opening the directory again
+ * restores the snapshot and replays the journal.
+ *
+ * Records are collected in memory and written by a background thread,
+ * which forces to disk all the records accumulated while the previous
+ * write was in progress with a single {@code fsync} (group commit).
+ * With {@link Durability#SYNC} each operation returns once its record
+ * is on disk, with {@link Durability#ASYNC} operations return at once
+ * and records reach the disk within a few milliseconds.
+ *
+ * When the journal grows beyond a threshold, another background thread
+ * folds it into a new snapshot (compaction). Snapshots and journals
+ * are numbered by generation: {@code snapshot.N} is the state at the
+ * beginning of {@code journal.N}. Changes wait only while the journal
+ * moves to a new generation; the snapshot is then written from a view
+ * of the university while changes go on. Until it is complete, the
+ * university is restored from the previous snapshot and the journals
+ * of both generations.
+ *
+ * Each record is made of its length, a CRC-32C checksum and the
+ * payload: the operation followed by its arguments, as variable length
+ * quantities. Replay stops at the first incomplete or damaged record,
+ * as left by a crash in the middle of a write.
+ */
+public class WriteAheadLog implements Closeable {
+
+	/**
+	 * When an operation is considered completed
+	 */
+	public enum Durability {
+		/** once its record has been forced to disk */
+		SYNC,
+		/** once its record has been queued for writing */
+		ASYNC
+	}
+
+	/** default journal size, in bytes, triggering a compaction */
+	public static final long DEFAULT_COMPACTION_THRESHOLD = 64L << 20;
+
+	private static final long ASYNC_FLUSH_INTERVAL_MS = 10;
+	private static final int INITIAL_BUFFER = 1 << 16;
+	private static final int BATCH_SIZE = 1 << 20;
+	private static final int HEADER = 8;
+
+	private static final byte ENROLL = 1;
+	private static final byte ACTIVATE = 2;
+	private static final byte REGISTER = 3;
+	private static final byte RECTOR = 4;
+	private static final byte EXAM = 5;
+	private static final byte DEREGISTER = 6;
+	private static final byte PROMOTE = 7;
+	private static final byte WAITLIST_PRIORITY = 8;
+
+	private static final Pattern SNAPSHOT = Pattern.compile("snapshot\\.(\\d+)");
+	private static final Pattern JOURNAL = Pattern.compile("journal\\.(\\d+)");
+
+	private final Path dir;
+	private final University university;
+	private final Durability durability;
+	private volatile long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+	/** held for reading by changes, for writing by compaction and close */
+	private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
+	/** held by compaction while the new snapshot is written */
+	private final ReentrantLock compacting = new ReentrantLock();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition pending = lock.newCondition();
+	private final Condition durable = lock.newCondition();
+	private final Condition compaction = lock.newCondition();
+
+	// guarded by lock
+	private byte[] buffer = new byte[INITIAL_BUFFER];
+	private int length;
+	private long appended;		// records appended to the buffer
+	private long flushed;		// records forced to disk
+	private boolean urgent;		// someone waits for the pending records
+	private boolean compactionRequested;
+	private boolean closed;
+	private IOException failure;
+	private FileChannel channel;
+	private long generation;
+	private long size;
+
+	private final CRC32C crc = new CRC32C();
+	private final Thread flusher;
+	private final Thread compactor;
+
+	private WriteAheadLog(Path dir, University university, Durability durability,
+							long generation, FileChannel channel, long size) {
+		this.dir = dir;
+		this.university = university;
+		this.durability = durability;
+		this.generation = generation;
+		this.channel = channel;
+		this.size = size;
+		flusher = new Thread(this::flushLoop, "university-wal-writer");
+		flusher.setDaemon(true);
+		compactor = new Thread(this::compactLoop, "university-wal-compactor");
+		compactor.setDaemon(true);
+		university.wal = this;
+		flusher.start();
+		compactor.start();
+	}
+
+	/**
+	 * Opens the journal kept in a directory, rebuilding the university
+	 * from the latest snapshot and the changes journaled after it,
+	 * in the journal of its generation and in any later one.
+	 *
+	 * If the directory holds no snapshot a new, empty university is created.
+	 *
+	 * @param dir the directory of the journal, created if missing
+	 * @param name name of the university, used only if it is created
+	 * @param durability when operations are considered completed
+	 * @return the journal, attached to the university
+	 * @throws IOException in case of errors reading the snapshot or the journal,
+	 * 			or if they don't match each other
+	 */
+	public static WriteAheadLog open(Path dir, String name, Durability durability) throws IOException {
+		Files.createDirectories(dir);
+		List<Long> generations = generations(dir, SNAPSHOT);
+		long base;
+		University university;
+		if (generations.isEmpty()) {
+			base = 0;
+			university = new University(name);
+			SnapshotFile.write(university, snapshotFile(dir, base));
+		} else {
+			base = generations.get(generations.size() - 1);
+			university = SnapshotFile.read(snapshotFile(dir, base));
+		}
+
+		// the journals of the generations whose snapshot was not completed
+		long generation = base;
+		for (long g : generations(dir, JOURNAL)) {
+			if (g < base) {
+				continue;
+			}
+			if (g > generation) {
+				Path previous = journalFile(dir, generation);
+				if (Files.exists(previous)) {
+					try (FileChannel journal = FileChannel.open(previous, StandardOpenOption.READ)) {
+						replay(university, journal);
+					}
+				}
+				generation = g;
+			}
+		}
+
+		FileChannel channel = FileChannel.open(journalFile(dir, generation),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			long valid = replay(university, channel);
+			channel.truncate(valid);
+			channel.position(valid);
+			channel.force(true);
+			removeBefore(dir, base);
+			return new WriteAheadLog(dir, university, durability, generation, channel, valid);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private static Path snapshotFile(Path dir, long generation) {
+		return dir.resolve("snapshot." + generation);
+	}
+
+	private static Path journalFile(Path dir, long generation) {
+		return dir.resolve("journal." + generation);
+	}
+
+	private static List<Long> generations(Path dir, Pattern pattern) throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.map(f -> pattern.matcher(f.getFileName().toString()))
+						.filter(Matcher::matches)
+						.map(m -> Long.valueOf(m.group(1)))
+						.sorted()
+						.collect(Collectors.toList());
+		}
+	}
+
+	private static void removeBefore(Path dir, long generation) throws IOException {
+		for (long g : generations(dir, SNAPSHOT)) {
+			if (g < generation) Files.deleteIfExists(snapshotFile(dir, g));
+		}
+		for (long g : generations(dir, JOURNAL)) {
+			if (g < generation) Files.deleteIfExists(journalFile(dir, g));
+		}
+	}
+
+	/**
+	 * Applies the journaled changes to the university
+	 *
+	 * @return the length of the valid part of the journal
+	 */
+	private static long replay(University u, FileChannel channel) throws IOException {
+		long fileSize = channel.size();
+		if (fileSize > Integer.MAX_VALUE) {
+			throw new IOException("Journal too large to be mapped: " + fileSize + " bytes");
+		}
+		ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+		CRC32C checksum = new CRC32C();
+		while (in.remaining() >= HEADER) {
+			int start = in.position();
+			int payload = in.getInt();
+			int expected = in.getInt();
+			if (payload <= 0 || payload > in.remaining()) {
+				return start;
+			}
+			ByteBuffer record = in.slice();
+			record.limit(payload);
+			checksum.reset();
+			checksum.update(record.duplicate());
+			if ((int)checksum.getValue() != expected) {
+				return start;
+			}
+			try {
+				apply(u, record);
+			} catch (BufferUnderflowException e) {
+				throw new IOException("Malformed journal record at " + start, e);
+			}
+			in.position(start + HEADER + payload);
+		}
+		return in.position();
+	}
+
+	private static void apply(University u, ByteBuffer in) throws IOException {
+		byte op = in.get();
+		switch (op) {
+		case ENROLL: {
+			int id = readVarint(in);
+			if (u.addStudent(readString(in), readString(in)) != id) {
+				throw new IOException("Journal doesn't match snapshot: student " + id);
+			}
+			break;
+		}
+		case ACTIVATE: {
+			int code = readVarint(in);
+			if (u.addCourse(readString(in), readString(in)) != code) {
+				throw new IOException("Journal doesn't match snapshot: course " + code);
+			}
+			break;
+		}
+		case REGISTER: {
+			int id = readVarint(in);
+			int code = readVarint(in);
+			Rejection rejection = u.addRegistration(id, code);
+			if (rejection != null && rejection != Rejection.WAITLISTED) {
+				throw new IOException("Journal doesn't match snapshot: " + rejection.getMessage());
+			}
+			break;
+		}
+		case DEREGISTER: {
+			int id = readVarint(in);
+			int code = readVarint(in);
+			Rejection rejection = u.removeRegistration(id, code);
+			if (rejection != null) {
+				throw new IOException("Journal doesn't match snapshot: " + rejection.getMessage());
+			}
+			break;
+		}
+		case PROMOTE: {
+			int code = readVarint(in);
+			if (!u.promoteHead(code)) {
+				throw new IOException("Journal doesn't match snapshot: empty waitlist for course " + code);
+			}
+			break;
+		}
+		case WAITLIST_PRIORITY: {
+			int priority = in.get();
+			u.setWaitlistPriority(priority < 0 ? null : Waitlist.Priority.values()[priority]);
+			break;
+		}
+		case RECTOR:
+			u.setRector(readString(in), readString(in));
+			break;
+		case EXAM: {
+			int id = readVarint(in);
+			int code = readVarint(in);
+			Rejection rejection = u.addExam(id, code, in.get());
+			if (rejection != null) {
+				throw new IOException("Journal doesn't match snapshot: " + rejection.getMessage());
+			}
+			break;
+		}
+		default:
+			throw new IOException("Unknown journal record " + op);
+		}
+	}
+
+	private static int readVarint(ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	private static String readString(ByteBuffer in) {
+		int n = readVarint(in);
+		if (n == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[n - 1];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the university whose changes are journaled
+	 */
+	public University getUniversity() {
+		return university;
+	}
+
+	/**
+	 * @return when operations are considered completed
+	 */
+	public Durability getDurability() {
+		return durability;
+	}
+
+	/**
+	 * @return the current generation, incremented by each compaction
+	 */
+	public long getGeneration() {
+		lock.lock();
+		try {
+			return generation;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the size in bytes of the current journal file
+	 */
+	public long getJournalSize() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sets the size the journal can reach before being compacted in background
+	 *
+	 * @param bytes the threshold, in bytes
+	 */
+	public void setCompactionThreshold(long bytes) {
+		if (bytes < 1) throw new IllegalArgumentException("threshold must be positive");
+		compactionThreshold = bytes;
+	}
+
+// Changes
+	/**
+	 * Enters a change; the change must be recorded, if successful,
+	 * before calling {@link #end()}.
+	 *
+	 * @return {@code false} if the journal has been closed
+	 * 			and the change must not be recorded
+	 */
+	boolean begin() {
+		gate.readLock().lock();
+		if (closed) {
+			gate.readLock().unlock();
+			return false;
+		}
+		return true;
+	}
+
+	void end() {
+		gate.readLock().unlock();
+	}
+
+	void enrolled(int id, String firstName, String lastName) {
+		lock.lock();
+		try {
+			int start = open(ENROLL);
+			putVarint(id);
+			putString(firstName);
+			putString(lastName);
+			close(start);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void activated(int code, String title, String teacher) {
+		lock.lock();
+		try {
+			int start = open(ACTIVATE);
+			putVarint(code);
+			putString(title);
+			putString(teacher);
+			close(start);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void registered(int studentId, int courseCode) {
+		lock.lock();
+		try {
+			int start = open(REGISTER);
+			putVarint(studentId);
+			putVarint(courseCode);
+			close(start);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void deregistered(int studentId, int courseCode) {
+		lock.lock();
+		try {
+			int start = open(DEREGISTER);
+			putVarint(studentId);
+			putVarint(courseCode);
+			close(start);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void promoted(int courseCode) {
+		lock.lock();
+		try {
+			int start = open(PROMOTE);
+			putVarint(courseCode);
+			close(start);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void waitlistPriorityChanged(Waitlist.Priority priority) {
+		lock.lock();
+		try {
+			int start = open(WAITLIST_PRIORITY);
+			ensure(1);
+			buffer[length++] = (byte)(priority == null ? -1 : priority.ordinal());
+			close(start);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void rectorChanged(String firstName, String lastName) {
+		lock.lock();
+		try {
+			int start = open(RECTOR);
+			putString(firstName);
+			putString(lastName);
+			close(start);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void examined(int studentId, int courseCode, int grade) {
+		lock.lock();
+		try {
+			int start = open(EXAM);
+			putVarint(studentId);
+			putVarint(courseCode);
+			ensure(1);
+			buffer[length++] = (byte)grade;
+			close(start);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private int open(byte op) {
+		ensure(HEADER + 1);
+		int start = length;
+		length += HEADER;
+		buffer[length++] = op;
+		return start;
+	}
+
+	private void close(int start) {
+		int payload = length - start - HEADER;
+		crc.reset();
+		crc.update(buffer, start + HEADER, payload);
+		putInt(start, payload);
+		putInt(start + 4, (int)crc.getValue());
+		appended++;
+		if (durability == Durability.SYNC || start == 0 || length >= BATCH_SIZE) {
+			pending.signal();
+		}
+	}
+
+	private void ensure(int n) {
+		if (length + n > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(length + n, buffer.length * 2));
+		}
+	}
+
+	private void putInt(int at, int value) {
+		buffer[at] = (byte)(value >>> 24);
+		buffer[at + 1] = (byte)(value >>> 16);
+		buffer[at + 2] = (byte)(value >>> 8);
+		buffer[at + 3] = (byte)value;
+	}
+
+	private void putVarint(int value) {
+		ensure(5);
+		while ((value & ~0x7F) != 0) {
+			buffer[length++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[length++] = (byte)value;
+	}
+
+	private void putString(String str) {
+		if (str == null) {
+			putVarint(0);
+			return;
+		}
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		putVarint(bytes.length + 1);
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, buffer, length, bytes.length);
+		length += bytes.length;
+	}
+
+	/**
+	 * Waits, in {@link Durability#SYNC} mode, until the changes
+	 * recorded so far are on disk.
+	 *
+	 * @throws UncheckedIOException if the journal could not be written
+	 */
+	void awaitDurable() {
+		if (durability == Durability.SYNC) {
+			try {
+				sync();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+// Writing
+	/**
+	 * Waits until all the changes made so far are on disk,
+	 * whatever the durability mode.
+	 *
+	 * @throws IOException if the journal could not be written
+	 */
+	public void flush() throws IOException {
+		sync();
+	}
+
+	private void sync() throws IOException {
+		lock.lock();
+		try {
+			long target = appended;
+			if (flushed < target) {
+				urgent = true;
+				pending.signal();
+			}
+			while (flushed < target && failure == null) {
+				durable.awaitUninterruptibly();
+			}
+			if (failure != null) {
+				throw new IOException("Journal write failed", failure);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Body of the writer thread: takes the records appended
+	 * since the previous write and forces them to disk together.
+	 */
+	private void flushLoop() {
+		byte[] spare = new byte[INITIAL_BUFFER];
+		while (true) {
+			byte[] batch;
+			int n;
+			long target;
+			FileChannel out;
+			lock.lock();
+			try {
+				while (length == 0 && !closed) {
+					pending.awaitUninterruptibly();
+				}
+				if (durability == Durability.ASYNC) {
+					// let more records pile up before paying for the fsync
+					long nanos = TimeUnit.MILLISECONDS.toNanos(ASYNC_FLUSH_INTERVAL_MS);
+					while (nanos > 0 && !urgent && !closed && length < BATCH_SIZE) {
+						try {
+							nanos = pending.awaitNanos(nanos);
+						} catch (InterruptedException e) {
+							break;
+						}
+					}
+				}
+				if (length == 0) {
+					return;
+				}
+				batch = buffer;
+				n = length;
+				buffer = spare;
+				length = 0;
+				target = appended;
+				urgent = false;
+				out = channel;
+			} finally {
+				lock.unlock();
+			}
+
+			IOException error = null;
+			try {
+				ByteBuffer bytes = ByteBuffer.wrap(batch, 0, n);
+				while (bytes.hasRemaining()) {
+					out.write(bytes);
+				}
+				out.force(false);
+			} catch (IOException e) {
+				error = e;
+			}
+			spare = batch;
+
+			lock.lock();
+			try {
+				if (error != null && failure == null) {
+					failure = error;
+				}
+				flushed = target;
+				size += n;
+				if (size > compactionThreshold && !compactionRequested) {
+					compactionRequested = true;
+					compaction.signal();
+				}
+				durable.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+// Compaction
+	/**
+	 * Folds the journal into a new snapshot and starts a new generation.
+	 *
+	 * Changes wait only while the journal moves to the new generation
+	 * and a {@link SnapshotFile.Cut} of the university is taken; the
+	 * snapshot is then written from the cut while changes go on.
+	 * The files of the previous generation are removed only once the
+	 * new snapshot is complete, so that a crash at any point leaves
+	 * a consistent state.
+	 *
+	 * @throws IOException in case of errors writing the new snapshot;
+	 * 			the changes are journaled in the new generation anyway
+	 */
+	public void compact() throws IOException {
+		compacting.lock();
+		try {
+			long next;
+			SnapshotFile.Cut cut;
+			gate.writeLock().lock();
+			try {
+				if (closed) {
+					throw new IllegalStateException("Journal closed");
+				}
+				sync();
+				next = generation + 1;
+				FileChannel journal = FileChannel.open(journalFile(dir, next),
+						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				FileChannel previous;
+				lock.lock();
+				try {
+					previous = channel;
+					channel = journal;
+					generation = next;
+					size = 0;
+				} finally {
+					lock.unlock();
+				}
+				previous.close();
+				cut = new SnapshotFile.Cut(university);
+			} finally {
+				gate.writeLock().unlock();
+			}
+			try (cut) {
+				SnapshotFile.write(cut, snapshotFile(dir, next));
+			}
+			removeBefore(dir, next);
+		} finally {
+			compacting.unlock();
+		}
+	}
+
+	/**
+	 * Body of the compaction thread
+	 */
+	private void compactLoop() {
+		while (true) {
+			lock.lock();
+			try {
+				while (!compactionRequested && !closed) {
+					compaction.awaitUninterruptibly();
+				}
+				if (closed) {
+					return;
+				}
+				compactionRequested = false;
+				if (size <= compactionThreshold) {
+					continue;
+				}
+			} finally {
+				lock.unlock();
+			}
+			try {
+				compact();
+			} catch (IOException e) {
+				University.logger.log(Level.WARNING, "Journal compaction failed", e);
+			} catch (IllegalStateException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Writes the pending changes, stops the background threads and
+	 * detaches the journal from the university: later changes are
+	 * no longer journaled.
+	 *
+	 * @throws IOException if the journal could not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		gate.writeLock().lock();
+		try {
+			if (closed) {
+				return;
+			}
+			university.wal = null;
+			lock.lock();
+			try {
+				closed = true;
+				pending.signal();
+				compaction.signal();
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			gate.writeLock().unlock();
+		}
+		join(flusher);
+		join(compactor);
+		channel.close();
+		if (failure != null) {
+			throw new IOException("Journal write failed", failure);
+		}
+	}
+
+	private static void join(Thread thread) {
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
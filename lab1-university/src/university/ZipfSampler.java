@@ -0,0 +1,79 @@
+package university;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks from 0 to n - 1 following a Zipf distribution:
+ * the probability of rank r is proportional to {@code 1 / (r + 1)^s}.
+ *
+ * The cumulative probabilities are computed once, so that each draw
+ * is a binary search taking O(log n). With {@code s = 0} all the ranks
+ * are equally likely; the higher the exponent, the more the draws
+ * concentrate on the first ranks.
+ * The sampler holds no random state and can be shared by several threads.
+ */
+public class ZipfSampler {
+
+	private final double[] cumulative;
+	private final double exponent;
+
+	/**
+	 * @param n number of ranks
+	 * @param exponent skew of the distribution, not negative
+	 */
+	public ZipfSampler(int n, double exponent) {
+		if (n < 1) throw new IllegalArgumentException("there must be at least one rank");
+		if (!(exponent >= 0)) throw new IllegalArgumentException("exponent must not be negative");
+		this.exponent = exponent;
+		this.cumulative = new double[n];
+		double sum = 0;
+		for (int r = 0; r < n; r++) {
+			sum += Math.pow(r + 1, -exponent);
+			cumulative[r] = sum;
+		}
+		for (int r = 0; r < n; r++) {
+			cumulative[r] /= sum;
+		}
+		cumulative[n - 1] = 1;
+	}
+
+	/**
+	 * @return number of ranks
+	 */
+	public int size() {
+		return cumulative.length;
+	}
+
+	/**
+	 * @return skew of the distribution
+	 */
+	public double getExponent() {
+		return exponent;
+	}
+
+	/**
+	 * @param rank a rank
+	 * @return the probability of drawing the rank
+	 */
+	public double probability(int rank) {
+		return rank == 0 ? cumulative[0] : cumulative[rank] - cumulative[rank - 1];
+	}
+
+	/**
+	 * Draws a rank
+	 *
+	 * @param random source of randomness
+	 * @return the rank, from 0 to {@link #size()} - 1
+	 */
+	public int sample(SplittableRandom random) {
+		double u = random.nextDouble();
+		int low = 0;
+		int high = cumulative.length - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (cumulative[middle] <= u) low = middle + 1;
+			else high = middle;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,170 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.ActivityJournal;
+import university.ActivityJournal.Overflow;
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestActivityJournal {
+
+	private List<String> messages;
+	private List<String> methods;
+
+	@Before
+	public void setUp() {
+		messages = Collections.synchronizedList(new ArrayList<>());
+		methods = Collections.synchronizedList(new ArrayList<>());
+		University.logger.setFilter(rec -> {
+			messages.add(rec.getMessage());
+			methods.add(rec.getSourceMethodName());
+			return false;
+		});
+		University.logger.setLevel(Level.ALL);
+	}
+
+	@After
+	public void tearDown() {
+		University.logger.setFilter(null);
+		Logger.getLogger("University").setLevel(Level.OFF);
+	}
+
+	private static void activities(University poli) {
+		poli.enroll("Mario", "Rossi");
+		poli.enroll("Francesca", "Verdi");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.exam(10000, 10, 27);
+	}
+
+	@Test
+	public void testSameMessages() throws InterruptedException {
+		activities(new University("PoliTo"));
+		List<String> sync = new ArrayList<>(messages);
+		List<String> syncMethods = new ArrayList<>(methods);
+		messages.clear();
+		methods.clear();
+
+		University poli = new University("PoliTo");
+		try (ActivityJournal journal = new ActivityJournal(16, Overflow.BLOCK)) {
+			poli.setActivityJournal(journal);
+			activities(poli);
+			journal.flush();
+		}
+
+		assertEquals("Wrong number of messages", 6, sync.size());
+		assertEquals("New student enrolled: 10000, Mario Rossi", sync.get(0));
+		assertEquals("Student 10000 took an exam in course 10 with grade 27", sync.get(5));
+		assertEquals("Asynchronous messages differ", sync, messages);
+		assertEquals("Wrong source method", "enroll", syncMethods.get(0));
+		assertEquals("Source methods differ", syncMethods, methods);
+	}
+
+	@Test
+	public void testBlockKeepsEverything() throws InterruptedException {
+		University poli = new University("PoliTo");
+		try (ActivityJournal journal = new ActivityJournal(4, Overflow.BLOCK)) {
+			poli.setActivityJournal(journal);
+			for (int i = 0; i < 1000; i++) {
+				poli.enroll("Name" + i, "Surname");
+			}
+			journal.flush();
+			assertEquals("No activity should be dropped", 0, journal.getDropped());
+		}
+		assertEquals("Wrong number of messages", 1000, messages.size());
+		assertEquals("Wrong order", "New student enrolled: 10999, Name999 Surname", messages.get(999));
+	}
+
+	@Test
+	public void testDrop() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		University.logger.setFilter(rec -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			messages.add(rec.getMessage());
+			return false;
+		});
+
+		University poli = new University("PoliTo");
+		final int total = 100;
+		long dropped;
+		try (ActivityJournal journal = new ActivityJournal(4, Overflow.DROP)) {
+			poli.setActivityJournal(journal);
+			for (int i = 0; i < total; i++) {
+				poli.enroll("Name" + i, "Surname");
+			}
+			release.countDown();
+			journal.flush();
+			dropped = journal.getDropped();
+		}
+		// at most one batch being written plus a full ring
+		assertTrue("Expected dropped activities", dropped >= total - 8);
+		assertEquals("Logged and dropped activities don't add up", total, messages.size() + dropped);
+	}
+
+	@Test
+	public void testSample() throws InterruptedException {
+		Semaphore permits = new Semaphore(0);
+		University.logger.setFilter(rec -> {
+			permits.acquireUninterruptibly();
+			messages.add(rec.getMessage());
+			return false;
+		});
+
+		University poli = new University("PoliTo");
+		try (ActivityJournal journal = new ActivityJournal(University.logger, 1, Overflow.SAMPLE, 5)) {
+			poli.setActivityJournal(journal);
+			poli.enroll("First", "Student");	// taken by the journal thread, which waits for a permit
+			while (!permits.hasQueuedThreads()) {
+				Thread.sleep(1);
+			}
+			poli.enroll("Second", "Student");	// fills the ring
+			for (int i = 0; i < 4; i++) {
+				poli.enroll("Name" + i, "Surname");
+			}
+			assertEquals("Expected four dropped activities", 4, journal.getDropped());
+
+			Thread producer = new Thread(() -> poli.enroll("Fifth", "Overflow"));
+			producer.start();
+			permits.release(100);
+			producer.join();
+			journal.flush();
+			assertEquals("Sampled activity should not be dropped", 4, journal.getDropped());
+		}
+		assertEquals("Wrong logged activities", 3, messages.size());
+		assertContained("Sampled activity not logged", "Fifth", messages.get(2));
+	}
+
+	@Test
+	public void testNotLoggableNotRecorded() throws InterruptedException {
+		University.logger.setLevel(Level.OFF);
+		University poli = new University("PoliTo");
+		try (ActivityJournal journal = new ActivityJournal(1, Overflow.DROP)) {
+			poli.setActivityJournal(journal);
+			for (int i = 0; i < 100; i++) {
+				poli.enroll("Name" + i, "Surname");
+			}
+			journal.flush();
+			assertEquals("Disabled activities should not reach the journal", 0, journal.getDropped());
+		}
+		assertTrue("Unexpected messages", messages.isEmpty());
+	}
+}
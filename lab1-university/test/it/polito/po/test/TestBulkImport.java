@@ -0,0 +1,129 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.ImportReport;
+import university.Rejection;
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestBulkImport {
+
+	private Path file;
+	private int logCount;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("university", ".csv");
+		logCount = 0;
+		University.logger.setFilter(rec -> {
+			logCount++;
+			return false;
+		});
+		University.logger.setLevel(Level.ALL);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		University.logger.setFilter(null);
+		Logger.getLogger("University").setLevel(Level.OFF);
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testImport() throws IOException {
+		Files.write(file, List.of(
+				"# students",
+				"enroll,Mario,Rossi",
+				"ENROLL, Francesca , Verdi ",
+				"",
+				"activate,Macro Economics,Paul Krugman",
+				"\t activate,Object Oriented Programming,James Gosling",
+				"register,10000,10",
+				"register,10001,10",
+				"register,10001,11",
+				"exam,10001,10,27",
+				"exam,10001,11,30"));
+
+		University poli = new University("PoliTo");
+		ImportReport report = poli.importFile(file);
+
+		assertEquals("Wrong number of rows", 9, report.getRows());
+		assertEquals("Unexpected rejections", 0, report.getRejected());
+		assertEquals("Expected a single summary log record", 1, logCount);
+
+		assertContained("Missing student", "Verdi", poli.student(10001));
+		assertContained("Missing course", "Object Oriented", poli.course(11));
+		assertEquals("Wrong attendees", "10000 Mario Rossi\n10001 Francesca Verdi\n", poli.listAttendees(10));
+		assertEquals("Wrong average", "Student 10001 : 28.5", poli.studentAvg(10001));
+	}
+
+	@Test
+	public void testRejectedRows() throws IOException {
+		Files.write(file, List.of(
+				"enroll,Mario,Rossi",
+				"activate,Macro Economics,Paul Krugman",
+				"register,10000,10",
+				"register,10099,10",
+				"register,10000,99",
+				"exam,10000,10,31",
+				"exam,10000,ten,30",
+				"enroll,Mario",
+				"drop,10000,10"));
+
+		University poli = new University("PoliTo");
+		ImportReport report = poli.importFile(file);
+
+		assertEquals("Wrong number of rows", 9, report.getRows());
+		assertEquals("Wrong number of accepted rows", 3, report.getAccepted());
+		assertEquals("Wrong number of rejected rows", 6, report.getRejected());
+		assertEquals(1, report.getRejected(Rejection.UNKNOWN_STUDENT));
+		assertEquals(1, report.getRejected(Rejection.UNKNOWN_COURSE));
+		assertEquals(1, report.getRejected(Rejection.INVALID_GRADE));
+		assertEquals(3, report.getRejected(Rejection.MALFORMED));
+		assertEquals("Wrong line of first rejected row", 4, report.getRejectedRows().get(0).getLine());
+		assertEquals("Wrong cause of first rejected row", Rejection.UNKNOWN_STUDENT,
+						report.getRejectedRows().get(0).getCause());
+	}
+
+	@Test
+	public void testCapacity() throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(file)) {
+			out.write("activate,Virology,Roberto Burioni\n");
+			for (int i = 0; i < 30; i++) {
+				out.write("activate,Course " + i + ",Teacher\n");
+			}
+			for (int i = 0; i < 101; i++) {
+				out.write("enroll,Name" + i + ",Surname\n");
+			}
+			for (int i = 0; i < 101; i++) {
+				out.write("register," + (10000 + i) + ",10\n");
+			}
+			for (int i = 1; i <= 25; i++) {
+				out.write("register,10000," + (10 + i) + "\n");
+			}
+		}
+
+		University poli = new University("PoliTo");
+		ImportReport report = poli.importFile(file);
+
+		assertEquals("Wrong course capacity rejections", 1, report.getRejected(Rejection.COURSE_FULL));
+		assertEquals("Wrong student capacity rejections", 1, report.getRejected(Rejection.STUDENT_FULL));
+		assertEquals("Wrong number of attendees", 100, poli.listAttendees(10).split("\n").length);
+		assertEquals("Wrong study plan", 25, poli.studyPlan(10000).split("\n").length);
+		assertTrue("Missing throughput", report.getRowsPerSecond() > 0);
+	}
+}
@@ -0,0 +1,237 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.ChangeFeed;
+import university.Rejection;
+import university.University;
+import university.UniversityEvent;
+import university.UniversityEvent.Type;
+
+public class TestChangeFeed {
+
+	/** collects the events, requesting a given number of batches at a time */
+	private static class Collector implements Flow.Subscriber<List<UniversityEvent>> {
+		final List<UniversityEvent> events = new ArrayList<>();
+		final CountDownLatch subscribed = new CountDownLatch(1);
+		final CountDownLatch completed = new CountDownLatch(1);
+		final long demand;
+		int batches;
+
+		Collector(long demand) {
+			this.demand = demand;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			subscription.request(demand);
+			subscribed.countDown();
+		}
+
+		@Override
+		public synchronized void onNext(List<UniversityEvent> batch) {
+			events.addAll(batch);
+			batches++;
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			completed.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			completed.countDown();
+		}
+
+		synchronized List<UniversityEvent> events() {
+			return new ArrayList<>(events);
+		}
+	}
+
+	private University poli;
+	private ExecutorService executor;
+	private PrintStream err;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		// capacity rejections are expected here, don't flood the console
+		err = System.err;
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+		poli = new University("PoliTo");
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void tearDown() {
+		System.setErr(err);
+		executor.shutdownNow();
+	}
+
+	private ChangeFeed feed(int capacity, int batchSize, int subscriberBuffer, Collector... collectors)
+			throws InterruptedException {
+		ChangeFeed feed = new ChangeFeed(capacity, batchSize, subscriberBuffer, executor);
+		for (Collector c : collectors) {
+			feed.subscribe(c);
+			assertTrue(c.subscribed.await(5, TimeUnit.SECONDS));
+		}
+		poli.setChangeFeed(feed);
+		return feed;
+	}
+
+	@Test
+	public void testEvents() throws InterruptedException {
+		Collector collector = new Collector(Long.MAX_VALUE);
+		ChangeFeed feed = feed(1000, 16, 16, collector);
+		int id = poli.enroll("Mario", "Rossi");
+		int code = poli.activate("Macro Economics", "Paul Krugman");
+		poli.register(id, code);
+		poli.register(id, 99);
+		poli.exam(id, code, 28);
+		poli.exam(id, code, 31);
+		feed.close();
+		assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+
+		List<UniversityEvent> events = collector.events();
+		assertEquals("Refused operations other than capacity should not be published", 3, events.size());
+		assertEquals(Type.ENROLLED, events.get(0).getType());
+		assertEquals(id, events.get(0).getStudentId());
+		assertEquals(Type.REGISTERED, events.get(1).getType());
+		assertEquals(code, events.get(1).getCourseCode());
+		assertEquals(Type.EXAM_RECORDED, events.get(2).getType());
+		assertEquals(28, events.get(2).getGrade());
+		for (int i = 0; i < events.size(); i++) {
+			assertEquals(i + 1, events.get(i).getSequence());
+		}
+		assertEquals(0, feed.getDropped());
+	}
+
+	@Test
+	public void testCapacityRejected() throws InterruptedException {
+		int code = poli.activate("Virology", "Roberto Burioni");
+		for (int i = 0; i < 101; i++) {
+			poli.enroll("Name" + i, "Surname" + i);
+		}
+		Collector collector = new Collector(Long.MAX_VALUE);
+		ChangeFeed feed = feed(1000, 16, 16, collector);
+		for (int i = 0; i < 101; i++) {
+			poli.register(10000 + i, code);
+		}
+		feed.close();
+		assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+
+		List<UniversityEvent> events = collector.events();
+		assertEquals(101, events.size());
+		UniversityEvent last = events.get(100);
+		assertEquals(Type.CAPACITY_REJECTED, last.getType());
+		assertEquals(Rejection.COURSE_FULL, last.getCause());
+		assertEquals(10100, last.getStudentId());
+		assertEquals(code, last.getCourseCode());
+	}
+
+	@Test
+	public void testImportPublished() throws InterruptedException, IOException {
+		Collector collector = new Collector(Long.MAX_VALUE);
+		ChangeFeed feed = feed(1000, 16, 16, collector);
+		Path file = Files.createTempFile("university", ".csv");
+		try {
+			Files.write(file, List.of("enroll,Mario,Rossi", "activate,Virology,Roberto Burioni",
+										"register,10000,10", "exam,10000,10,30"));
+			poli.importFile(file);
+		} finally {
+			Files.delete(file);
+		}
+		feed.close();
+		assertTrue(collector.completed.await(5, TimeUnit.SECONDS));
+		List<UniversityEvent> events = collector.events();
+		assertEquals(3, events.size());
+		assertEquals(Type.EXAM_RECORDED, events.get(2).getType());
+		assertEquals(30, events.get(2).getGrade());
+	}
+
+	@Test
+	public void testSlowSubscriber() throws InterruptedException {
+		Collector fast = new Collector(Long.MAX_VALUE);
+		Collector stuck = new Collector(1);
+		ChangeFeed feed = feed(100_000, 8, 4, fast, stuck);
+		for (int i = 0; i < 20_000; i++) {
+			poli.enroll("Name" + i, "Surname" + i);
+		}
+		feed.close();
+		assertTrue(fast.completed.await(5, TimeUnit.SECONDS));
+
+		List<UniversityEvent> events = fast.events();
+		long missed = 20_000 - events.size();
+		for (int i = 1; i < events.size(); i++) {
+			assertTrue("Events out of order", events.get(i).getSequence() > events.get(i - 1).getSequence());
+		}
+		assertTrue("Stuck subscriber should receive its requested batch only", stuck.events().size() <= 8);
+		assertTrue("Batches for the stuck subscriber should be dropped", feed.getDropped() > missed);
+	}
+
+	@Test
+	public void testNoSubscribers() throws InterruptedException {
+		ChangeFeed feed = feed(4, 4, 4);
+		for (int i = 0; i < 100; i++) {
+			poli.enroll("Name" + i, "Surname" + i);
+		}
+		assertEquals("Events without subscribers should not be buffered", 0, feed.getDropped());
+		feed.close();
+	}
+
+	@Test
+	public void testBenchmark() throws InterruptedException {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int nStudents = 100_000;
+		final int nCourses = 1_000;
+		for (int i = 0; i < nStudents; i++) {
+			poli.enroll("Name" + i, "Surname" + i);
+		}
+		for (int i = 0; i < nCourses; i++) {
+			poli.activate("Course " + i, "Teacher " + i);
+		}
+		for (String mode : new String[] { "no feed", "fast subscriber", "stuck subscriber" }) {
+			ChangeFeed feed = null;
+			Collector collector = null;
+			if (!mode.equals("no feed")) {
+				collector = new Collector(mode.startsWith("fast") ? Long.MAX_VALUE : 1);
+				feed = feed(65536, 256, 256, collector);
+			}
+			final int ops = 500_000;
+			long start = System.nanoTime();
+			for (int i = 0; i < ops; i++) {
+				poli.exam(10000 + i % nStudents, 10 + i % nCourses, 18 + i % 13);
+			}
+			long elapsed = System.nanoTime() - start;
+			long dropped = 0;
+			if (feed != null) {
+				feed.close();
+				dropped = feed.getDropped();
+				poli.setChangeFeed(null);
+			}
+			System.out.printf("Exams with %s: %.0f ops/s, %d events dropped%n", mode, ops * 1e9 / elapsed, dropped);
+		}
+	}
+}
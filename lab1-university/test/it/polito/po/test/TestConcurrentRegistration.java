@@ -0,0 +1,142 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestConcurrentRegistration {
+
+	private static final int STUDENTS = 4000;
+	private static final int COURSES = 500;
+	private static final int ATTEMPTS_PER_STUDENT = 30;
+
+	private PrintStream err;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		// capacity rejections are expected here, don't flood the console
+		err = System.err;
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	@After
+	public void tearDown() {
+		System.setErr(err);
+	}
+
+	@Test
+	public void testSingleCourseNeverOverAdmits() throws InterruptedException {
+		University poli = new University("PoliTo");
+		int course = poli.activate("Object Oriented Programming", "James Gosling");
+		for (int i = 0; i < 1000; i++) {
+			poli.enroll("Name" + i, "Surname" + i);
+		}
+
+		runConcurrently(16, t -> {
+			for (int i = t; i < 1000; i += 16) {
+				poli.register(10000 + i, course);
+			}
+		});
+
+		assertEquals("Wrong number of attendees", 100, countLines(poli.listAttendees(course)));
+	}
+
+	@Test
+	public void testInvariants() throws InterruptedException {
+		for (int threads : new int[] {1, 4, 16}) {
+			University poli = populate();
+
+			long start = System.nanoTime();
+			runConcurrently(threads, t -> {
+				for (int i = t; i < STUDENTS; i += threads) {
+					int student = 10000 + i;
+					for (int a = 0; a < ATTEMPTS_PER_STUDENT; a++) {
+						// every student tries more courses than allowed,
+						// and popular courses receive more requests than seats
+						int course = 10 + (int)((i * 31L + a * a * 7L) % COURSES) / (1 + a % 3);
+						poli.register(student, course);
+					}
+				}
+			});
+			long elapsed = System.nanoTime() - start;
+
+			int attendees = 0;
+			for (int c = 0; c < COURSES; c++) {
+				int n = countLines(poli.listAttendees(10 + c));
+				assertTrue("Course " + (10 + c) + " has " + n + " attendees", n <= 100);
+				attendees += n;
+			}
+			int registrations = 0;
+			for (int s = 0; s < STUDENTS; s++) {
+				int n = countLines(poli.studyPlan(10000 + s));
+				assertTrue("Student " + (10000 + s) + " attends " + n + " courses", n <= 25);
+				registrations += n;
+			}
+			assertEquals("Course and student registrations differ", attendees, registrations);
+
+			long ops = (long)STUDENTS * ATTEMPTS_PER_STUDENT;
+			System.out.printf("%2d threads: %d registrations in %d ms (%.0f ops/s)%n",
+								threads, ops, elapsed / 1_000_000, ops * 1e9 / elapsed);
+		}
+	}
+
+	private static University populate() {
+		University poli = new University("PoliTo");
+		for (int i = 0; i < STUDENTS; i++) {
+			poli.enroll("Name" + i, "Surname" + i);
+		}
+		for (int i = 0; i < COURSES; i++) {
+			poli.activate("Course " + i, "Teacher " + i);
+		}
+		return poli;
+	}
+
+	private interface Task {
+		void run(int thread);
+	}
+
+	private static void runConcurrently(int threads, Task task) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<>();
+		List<Throwable> failures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			Thread w = new Thread(() -> {
+				try {
+					start.await();
+					task.run(thread);
+				} catch (Throwable e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+			workers.add(w);
+			w.start();
+		}
+		start.countDown();
+		for (Thread w : workers) {
+			w.join();
+		}
+		assertTrue("Failures in worker threads: " + failures, failures.isEmpty());
+	}
+
+	private static int countLines(String s) {
+		if (s == null || s.isEmpty() || !s.contains("\n")) return 0;
+		return s.split("\n").length;
+	}
+}
@@ -0,0 +1,205 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestEnrollmentMatrix {
+
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		poli = new University("PoliTo");
+		for (int i = 0; i < 6; i++) {
+			poli.enroll("Name" + i, "Surname" + i);
+		}
+		poli.activate("Macro Economics", "Paul Krugman");			// 10
+		poli.activate("Object Oriented Programming", "James Gosling");	// 11
+		poli.activate("Virology", "Roberto Burioni");				// 12
+		poli.activate("Chemistry", "Marie Curie");					// 13
+		poli.register(10003, 10);
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.register(10003, 11);
+		poli.register(10005, 11);
+		poli.register(10001, 12);
+		poli.register(10002, 12);
+	}
+
+	@Test
+	public void testMembership() {
+		assertTrue(poli.isRegistered(10000, 10));
+		assertTrue(poli.isRegistered(10005, 11));
+		assertFalse(poli.isRegistered(10000, 11));
+		assertFalse("Unknown course", poli.isRegistered(10000, 99));
+		assertFalse("Unknown student", poli.isRegistered(20000, 10));
+	}
+
+	@Test
+	public void testIntersection() {
+		assertArrayEquals(new int[] { 10001, 10003 }, poli.registeredToAll(10, 11));
+		assertArrayEquals(new int[] { 10001 }, poli.registeredToAll(10, 11, 12));
+		assertArrayEquals(new int[] { 10000, 10001, 10003 }, poli.registeredToAll(10));
+		assertArrayEquals(new int[0], poli.registeredToAll(10, 13));
+		assertArrayEquals("Unknown course", new int[0], poli.registeredToAll(10, 99));
+		assertArrayEquals(new int[0], poli.registeredToAll());
+		assertEquals(2, poli.countRegisteredToAll(10, 11));
+		assertEquals(1, poli.countRegisteredToAll(12, 11, 10));
+		assertEquals(3, poli.countRegisteredToAll(10));
+		assertEquals(0, poli.countRegisteredToAll(10, 99));
+	}
+
+	@Test
+	public void testUnion() {
+		assertArrayEquals(new int[] { 10000, 10001, 10003, 10005 }, poli.registeredToAny(10, 11));
+		assertArrayEquals(new int[] { 10000, 10001, 10002, 10003, 10005 }, poli.registeredToAny(10, 11, 12, 13, 99));
+		assertArrayEquals(new int[0], poli.registeredToAny(13));
+		assertEquals(4, poli.countRegisteredToAny(10, 11));
+		assertEquals(5, poli.countRegisteredToAny(10, 11, 12));
+		assertEquals(0, poli.countRegisteredToAny(99));
+	}
+
+	@Test
+	public void testDifference() {
+		assertArrayEquals(new int[] { 10000 }, poli.registeredToExcept(10, 11));
+		assertArrayEquals(new int[] { 10005 }, poli.registeredToExcept(11, 10, 12));
+		assertArrayEquals(new int[] { 10000, 10001, 10003 }, poli.registeredToExcept(10));
+		assertArrayEquals(new int[0], poli.registeredToExcept(99, 10));
+		assertEquals(1, poli.countRegisteredToExcept(10, 11));
+		assertEquals(3, poli.countRegisteredToExcept(10, 13, 99));
+	}
+
+	@Test
+	public void testSameAsStudyPlans() {
+		University u = new University("Random");
+		Random random = new Random(42);
+		for (int i = 0; i < 2000; i++) {
+			u.enroll("Name" + i, "Surname" + i);
+		}
+		for (int i = 0; i < 30; i++) {
+			u.activate("Course " + i, "Teacher " + i);
+		}
+		for (int i = 0; i < 3000; i++) {
+			u.register(10000 + random.nextInt(2000), 10 + random.nextInt(30));
+		}
+		for (int a = 10; a < 40; a += 3) {
+			int b = a + 1;
+			int both = 0, any = 0, onlyA = 0;
+			for (int id = 10000; id < 12000; id++) {
+				String plan = u.studyPlan(id);
+				boolean inA = plan.contains(u.course(a).split(",")[1] + " ");
+				boolean inB = plan.contains(u.course(b).split(",")[1] + " ");
+				assertEquals(inA, u.isRegistered(id, a));
+				if (inA && inB) both++;
+				if (inA || inB) any++;
+				if (inA && !inB) onlyA++;
+			}
+			assertEquals(both, u.registeredToAll(a, b).length);
+			assertEquals(both, u.countRegisteredToAll(a, b));
+			assertEquals(any, u.registeredToAny(a, b).length);
+			assertEquals(any, u.countRegisteredToAny(a, b));
+			assertEquals(onlyA, u.registeredToExcept(a, b).length);
+			assertEquals(onlyA, u.countRegisteredToExcept(a, b));
+		}
+	}
+
+	@Test
+	public void testManyCourses() {
+		University u = new University("Random");
+		Random random = new Random(7);
+		for (int i = 0; i < 500; i++) {
+			u.enroll("Name" + i, "Surname" + i);
+		}
+		for (int i = 0; i < 12; i++) {
+			u.activate("Course " + i, "Teacher " + i);
+		}
+		for (int i = 0; i < 2000; i++) {
+			u.register(10000 + random.nextInt(500), 10 + random.nextInt(12));
+		}
+		int[] codes = { 10, 13, 14, 17, 21 };
+		int all = 0;
+		int[] any = new int[500];
+		int n = 0;
+		for (int id = 10000; id < 10500; id++) {
+			int in = 0;
+			for (int code : codes) {
+				if (u.isRegistered(id, code)) in++;
+			}
+			if (in == codes.length) all++;
+			if (in > 0) any[n++] = id;
+		}
+		assertArrayEquals(Arrays.copyOf(any, n), u.registeredToAny(codes));
+		assertEquals(n, u.countRegisteredToAny(codes));
+		assertEquals(all, u.registeredToAll(codes).length);
+		assertEquals(all, u.countRegisteredToAll(codes));
+	}
+
+	@Test
+	public void testRestored() throws IOException {
+		Path file = Files.createTempFile("university", ".snapshot");
+		try {
+			poli.snapshot(file);
+			University copy = University.restore(file);
+			assertArrayEquals(poli.registeredToAny(10, 11, 12), copy.registeredToAny(10, 11, 12));
+			assertArrayEquals(poli.registeredToAll(10, 11), copy.registeredToAll(10, 11));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testBenchmark() {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int nStudents = 200_000;
+		final int nCourses = 20_000;
+		University u = new University("PoliTo");
+		for (int i = 0; i < nStudents; i++) {
+			u.enroll("Name" + i, "Surname" + i);
+		}
+		for (int i = 0; i < nCourses; i++) {
+			u.activate("Course " + i, "Teacher " + i);
+		}
+		Random random = new Random(1);
+		for (int i = 0; i < nStudents; i++) {
+			for (int c = 0; c < 5; c++) {
+				u.register(10000 + i, 10 + random.nextInt(nCourses));
+			}
+		}
+		final int queries = 100_000;
+		long start = System.nanoTime();
+		long total = 0;
+		for (int q = 0; q < queries; q++) {
+			total += u.countRegisteredToAll(10 + q % 100, 10 + (q * 7 + 1) % 100);
+		}
+		long matrix = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		long scanned = 0;
+		for (int q = 0; q < 100; q++) {
+			int a = 10 + q % 100;
+			int b = 10 + (q * 7 + 1) % 100;
+			String other = u.listAttendees(b);
+			scanned += Arrays.stream(u.listAttendees(a).split("\n")).filter(other::contains).count();
+		}
+		long scan = System.nanoTime() - start;
+		assertTrue(total > 0 && scanned > 0);
+		System.out.printf("Two-course intersection count: %.2f us with the matrix, %.2f us scanning strings%n",
+							matrix / 1e3 / queries, scan / 1e3 / 100);
+	}
+}
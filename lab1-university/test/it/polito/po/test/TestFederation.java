@@ -0,0 +1,235 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.UniversityFederation;
+
+public class TestFederation {
+
+	private UniversityFederation poli;
+	private PrintStream err;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		// capacity rejections are expected here, don't flood the console
+		err = System.err;
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+		poli = new UniversityFederation("PoliTo", 3);
+	}
+
+	@After
+	public void tearDown() {
+		System.setErr(err);
+	}
+
+	@Test
+	public void testIds() {
+		int s0 = poli.enroll(0, "Mario", "Rossi");
+		int s1 = poli.enroll(1, "Francesca", "Verdi");
+		int s2 = poli.enroll(0, "Filippo", "Neri");
+		assertEquals(10000, s0);
+		assertEquals(10001, s2);
+		assertEquals(1, poli.campusOfStudent(s1));
+		assertEquals(0, poli.campusOfStudent(s2));
+		assertEquals(-1, poli.campusOfStudent(9999));
+		int c2 = poli.activate(2, "Macro Economics", "Paul Krugman");
+		assertEquals(2, poli.campusOfCourse(c2));
+		assertEquals(s1 + " Francesca Verdi", poli.student(s1));
+		assertEquals(c2 + ",Macro Economics,Paul Krugman", poli.course(c2));
+		assertNull(poli.student(s1 + 1));
+		assertNull(poli.course(c2 + 1));
+	}
+
+	@Test
+	public void testCrossCampus() {
+		int mario = poli.enroll(0, "Mario", "Rossi");
+		int francesca = poli.enroll(1, "Francesca", "Verdi");
+		int macro = poli.activate(0, "Macro Economics", "Paul Krugman");
+		int oop = poli.activate(2, "Object Oriented Programming", "James Gosling");
+		poli.register(mario, macro);
+		poli.register(mario, oop);
+		poli.register(francesca, oop);
+		poli.exam(mario, oop, 30);
+		poli.exam(francesca, oop, 24);
+		poli.exam(mario, macro, 26);
+
+		assertEquals("Macro Economics Paul Krugman" + macro + "\n"
+					+ "Object Oriented Programming James Gosling" + oop + "\n", poli.studyPlan(mario));
+		assertEquals(mario + " Mario Rossi\n" + francesca + " Francesca Verdi\n", poli.listAttendees(oop));
+		assertEquals("Student " + mario + " : 28.0", poli.studentAvg(mario));
+		assertEquals("The average for the courseObject Oriented Programmingis : 27.0", poli.courseAvg(oop));
+		assertEquals("Mario Rossi : 38.0\nFrancesca Verdi : 34.0\n", poli.topThreeStudents());
+	}
+
+	@Test
+	public void testCrossCampusLogged() {
+		int mario = poli.enroll(0, "Mario", "Rossi");
+		int oop = poli.activate(2, "Object Oriented Programming", "James Gosling");
+		Logger ul = Logger.getLogger("University");
+		List<String> messages = new ArrayList<>();
+		Handler handler = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				messages.add(record.getMessage());
+			}
+			@Override
+			public void flush() {}
+			@Override
+			public void close() {}
+		};
+		ul.setLevel(Level.INFO);
+		ul.addHandler(handler);
+		try {
+			poli.register(mario, oop);
+			poli.exam(mario, oop, 30);
+			poli.exam(mario, oop, 31);	// refused, not logged
+		} finally {
+			ul.removeHandler(handler);
+			ul.setLevel(Level.OFF);
+		}
+		assertEquals(List.of("Student " + mario + " signed up for course " + oop,
+							"Student " + mario + " took an exam in course " + oop + " with grade 30"), messages);
+	}
+
+	@Test
+	public void testLimitsAcrossCampuses() {
+		int mario = poli.enroll(0, "Mario", "Rossi");
+		List<Integer> codes = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			codes.add(poli.activate(i % 3, "Course " + i, "Teacher " + i));
+		}
+		for (int code : codes) {
+			poli.register(mario, code);
+		}
+		assertEquals(25, poli.studyPlan(mario).split("\n").length);
+
+		int course = codes.get(29);
+		for (int i = 0; i < 120; i++) {
+			poli.register(poli.enroll("Name" + i, "Surname" + i), course);
+		}
+		assertEquals(100, poli.listAttendees(course).split("\n").length);
+	}
+
+	@Test
+	public void testConcurrentNeverOverAdmits() throws InterruptedException {
+		int course = poli.activate(1, "Virology", "Roberto Burioni");
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 6; t++) {
+			final int campus = t % 3;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 50; i++) {
+					poli.register(poli.enroll(campus, "Name" + i, "Surname" + i), course);
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread t : threads) t.join();
+		assertEquals(100, poli.listAttendees(course).split("\n").length);
+	}
+
+	@Test
+	public void testSameRankingAsSingleUniversity() {
+		University single = new University("Single");
+		Random random = new Random(5);
+		int[] fedStudents = new int[3000];
+		for (int i = 0; i < fedStudents.length; i++) {
+			fedStudents[i] = poli.enroll("Name" + i, "Surname" + i);
+			single.enroll("Name" + i, "Surname" + i);
+		}
+		int[] fedCourses = new int[60];
+		for (int i = 0; i < fedCourses.length; i++) {
+			fedCourses[i] = poli.activate("Course " + i, "Teacher " + i);
+			single.activate("Course " + i, "Teacher " + i);
+		}
+		for (int n = 0; n < 10_000; n++) {
+			int s = random.nextInt(fedStudents.length);
+			int c = random.nextInt(fedCourses.length);
+			int grade = 18 + random.nextInt(13);
+			poli.register(fedStudents[s], fedCourses[c]);
+			single.register(10000 + s, 10 + c);
+			poli.exam(fedStudents[s], fedCourses[c], grade);
+			single.exam(10000 + s, 10 + c, grade);
+		}
+		assertEquals(scores(single.topStudents(20)), scores(poli.topStudents(20)));
+	}
+
+	private static List<String> scores(String ranking) {
+		List<String> scores = new ArrayList<>();
+		for (String row : ranking.split("\n")) {
+			scores.add(row.substring(row.indexOf(" : ")));
+		}
+		return scores;
+	}
+
+	@Test
+	public void testUnknown() {
+		assertEquals("Student not found.", poli.studyPlan(10000));
+		assertEquals("Course not found.", poli.listAttendees(10));
+		assertEquals("No students have taken exams.", poli.topThreeStudents());
+		poli.register(10000, 10);
+		poli.exam(10000, 10, 30);
+		assertEquals("No students have taken exams.", poli.topThreeStudents());
+	}
+
+	@Test
+	public void testBenchmark() throws InterruptedException {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int threads = 8;
+		final int perThread = 200_000;
+		for (int campuses : new int[] { 1, 4, 8 }) {
+			UniversityFederation u = new UniversityFederation("Bench", campuses);
+			List<Thread> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				workers.add(new Thread(() -> {
+					for (int i = 0; i < perThread; i++) {
+						u.enroll("Name", "Surname");
+					}
+				}));
+			}
+			long start = System.nanoTime();
+			workers.forEach(Thread::start);
+			for (Thread t : workers) t.join();
+			long enrolled = System.nanoTime() - start;
+
+			int[] courses = new int[100 * campuses];
+			for (int i = 0; i < courses.length; i++) {
+				courses[i] = u.activate("Course " + i, "Teacher");
+			}
+			Random random = new Random(1);
+			for (int i = 0; i < 100_000; i++) {
+				int id = 10000 + random.nextInt(perThread);
+				int campus = random.nextInt(campuses);
+				id += campus * ((Integer.MAX_VALUE - 10000) / campuses);
+				int code = courses[random.nextInt(courses.length)];
+				u.register(id, code);
+				u.exam(id, code, 18 + random.nextInt(13));
+			}
+			start = System.nanoTime();
+			for (int i = 0; i < 1000; i++) {
+				u.topStudents(10);
+			}
+			long ranked = (System.nanoTime() - start) / 1000;
+			System.out.printf("%d campuses: %.0f enrollments/s with %d threads on %d cores, top 10 in %.1f us%n",
+							campuses, threads * perThread * 1e9 / enrolled, threads,
+							Runtime.getRuntime().availableProcessors(), ranked / 1e3);
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.GradeColumns;
+import university.University;
+
+public class TestGradeHistogram {
+
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		poli = new University("PoliTo");
+		for (int i = 0; i < 10; i++) {
+			poli.enroll("Name" + i, "Surname" + i);
+		}
+		poli.activate("Macro Economics", "Paul Krugman");			// 10
+		poli.activate("Object Oriented Programming", "James Gosling");	// 11
+		poli.activate("Micro Economics", "Paul Krugman");			// 12
+		poli.activate("Virology", "Roberto Burioni");				// 13
+		int[] grades = { 18, 30, 25, 25, 27, 18, 25 };
+		for (int i = 0; i < grades.length; i++) {
+			poli.exam(10000 + i, 10, grades[i]);
+		}
+		poli.exam(10000, 11, 30);
+		poli.exam(10001, 11, 28);
+		poli.exam(10000, 12, 24);
+		poli.exam(10001, 12, 18);
+	}
+
+	@Test
+	public void testHistogram() {
+		int[] histogram = poli.courseHistogram(10);
+		assertEquals(31, histogram.length);
+		assertEquals(2, histogram[18]);
+		assertEquals(3, histogram[25]);
+		assertEquals(1, histogram[30]);
+		assertEquals(7, Arrays.stream(histogram).sum());
+		assertEquals(0, Arrays.stream(poli.courseHistogram(13)).sum());
+		assertNull(poli.courseHistogram(99));
+
+		int[] student = poli.studentHistogram(10000);
+		assertEquals(1, student[18]);
+		assertEquals(1, student[24]);
+		assertEquals(1, student[30]);
+		assertEquals(3, Arrays.stream(student).sum());
+		assertNull(poli.studentHistogram(20000));
+	}
+
+	@Test
+	public void testPercentiles() {
+		// 18 18 25 25 25 27 30
+		assertEquals(18, poli.coursePercentile(10, 0));
+		assertEquals(18, poli.coursePercentile(10, 25));
+		assertEquals(25, poli.coursePercentile(10, 50));
+		assertEquals(27, poli.coursePercentile(10, 80));
+		assertEquals(30, poli.coursePercentile(10, 100));
+		assertEquals(25.0, poli.courseMedian(10), 0.0);
+		assertEquals(25, poli.courseMode(10));
+
+		assertEquals(-1, poli.coursePercentile(13, 50));
+		assertTrue(Double.isNaN(poli.courseMedian(13)));
+		assertEquals(-1, poli.courseMode(13));
+		assertEquals(-1, poli.coursePercentile(99, 50));
+
+		// 18 24 30
+		assertEquals(24.0, poli.studentMedian(10000), 0.0);
+		assertEquals(30, poli.studentPercentile(10000, 90));
+		assertEquals("Ties should pick the highest grade", 30, poli.studentMode(10000));
+		// 18 28 30
+		assertEquals(28.0, poli.studentMedian(10001), 0.0);
+		assertTrue(Double.isNaN(poli.studentMedian(10009)));
+	}
+
+	@Test
+	public void testEvenMedian() {
+		assertEquals(26.0, GradeColumns.median(histogram(24, 25, 27, 30)), 0.0);
+		assertEquals(24.0, GradeColumns.median(histogram(24, 24)), 0.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPercentile() {
+		poli.coursePercentile(10, 101);
+	}
+
+	@Test
+	public void testMerged() {
+		int[] merged = poli.coursesHistogram(10, 12, 99);
+		assertEquals(3, merged[18]);
+		assertEquals(1, merged[24]);
+		assertEquals(9, Arrays.stream(merged).sum());
+
+		assertArrayEquals("Teacher histogram should merge their courses",
+							merged, poli.teacherHistogram("Paul Krugman"));
+		assertArrayEquals(poli.courseHistogram(11), poli.teacherHistogram("James Gosling"));
+		assertEquals(0, Arrays.stream(poli.teacherHistogram("Nobody")).sum());
+	}
+
+	@Test
+	public void testSameAsSorting() {
+		University u = new University("Random");
+		u.enroll("Many", "Exams");
+		u.activate("Course", "Teacher");
+		Random random = new Random(7);
+		int[] grades = new int[5000];
+		for (int i = 0; i < grades.length; i++) {
+			grades[i] = random.nextInt(31);
+			u.exam(10000, 10, grades[i]);
+		}
+		Arrays.sort(grades);
+		for (int p = 0; p <= 100; p += 5) {
+			int rank = Math.max(1, (int)Math.ceil(p / 100.0 * grades.length));
+			assertEquals("Wrong percentile " + p, grades[rank - 1], u.coursePercentile(10, p));
+			assertEquals("Wrong student percentile " + p, grades[rank - 1], u.studentPercentile(10000, p));
+		}
+		assertEquals((grades[2499] + grades[2500]) / 2.0, u.courseMedian(10), 0.0);
+		assertEquals("Counts above a byte", grades.length, Arrays.stream(u.studentHistogram(10000)).sum());
+	}
+
+	@Test
+	public void testRestored() throws IOException {
+		Path file = Files.createTempFile("university", ".snapshot");
+		try {
+			poli.snapshot(file);
+			University copy = University.restore(file);
+			assertArrayEquals(poli.courseHistogram(10), copy.courseHistogram(10));
+			assertArrayEquals(poli.studentHistogram(10001), copy.studentHistogram(10001));
+			assertArrayEquals(poli.teacherHistogram("Paul Krugman"), copy.teacherHistogram("Paul Krugman"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static int[] histogram(int... grades) {
+		int[] histogram = new int[GradeColumns.BUCKETS];
+		for (int g : grades) {
+			histogram[g]++;
+		}
+		return histogram;
+	}
+}
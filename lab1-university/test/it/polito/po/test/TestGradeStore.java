@@ -0,0 +1,98 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.GradeColumns;
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestGradeStore {
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+	}
+
+	@Test
+	public void testColumns() {
+		GradeColumns g = new GradeColumns();
+		for (int i = 0; i < 100; i++) {
+			g.add(10 + i, i % 31);
+		}
+		assertEquals("Wrong number of grades", 100, g.size());
+		assertEquals("Wrong key", 10, g.key(0));
+		assertEquals("Wrong key", 109, g.key(99));
+		assertEquals("Wrong grade", 30, g.grade(30));
+		assertEquals("Wrong grade", 99 % 31, g.grade(99));
+		long expected = 0;
+		for (int i = 0; i < 100; i++) expected += i % 31;
+		assertEquals("Wrong sum", expected, g.sum());
+	}
+
+	@Test
+	public void testAveragesFromColumns() {
+		University poli = new University("PoliTo");
+		int s1 = poli.enroll("Mario", "Rossi");
+		int s2 = poli.enroll("Giuseppe", "Verdi");
+		int macro = poli.activate("Macro Economics", "Paul Krugman");
+		int oop = poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(s1, macro);
+		poli.register(s2, macro);
+		poli.register(s2, oop);
+
+		poli.exam(s1, macro, 30);
+		poli.exam(s2, macro, 30);
+		poli.exam(s2, oop, 0);
+
+		assertContained("Wrong student average", "15", poli.studentAvg(s2));
+		assertContained("Wrong course average", "30", poli.courseAvg(macro));
+		assertContained("Wrong course average", "0", poli.courseAvg(oop));
+	}
+
+	@Test
+	public void testFootprint() {
+		reportFootprint(1_000_000);
+	}
+
+	@Test
+	public void testFootprintTenMillion() {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		reportFootprint(10_000_000);
+	}
+
+	private static void reportFootprint(int grades) {
+		final int examsPerStudent = 25;
+		final int studentsPerCourse = 100;
+		int nStudents = grades / examsPerStudent;
+		int nCourses = grades / studentsPerCourse;
+
+		University poli = new University("PoliTo");
+		for (int i = 0; i < nStudents; i++) {
+			poli.enroll("Name", "Surname");
+		}
+		for (int i = 0; i < nCourses; i++) {
+			poli.activate("Course", "Teacher");
+		}
+		for (int i = 0; i < grades; i++) {
+			int student = 10000 + i / examsPerStudent;
+			int course = 10 + i % nCourses;
+			poli.exam(student, course, 18 + i % 13);
+		}
+
+		long bytes = poli.gradeFootprint();
+		double perGrade = (double)bytes / grades;
+		System.out.printf("Grade store: %d grades take %.1f MB (%.2f bytes per grade)%n",
+							grades, bytes / 1048576.0, perGrade);
+		// two columns (int + byte) in both student and course views, plus growth slack
+		assertTrue("Grade store too large: " + perGrade + " bytes per grade", perGrade < 20);
+	}
+}
@@ -0,0 +1,134 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.Leaderboard;
+import university.Student;
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestLeaderboard {
+
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University("Politecnico di Torino");
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+		poli.enroll("Laura","Bianchi");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10002, 10);
+		poli.register(10003, 10);
+	}
+
+	@Test
+	public void testTiesByEnrollment() {
+		poli.exam(10002, 10, 28);
+		poli.exam(10000, 10, 28);
+		poli.exam(10001, 10, 28);
+
+		String[] rank = poli.topThreeStudents().split("\n");
+
+		assertEquals("Expected three students", 3, rank.length);
+		assertContained("Wrong tie break", "Rossi", rank[0]);
+		assertContained("Wrong tie break", "Verdi", rank[1]);
+		assertContained("Wrong tie break", "Neri", rank[2]);
+	}
+
+	@Test
+	public void testRegistrationChangesScore() {
+		poli.exam(10000, 10, 25);	// 25 + 10
+		poli.exam(10001, 10, 24);	// 24 + 10
+
+		assertContained("Wrong top student", "Rossi", poli.topThreeStudents().split("\n")[0]);
+
+		poli.register(10000, 11);	// 25 + 5
+		String[] rank = poli.topThreeStudents().split("\n");
+		assertContained("Ranking not updated after registration", "Verdi", rank[0]);
+		assertContained("Wrong score after registration", "30.0", rank[1]);
+	}
+
+	@Test
+	public void testTopK() {
+		poli.exam(10000, 10, 20);
+		poli.exam(10001, 10, 21);
+		poli.exam(10002, 10, 22);
+		poli.exam(10003, 10, 23);
+
+		String[] rank = poli.topStudents(4).split("\n");
+		assertEquals("Expected four students", 4, rank.length);
+		assertContained("Wrong order", "Bianchi", rank[0]);
+		assertContained("Wrong order", "Rossi", rank[3]);
+
+		assertEquals("Expected one student", 1, poli.topStudents(1).split("\n").length);
+		assertEquals("Expected all students", 4, poli.topStudents(10).split("\n").length);
+	}
+
+	@Test
+	public void testNoExams() {
+		assertEquals("No students have taken exams.", poli.topThreeStudents());
+	}
+
+	@Test
+	public void testBenchmark() {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int n = 1_000_000;
+		final int rounds = 20;
+		Random rnd = new Random(42);
+		Leaderboard board = new Leaderboard();
+		List<Student> all = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			Student s = new Student(10000 + i, "Name", "Surname" + i);
+			for (int c = 0; c < 4; c++) {
+				s.courseCodes.add(10 + c);
+			}
+			for (int e = 1 + rnd.nextInt(4); e > 0; e--) {
+				s.exams.add(10 + e, 18 + rnd.nextInt(13));
+			}
+			board.update(s);
+			all.add(s);
+		}
+
+		long start = System.nanoTime();
+		int[] fromBoard = null;
+		for (int r = 0; r < rounds; r++) {
+			fromBoard = board.topIds(3);
+		}
+		long boardTime = (System.nanoTime() - start) / rounds;
+
+		start = System.nanoTime();
+		List<Student> sorted = null;
+		for (int r = 0; r < rounds; r++) {
+			sorted = new ArrayList<>(all);
+			for (Student s : sorted) s.setPoint(Leaderboard.score(s));
+			sorted.sort(Comparator.comparingDouble(Student::getPoint).reversed()
+									.thenComparingInt(Student::getId));
+		}
+		long sortTime = (System.nanoTime() - start) / rounds;
+
+		assertArrayEquals("Leaderboard differs from full sort",
+							sorted.subList(0, 3).stream().mapToInt(Student::getId).toArray(), fromBoard);
+		System.out.printf("Top 3 of %d students: leaderboard %.3f ms, full re-sort %.1f ms%n",
+							n, boardTime / 1e6, sortTime / 1e6);
+	}
+}
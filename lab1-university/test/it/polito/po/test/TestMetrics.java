@@ -0,0 +1,174 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.LatencyHistogram;
+import university.Metrics.Operation;
+import university.MetricsSnapshot;
+import university.Rejection;
+import university.University;
+
+public class TestMetrics {
+
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		poli = new University("PoliTo");
+		poli.enroll("Mario", "Rossi");
+		poli.enroll("Francesca", "Verdi");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+	}
+
+	@Test
+	public void testCounts() {
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10000, 99);
+		poli.register(99999, 10);
+		poli.exam(10000, 10, 28);
+		poli.exam(10001, 10, 31);
+		poli.topThreeStudents();
+
+		MetricsSnapshot m = poli.metrics();
+		assertEquals(2, m.get(Operation.ENROLL).getCount());
+		assertEquals(2, m.get(Operation.ACTIVATE).getCount());
+		assertEquals("Refused registrations should not be timed", 2, m.get(Operation.REGISTER).getCount());
+		assertEquals(1, m.get(Operation.EXAM).getCount());
+		assertEquals(1, m.get(Operation.TOP_STUDENTS).getCount());
+		assertEquals(1, m.getRejected(Rejection.UNKNOWN_COURSE));
+		assertEquals(1, m.getRejected(Rejection.UNKNOWN_STUDENT));
+		assertEquals(1, m.getRejected(Rejection.INVALID_GRADE));
+		assertEquals(0, m.getRejected(Rejection.COURSE_FULL));
+	}
+
+	@Test
+	public void testLatencies() {
+		for (int i = 0; i < 1000; i++) {
+			poli.topThreeStudents();
+		}
+		MetricsSnapshot.OperationStats stats = poli.metrics().get(Operation.TOP_STUDENTS);
+		assertEquals(1000, stats.getCount());
+		assertTrue(stats.getP50Micros() > 0);
+		assertTrue("Percentiles out of order", stats.getP50Micros() <= stats.getP90Micros());
+		assertTrue("Percentiles out of order", stats.getP90Micros() <= stats.getP99Micros());
+		assertTrue("Percentiles out of order", stats.getP99Micros() <= stats.getMaxMicros());
+		assertTrue(stats.getMeanMicros() <= stats.getMaxMicros());
+	}
+
+	@Test
+	public void testImportRejections() throws IOException {
+		Path file = Files.createTempFile("university", ".csv");
+		try {
+			Files.write(file, List.of(
+					"register,10000,10", "register,10000,77", "exam,10000,10,40", "drop,1,2"));
+			poli.importFile(file);
+		} finally {
+			Files.delete(file);
+		}
+		MetricsSnapshot m = poli.metrics();
+		assertEquals(1, m.getRejected(Rejection.UNKNOWN_COURSE));
+		assertEquals(1, m.getRejected(Rejection.INVALID_GRADE));
+		assertEquals(1, m.getRejected(Rejection.MALFORMED));
+	}
+
+	@Test
+	public void testMBean() throws JMException {
+		poli.register(10000, 10);
+		poli.register(10000, 99);
+		ObjectName name = poli.registerMBean();
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertTrue(server.isRegistered(name));
+
+			CompositeData[] operations = (CompositeData[])server.getAttribute(name, "Operations");
+			assertEquals(Operation.values().length, operations.length);
+			CompositeData register = operations[Operation.REGISTER.ordinal()];
+			assertEquals("REGISTER", register.get("operation"));
+			assertEquals(1L, register.get("count"));
+
+			TabularData rejections = (TabularData)server.getAttribute(name, "Rejections");
+			CompositeData unknown = rejections.get(new Object[] { "UNKNOWN_COURSE" });
+			assertEquals(1L, unknown.get("value"));
+
+			server.invoke(name, "reset", null, null);
+			assertEquals(0, poli.metrics().get(Operation.REGISTER).getCount());
+			assertEquals(0, poli.metrics().getRejected(Rejection.UNKNOWN_COURSE));
+		} finally {
+			poli.unregisterMBean();
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+
+	@Test
+	public void testHistogramError() {
+		LatencyHistogram h = new LatencyHistogram();
+		Random random = new Random(1);
+		long[] values = new long[100_000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long)Math.exp(random.nextDouble() * 25);
+			h.record(values[i]);
+		}
+		Arrays.sort(values);
+		double[] percentiles = { 1, 10, 50, 90, 99, 99.9, 100 };
+		long[] measured = h.percentiles(percentiles);
+		for (int i = 0; i < percentiles.length; i++) {
+			long exact = values[(int)Math.ceil(percentiles[i] / 100 * values.length) - 1];
+			assertEquals("Wrong " + percentiles[i] + "th percentile", exact, measured[i], exact * 0.035 + 1);
+		}
+		assertEquals(values[values.length - 1], h.max());
+		assertEquals(values.length, h.count());
+
+		h.reset();
+		assertEquals(0, h.count());
+		assertEquals(0, h.percentiles(50)[0]);
+	}
+
+	@Test
+	public void testBenchmark() {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int n = 10_000_000;
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 0; i < n; i++) {
+			h.record(i & 0xFFFFF);
+		}
+		h.reset();
+		long start = System.nanoTime();
+		for (int i = 0; i < n; i++) {
+			h.record(i & 0xFFFFF);
+		}
+		long record = (System.nanoTime() - start) / (n / 1000);
+		start = System.nanoTime();
+		for (int i = 0; i < 1000; i++) {
+			poli.metrics();
+		}
+		long snapshot = (System.nanoTime() - start) / 1000;
+		System.out.printf("Recording a latency: %.1f ns, taking the metrics: %.1f us%n", record / 1e3, snapshot / 1e3);
+		Map<Operation, MetricsSnapshot.OperationStats> operations = poli.metrics().getOperations();
+		assertEquals(Operation.values().length, operations.size());
+	}
+}
@@ -0,0 +1,138 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestNameSearch {
+
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		poli = new University("PoliTo");
+		poli.enroll("Mario", "Rossi");			// 10000
+		poli.enroll("Francesca", "Verdi");		// 10001
+		poli.enroll("Filippo", "Neri");			// 10002
+		poli.enroll("Laura", "Rossini");		// 10003
+		poli.enroll("Nicolò", "Ferraris");		// 10004
+		poli.enroll("Giulia", "Rossi");			// 10005
+		poli.enroll("Luca", "Ferrà");			// 10006
+		poli.activate("Macro Economics", "Paul Krugman");				// 10
+		poli.activate("Object Oriented Programming", "James Gosling");	// 11
+		poli.activate("Micro Economics", "Paul Krugman");				// 12
+		poli.activate("Virology", "Roberto Burioni");					// 13
+	}
+
+	@Test
+	public void testPrefix() {
+		assertArrayEquals("Wrong order", new int[] { 10000, 10005, 10003 }, poli.findStudents("Ross", 10));
+		assertArrayEquals("Prefix of a longer surname", new int[] { 10000, 10005, 10003 }, poli.findStudents("rossi", 10));
+		assertArrayEquals("Limit not applied", new int[] { 10000, 10005 }, poli.findStudents("ross", 2));
+		assertArrayEquals("Accents should be ignored", new int[] { 10006, 10004 }, poli.findStudents("FERRA", 10));
+		assertArrayEquals(new int[0], poli.findStudents("Bianchi", 10));
+		assertEquals("Empty prefix matches everyone", 7, poli.findStudents("", 100).length);
+	}
+
+	@Test
+	public void testFuzzy() {
+		assertArrayEquals("Typo not tolerated", new int[] { 10000, 10005 }, poli.findStudentsLike("Rosi", 1, 10));
+		assertArrayEquals("Closest first", new int[] { 10000, 10005, 10003 }, poli.findStudentsLike("Rossin", 1, 10));
+		assertArrayEquals(new int[] { 10001 }, poli.findStudentsLike("Vredi", 2, 10));
+		assertArrayEquals(new int[0], poli.findStudentsLike("Vredi", 1, 10));
+		assertArrayEquals(new int[] { 10002 }, poli.findStudentsLike("Nei", 1, 10));
+		assertArrayEquals("Exact match only", new int[] { 10000, 10005 }, poli.findStudentsLike("rossi", 0, 10));
+	}
+
+	@Test
+	public void testNewStudentsAfterFuzzySearch() {
+		poli.findStudentsLike("Rosi", 1, 10);
+		int id = poli.enroll("Anna", "Rosa");
+		assertArrayEquals(new int[] { id, 10000, 10005 }, poli.findStudentsLike("Rosi", 1, 10));
+	}
+
+	@Test
+	public void testTeachers() {
+		assertArrayEquals(new int[] { 10, 12 }, poli.findCoursesByTeacher("Krug", 10));
+		assertArrayEquals(new int[] { 10, 12 }, poli.findCoursesByTeacher("paul", 10));
+		assertArrayEquals(new int[] { 11 }, poli.findCoursesByTeacher("James G", 10));
+		assertArrayEquals(new int[0], poli.findCoursesByTeacher("ames", 10));
+		assertArrayEquals(new int[] { 11 }, poli.findCoursesByTeacherLike("Gosslin", 2, 10));
+		assertArrayEquals(new int[] { 13 }, poli.findCoursesByTeacherLike("Roberto Buroni", 1, 10));
+		assertEquals("Courses listed once", 4, poli.findCoursesByTeacher("", 10).length);
+	}
+
+	@Test
+	public void testRestored() throws IOException {
+		Path file = Files.createTempFile("university", ".snapshot");
+		try {
+			poli.snapshot(file);
+			University copy = University.restore(file);
+			assertArrayEquals(poli.findStudents("Ross", 10), copy.findStudents("Ross", 10));
+			assertArrayEquals(poli.findCoursesByTeacherLike("Krugmann", 1, 10),
+								copy.findCoursesByTeacherLike("Krugmann", 1, 10));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testBenchmark() {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int nStudents = 1_000_000;
+		Random random = new Random(3);
+		String[] syllables = { "ba", "ro", "ssi", "ve", "rdi", "ne", "ri", "co", "lo", "ma", "ga", "li", "fe", "rra", "to" };
+		University u = new University("PoliTo");
+		String[] surnames = new String[nStudents];
+		for (int i = 0; i < nStudents; i++) {
+			StringBuilder surname = new StringBuilder();
+			for (int s = 2 + random.nextInt(3); s > 0; s--) {
+				surname.append(syllables[random.nextInt(syllables.length)]);
+			}
+			surnames[i] = surname.toString();
+			u.enroll("Name" + i, surnames[i]);
+		}
+
+		final int queries = 10_000;
+		long start = System.nanoTime();
+		for (int q = 0; q < queries; q++) {
+			String surname = surnames[random.nextInt(nStudents)];
+			assertTrue(u.findStudents(surname.substring(0, 4), 20).length > 0);
+		}
+		long prefix = (System.nanoTime() - start) / queries;
+
+		u.findStudentsLike("warmup", 1, 20);
+		start = System.nanoTime();
+		for (int q = 0; q < queries; q++) {
+			String surname = surnames[random.nextInt(nStudents)];
+			String typo = surname.substring(0, 2) + surname.substring(3);
+			assertTrue(u.findStudentsLike(typo, 1, 20).length > 0);
+		}
+		long fuzzy = (System.nanoTime() - start) / queries;
+
+		start = System.nanoTime();
+		for (int q = 0; q < 10; q++) {
+			String p = surnames[random.nextInt(nStudents)].substring(0, 4);
+			int found = 0;
+			for (int id = 10000; id < 10000 + nStudents && found < 20; id++) {
+				if (u.student(id).split(" ")[2].startsWith(p)) found++;
+			}
+		}
+		long scan = (System.nanoTime() - start) / 10;
+		System.out.printf("Search over %d surnames: prefix %.1f us, fuzzy %.1f us, scanning students %.1f us%n",
+							nStudents, prefix / 1e3, fuzzy / 1e3, scan / 1e3);
+	}
+}
@@ -0,0 +1,144 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import university.University;
+
+public class TestParallelScoring {
+
+	private static ForkJoinPool[] pools;
+
+	@BeforeClass
+	public static void startPools() {
+		pools = new ForkJoinPool[] { new ForkJoinPool(1), new ForkJoinPool(2), new ForkJoinPool(7) };
+	}
+
+	@AfterClass
+	public static void stopPools() {
+		for (ForkJoinPool pool : pools) {
+			pool.shutdown();
+		}
+	}
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+	}
+
+	private static University random(int nStudents, long seed) {
+		University u = new University("Random");
+		for (int i = 0; i < nStudents; i++) {
+			u.enroll("Name" + i, "Surname" + i);
+		}
+		for (int i = 0; i < 200; i++) {
+			u.activate("Course " + i, "Teacher " + i);
+		}
+		Random random = new Random(seed);
+		for (int i = 0; i < nStudents; i++) {
+			int courses = random.nextInt(4);
+			for (int c = 0; c < courses; c++) {
+				int code = 10 + random.nextInt(200);
+				u.register(10000 + i, code);
+				u.exam(10000 + i, code, 18 + random.nextInt(13));
+			}
+		}
+		return u;
+	}
+
+	@Test
+	public void testSameAsLeaderboard() {
+		University u = random(20_000, 1);
+		for (int k : new int[] { 1, 3, 10, 100 }) {
+			for (ForkJoinPool pool : pools) {
+				assertEquals("Wrong top " + k + " with " + pool.getParallelism() + " threads",
+							u.topStudents(k), u.topStudents(k, pool));
+			}
+		}
+	}
+
+	@Test
+	public void testTiesByIncreasingId() {
+		University u = new University("Ties");
+		for (int i = 0; i < 10_000; i++) {
+			u.enroll("Name" + i, "Surname" + i);
+		}
+		u.activate("Course", "Teacher");
+		for (int i = 9_999; i >= 0; i -= 1_000) {
+			u.exam(10000 + i, 10, 30);
+		}
+		String expected = "Name999 Surname999 : 30.0\nName1999 Surname1999 : 30.0\nName2999 Surname2999 : 30.0\n";
+		for (ForkJoinPool pool : pools) {
+			assertEquals(expected, u.topStudents(3, pool));
+		}
+		assertEquals(expected, u.topThreeStudents());
+	}
+
+	@Test
+	public void testScores() {
+		University poli = new University("PoliTo");
+		poli.enroll("Mario", "Rossi");
+		poli.enroll("Francesca", "Verdi");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10000, 11);
+		poli.exam(10000, 10, 28);
+
+		float[] scores = poli.scores(pools[1]);
+		assertEquals(2, scores.length);
+		assertEquals(28 + 0.5f * 10, scores[0], 0.0f);
+		assertTrue("Students without exams should have no score", Float.isNaN(scores[1]));
+	}
+
+	@Test
+	public void testEmpty() {
+		University poli = new University("PoliTo");
+		assertEquals("No students have taken exams.", poli.topStudents(3, pools[0]));
+		poli.enroll("Mario", "Rossi");
+		assertEquals("No students have taken exams.", poli.topStudents(3, pools[2]));
+		assertEquals(poli.topStudents(0), poli.topStudents(0, pools[2]));
+	}
+
+	@Test
+	public void testBenchmark() {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		int nStudents = Integer.getInteger("students", 1_000_000);
+		University u = random(nStudents, 2);
+		String expected = u.topThreeStudents();
+		int cores = Runtime.getRuntime().availableProcessors();
+		long single = 0;
+		for (int threads = 1; threads <= Math.max(16, cores); threads *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				for (int warmup = 0; warmup < 3; warmup++) {
+					u.topStudents(3, pool);
+				}
+				long start = System.nanoTime();
+				final int runs = 5;
+				for (int r = 0; r < runs; r++) {
+					assertEquals(expected, u.topStudents(3, pool));
+				}
+				long elapsed = (System.nanoTime() - start) / runs;
+				if (threads == 1) {
+					single = elapsed;
+				}
+				System.out.printf("Scoring %d students with %2d threads on %d cores: %d ms (speed-up %.2f)%n",
+									nStudents, threads, cores, elapsed / 1_000_000, (double)single / elapsed);
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.UniversityView;
+
+public class TestReadView {
+
+	private University poli;
+	private PrintStream err;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		// capacity rejections are expected here, don't flood the console
+		err = System.err;
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+		poli = new University("PoliTo");
+		poli.enroll("Mario", "Rossi");
+		poli.enroll("Francesca", "Verdi");
+		poli.enroll("Filippo", "Neri");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.exam(10000, 10, 28);
+		poli.exam(10001, 11, 24);
+	}
+
+	@After
+	public void tearDown() {
+		System.setErr(err);
+	}
+
+	@Test
+	public void testSameAsUniversity() {
+		UniversityView view = poli.snapshot();
+		for (int code = 10; code <= 12; code++) {
+			assertEquals(poli.listAttendees(code), view.listAttendees(code));
+			assertEquals(poli.courseAvg(code), view.courseAvg(code));
+			assertEquals(poli.course(code), view.course(code));
+		}
+		for (int id = 10000; id <= 10003; id++) {
+			assertEquals(poli.studyPlan(id), view.studyPlan(id));
+			assertEquals(poli.studentAvg(id), view.studentAvg(id));
+			assertEquals(poli.student(id), view.student(id));
+		}
+		assertEquals(poli.topThreeStudents(), view.topThreeStudents());
+		assertTrue(view.isRegistered(10001, 11));
+		assertFalse(view.isRegistered(10000, 11));
+	}
+
+	@Test
+	public void testLaterChangesIgnored() {
+		UniversityView view = poli.snapshot();
+		String attendees = view.listAttendees(10);
+		String top = view.topThreeStudents();
+
+		int id = poli.enroll("Laura", "Bianchi");
+		int code = poli.activate("Virology", "Roberto Burioni");
+		poli.register(id, 10);
+		poli.register(10002, 10);
+		poli.register(10000, code);
+		poli.exam(id, 10, 30);
+		poli.exam(10000, 10, 18);
+
+		assertEquals(attendees, view.listAttendees(10));
+		assertEquals(top, view.topThreeStudents());
+		assertEquals("Student 10000 : 28.0", view.studentAvg(10000));
+		assertNull(view.student(id));
+		assertNull(view.course(code));
+		assertEquals("Student not found.", view.studyPlan(id));
+		assertFalse(view.isRegistered(10000, code));
+
+		UniversityView later = poli.snapshot();
+		assertTrue(later.getVersion() > view.getVersion());
+		assertEquals(poli.listAttendees(10), later.listAttendees(10));
+		assertEquals(poli.topThreeStudents(), later.topThreeStudents());
+	}
+
+	@Test
+	public void testDeregistrationsUndone() {
+		poli.register(10002, 10);
+		try (UniversityView view = poli.snapshot()) {
+			String attendees = view.listAttendees(10);
+			String plan = view.studyPlan(10001);
+
+			poli.deregister(10001, 10);
+			poli.register(10001, 10);
+			poli.deregister(10000, 10);
+			poli.exam(10001, 11, 30);
+
+			assertEquals(attendees, view.listAttendees(10));
+			assertEquals(plan, view.studyPlan(10001));
+			assertTrue(view.isRegistered(10000, 10));
+			assertEquals("Student 10001 : 24.0", view.studentAvg(10001));
+			assertNotEquals(poli.listAttendees(10), view.listAttendees(10));
+		}
+		try (UniversityView view = poli.snapshot()) {
+			assertEquals(poli.listAttendees(10), view.listAttendees(10));
+			assertEquals(poli.studyPlan(10001), view.studyPlan(10001));
+		}
+	}
+
+	@Test
+	public void testRestored() throws IOException {
+		Path file = Files.createTempFile("university", ".snapshot");
+		try {
+			poli.snapshot(file);
+			University copy = University.restore(file);
+			UniversityView view = copy.snapshot();
+			assertEquals(poli.listAttendees(10), view.listAttendees(10));
+			assertEquals(poli.studyPlan(10001), view.studyPlan(10001));
+			assertEquals(poli.topThreeStudents(), view.topThreeStudents());
+			copy.register(10002, 11);
+			assertEquals(poli.listAttendees(11), view.listAttendees(11));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Counts the registrations seen from the courses and from the students
+	 */
+	private static int[] registrations(UniversityView view, int nStudents, int nCourses) {
+		int fromCourses = 0;
+		for (int code = 10; code < 10 + nCourses; code++) {
+			String list = view.listAttendees(code);
+			if (!list.startsWith("No students")) {
+				fromCourses += list.split("\n").length;
+			}
+		}
+		int fromStudents = 0;
+		for (int id = 10000; id < 10000 + nStudents; id++) {
+			String plan = view.studyPlan(id);
+			if (!plan.isEmpty()) {
+				fromStudents += plan.split("\n").length;
+			}
+		}
+		return new int[] { fromCourses, fromStudents };
+	}
+
+	@Test
+	public void testConsistentWhileWriting() throws InterruptedException {
+		final int nStudents = 200;
+		final int nCourses = 20;
+		University u = new University("Busy");
+		for (int i = 0; i < nStudents; i++) {
+			u.enroll("Name" + i, "Surname" + i);
+		}
+		for (int i = 0; i < nCourses; i++) {
+			u.activate("Course " + i, "Teacher " + i);
+		}
+		List<Thread> writers = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final int seed = t;
+			writers.add(new Thread(() -> {
+				Random random = new Random(seed);
+				for (int i = 0; i < 2000; i++) {
+					int id = 10000 + random.nextInt(nStudents);
+					int code = 10 + random.nextInt(nCourses);
+					u.register(id, code);
+					u.exam(id, code, 18 + random.nextInt(13));
+				}
+			}));
+		}
+		for (Thread w : writers) w.start();
+		while (writers.stream().anyMatch(Thread::isAlive)) {
+			UniversityView view = u.snapshot();
+			int[] first = registrations(view, nStudents, nCourses);
+			assertEquals("Registration seen on one side only", first[0], first[1]);
+			assertArrayEquals("View changed", first, registrations(view, nStudents, nCourses));
+		}
+		for (Thread w : writers) w.join();
+		UniversityView last = u.snapshot();
+		assertEquals(u.topStudents(10), last.topStudents(10));
+	}
+
+	@Test
+	public void testBenchmark() throws InterruptedException {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int nStudents = 100_000;
+		final int nCourses = 1_000;
+		University u = new University("Busy");
+		for (int i = 0; i < nStudents; i++) {
+			u.enroll("Name" + i, "Surname" + i);
+		}
+		for (int i = 0; i < nCourses; i++) {
+			u.activate("Course " + i, "Teacher " + i);
+		}
+		for (int readers : new int[] { 0, 2 }) {
+			AtomicBoolean done = new AtomicBoolean();
+			AtomicLong views = new AtomicLong();
+			List<Thread> threads = new ArrayList<>();
+			for (int r = 0; r < readers; r++) {
+				threads.add(new Thread(() -> {
+					Random random = new Random();
+					while (!done.get()) {
+						UniversityView view = u.snapshot();
+						for (int q = 0; q < 100; q++) {
+							view.listAttendees(10 + random.nextInt(nCourses));
+						}
+						views.incrementAndGet();
+					}
+				}));
+			}
+			threads.forEach(Thread::start);
+			Random random = new Random(readers);
+			final int ops = 200_000;
+			long start = System.nanoTime();
+			for (int i = 0; i < ops; i++) {
+				int id = 10000 + random.nextInt(nStudents);
+				int code = 10 + random.nextInt(nCourses);
+				u.register(id, code);
+				u.exam(id, code, 18 + random.nextInt(13));
+			}
+			long elapsed = System.nanoTime() - start;
+			done.set(true);
+			for (Thread t : threads) t.join();
+			System.out.printf("Writes with %d reading threads: %.0f ops/s (%d views read)%n",
+								readers, 2 * ops * 1e9 / elapsed, views.get());
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.Registry;
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestRegistry {
+
+	private static final int MANY_STUDENTS = 1_000_000;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+	}
+
+	@Test
+	public void testDenseIds() {
+		Registry<String> r = new Registry<>(10000);
+		for (int i = 0; i < 100; i++) {
+			r.put(10000 + i, "s" + i);
+		}
+		assertEquals("Wrong registry size", 100, r.size());
+		assertEquals("Wrong entry", "s0", r.get(10000));
+		assertEquals("Wrong entry", "s99", r.get(10099));
+		assertNull("Unexpected entry", r.get(10100));
+		assertNull("Unexpected entry", r.get(9999));
+	}
+
+	@Test
+	public void testSparseIds() {
+		Registry<String> r = new Registry<>(10);
+		r.put(10, "a");
+		r.put(1_000_000, "far");
+		r.put(-5, "below");
+		assertEquals("Wrong registry size", 3, r.size());
+		assertEquals("Wrong entry", "far", r.get(1_000_000));
+		assertEquals("Wrong entry", "below", r.get(-5));
+
+		r.put(1_000_000, "replaced");
+		assertEquals("Wrong registry size", 3, r.size());
+		assertEquals("Wrong entry", "replaced", r.get(1_000_000));
+	}
+
+	@Test
+	public void testSparseBecomesDense() {
+		Registry<String> r = new Registry<>(0, 4);
+		r.put(0, "a");
+		r.put(20, "sparse");
+		for (int i = 1; i < 30; i++) {
+			if (i != 20) r.put(i, "d" + i);
+		}
+		assertEquals("Wrong registry size", 30, r.size());
+		assertEquals("Entry lost when dense range grew", "sparse", r.get(20));
+	}
+
+	@Test
+	public void testSparseReplacedWhenDense() {
+		Registry<String> r = new Registry<>(0, 4);
+		r.put(0, "a");
+		r.put(5, "old");
+		r.put(3, "b");
+		r.put(5, "new");	// moves the dense range over the sparse entry
+		assertEquals("Wrong registry size", 3, r.size());
+		assertEquals("Replaced entry lost", "new", r.get(5));
+	}
+
+	@Test
+	public void testLookupsDuringGrowth() throws InterruptedException {
+		Registry<Integer> r = new Registry<>(0, 4);
+		final int n = 20_000;
+		r.put(0, 0);
+		for (int id = 100; id < n; id += 10) {
+			r.put(id, id);	// far from the dense range, in the hash index
+		}
+		boolean[] missed = new boolean[1];
+		Thread reader = new Thread(() -> {
+			while (r.get(n - 10) == null || r.get(n - 9) == null) {
+				for (int id = 100; id < n; id += 10) {
+					if (r.get(id) == null) {
+						missed[0] = true;
+						return;
+					}
+				}
+			}
+		});
+		reader.start();
+		for (int id = 1; id < n; id++) {
+			if (id < 100 || id % 10 != 0) r.put(id, id);
+		}
+		reader.join();
+		assertFalse("Entry missed while moving to the dense range", missed[0]);
+		assertEquals("Wrong registry size", n, r.size());
+	}
+
+	@Test
+	public void testRemove() {
+		Registry<String> r = new Registry<>(10);
+		r.put(10, "a");
+		r.put(11, "b");
+		r.put(12, "c");
+		r.put(5000, "d");
+
+		assertEquals("Wrong removed entry", "b", r.remove(11));
+		assertEquals("Wrong removed entry", "d", r.remove(5000));
+		assertNull("Entry removed twice", r.remove(11));
+		assertNull("Removed entry still present", r.get(11));
+		assertFalse("Removed entry still present", r.contains(5000));
+		assertEquals("Wrong registry size", 2, r.size());
+	}
+
+	@Test
+	public void testIterationOrder() {
+		Registry<Integer> r = new Registry<>(10);
+		r.put(900, 900);
+		r.put(10, 10);
+		r.put(11, 11);
+		r.put(500, 500);
+		r.put(12, 12);
+		r.remove(11);
+
+		List<Integer> ids = new ArrayList<>();
+		for (Integer id : r) ids.add(id);
+		assertEquals("Wrong iteration order", List.of(10, 12, 500, 900), ids);
+	}
+
+	@Test
+	public void testManyStudents() {
+		University poli = new University("Politecnico di Torino");
+		for (int i = 0; i < MANY_STUDENTS; i++) {
+			poli.enroll("Name" + i, "Surname" + i);
+		}
+		int course = poli.activate("Object Oriented Programming", "James Gosling");
+		int last = 10000 + MANY_STUDENTS - 1;
+		poli.register(last, course);
+
+		assertEquals("Wrong student info", "10000 Name0 Surname0", poli.student(10000));
+		assertContained("Wrong student info", "Surname" + (MANY_STUDENTS - 1), poli.student(last));
+		assertNull("Unexpected student", poli.student(last + 1));
+		assertContained("Wrong study plan", "Object Oriented", poli.studyPlan(last));
+		assertContained("Wrong attendees", String.valueOf(last), poli.listAttendees(course));
+
+		long start = System.nanoTime();
+		long found = 0;
+		for (int i = 0; i < MANY_STUDENTS; i++) {
+			if (poli.student(10000 + i) != null) found++;
+		}
+		long elapsed = System.nanoTime() - start;
+		assertEquals("Missing students", MANY_STUDENTS, found);
+		System.out.printf("%d student lookups in %d ms%n", MANY_STUDENTS, elapsed / 1_000_000);
+	}
+}
@@ -0,0 +1,76 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestRunningStats {
+
+	private static final double EPSILON = 1e-9;
+
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University("Politecnico di Torino");
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10002, 10);
+		poli.register(10000, 11);
+	}
+
+	@Test
+	public void testFractionalAverages() {
+		poli.exam(10000, 10, 27);
+		poli.exam(10000, 11, 30);
+		poli.exam(10001, 10, 30);
+
+		assertEquals("Wrong student average", "Student 10000 : 28.5", poli.studentAvg(10000));
+		assertContained("Wrong course average", "28.5", poli.courseAvg(10));
+	}
+
+	@Test
+	public void testAveragesFollowExams() {
+		poli.exam(10000, 10, 18);
+		assertContained("Wrong course average", "18.0", poli.courseAvg(10));
+		poli.exam(10001, 10, 24);
+		assertContained("Wrong course average", "21.0", poli.courseAvg(10));
+		poli.exam(10002, 10, 30);
+		assertContained("Wrong course average", "24.0", poli.courseAvg(10));
+	}
+
+	@Test
+	public void testStdDev() {
+		poli.exam(10000, 10, 18);
+		poli.exam(10001, 10, 24);
+		poli.exam(10002, 10, 30);
+		poli.exam(10000, 11, 30);
+
+		assertEquals("Wrong course standard deviation", Math.sqrt(24.0), poli.courseStdDev(10), EPSILON);
+		assertEquals("Wrong student standard deviation", 6.0, poli.studentStdDev(10000), EPSILON);
+		assertEquals("Wrong standard deviation for a single exam", 0.0, poli.courseStdDev(11), EPSILON);
+	}
+
+	@Test
+	public void testStdDevNoExams() {
+		assertTrue("Expected NaN without exams", Double.isNaN(poli.courseStdDev(11)));
+		assertTrue("Expected NaN without exams", Double.isNaN(poli.studentStdDev(10001)));
+		assertTrue("Expected NaN for unknown student", Double.isNaN(poli.studentStdDev(20000)));
+	}
+}
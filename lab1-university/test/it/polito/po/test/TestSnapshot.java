@@ -0,0 +1,154 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestSnapshot {
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		file = Files.createTempFile("university", ".snapshot");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	private static University sample() {
+		University poli = new University("Politecnico di Torino");
+		poli.setRector("Guido", "Saracco");
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+		poli.enroll("Laura","Bianchi");
+		poli.enroll("Nicolò","Ferraris");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.activate("Virology", "Roberto Burioni");
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.register(10001, 12);
+		poli.register(10002, 11);
+		poli.register(10003, 10);
+		poli.register(10003, 11);
+		poli.exam(10000, 10, 25);
+		poli.exam(10001, 10, 26);
+		poli.exam(10001, 11, 28);
+		poli.exam(10003, 10, 26);
+		poli.exam(10003, 11, 30);
+		return poli;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		University poli = sample();
+		poli.snapshot(file);
+		University copy = University.restore(file);
+
+		assertEquals("Wrong name", poli.getName(), copy.getName());
+		assertEquals("Wrong rector", poli.getRector(), copy.getRector());
+		for (int id = 10000; id <= 10004; id++) {
+			assertEquals("Wrong student", poli.student(id), copy.student(id));
+			assertEquals("Wrong study plan", poli.studyPlan(id), copy.studyPlan(id));
+			assertEquals("Wrong student average", poli.studentAvg(id), copy.studentAvg(id));
+		}
+		for (int code = 10; code <= 12; code++) {
+			assertEquals("Wrong course", poli.course(code), copy.course(code));
+			assertEquals("Wrong attendees", poli.listAttendees(code), copy.listAttendees(code));
+			assertEquals("Wrong course average", poli.courseAvg(code), copy.courseAvg(code));
+			assertEquals("Wrong standard deviation", poli.courseStdDev(code), copy.courseStdDev(code), 1e-9);
+		}
+		assertEquals("Wrong best students", poli.topThreeStudents(), copy.topThreeStudents());
+	}
+
+	@Test
+	public void testRestoredGoesOn() throws IOException {
+		sample().snapshot(file);
+		University copy = University.restore(file);
+
+		assertEquals("Wrong id after restore", 10005, copy.enroll("Galileo", "Ferraris"));
+		assertEquals("Wrong code after restore", 13, copy.activate("Chemistry", "Marie Curie"));
+		copy.register(10005, 13);
+		copy.exam(10005, 13, 30);
+		assertContained("Wrong best student after restore", "Galileo Ferraris", copy.topThreeStudents().split("\n")[0]);
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		new University("Empty").snapshot(file);
+		University copy = University.restore(file);
+		assertEquals("Empty", copy.getName());
+		assertNull(copy.getRector());
+		assertEquals(10000, copy.enroll("Mario", "Rossi"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotASnapshot() throws IOException {
+		Files.write(file, "enroll,Mario,Rossi\n".getBytes());
+		University.restore(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException {
+		sample().snapshot(file);
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length / 2));
+		University.restore(file);
+	}
+
+	@Test
+	public void testBenchmark() throws IOException {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int nStudents = 1_000_000;
+		final int examsPerStudent = 20;
+		final int nCourses = 10_000;
+
+		University poli = new University("PoliTo");
+		for (int i = 0; i < nStudents; i++) {
+			poli.enroll("Name" + (i % 5000), "Surname" + (i % 20000));
+		}
+		for (int i = 0; i < nCourses; i++) {
+			poli.activate("Course " + i, "Teacher " + (i % 1000));
+		}
+		for (int i = 0; i < nStudents; i++) {
+			for (int e = 0; e < examsPerStudent; e++) {
+				poli.exam(10000 + i, 10 + (i + e * 499) % nCourses, 18 + (i + e) % 13);
+			}
+		}
+
+		long start = System.nanoTime();
+		poli.snapshot(file);
+		long saved = System.nanoTime() - start;
+		start = System.nanoTime();
+		University copy = University.restore(file);
+		long restored = System.nanoTime() - start;
+
+		assertEquals(poli.topThreeStudents(), copy.topThreeStudents());
+		assertEquals(poli.courseAvg(10), copy.courseAvg(10));
+		System.out.printf("Snapshot of %d students and %d grades: %.1f MB, saved in %d ms, restored in %d ms%n",
+							nStudents, (long)nStudents * examsPerStudent, Files.size(file) / 1048576.0,
+							saved / 1_000_000, restored / 1_000_000);
+	}
+
+	private static void assertContained(String msg, String expected, String actual) {
+		TestR5_Exams.assertContained(msg, expected, actual);
+	}
+}
@@ -0,0 +1,127 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestStreamingOutput {
+
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		poli = new University("PoliTo");
+		for (int i = 0; i < 100; i++) {
+			poli.enroll("Name" + i, "Surname" + i);
+		}
+		for (int i = 0; i < 25; i++) {
+			poli.activate("Course " + i, "Teacher " + i);
+		}
+		for (int i = 0; i < 100; i++) {
+			poli.register(10000 + i, 10);
+		}
+		for (int i = 0; i < 25; i++) {
+			poli.register(10000, 10 + i);
+		}
+		poli.activate("Empty", "Nobody");
+	}
+
+	@Test
+	public void testWriterSameAsString() throws IOException {
+		StringWriter out = new StringWriter();
+		poli.listAttendees(10, out);
+		assertEquals("Wrong attendees", poli.listAttendees(10), out.toString());
+
+		StringBuilder plan = new StringBuilder();
+		poli.studyPlan(10000, plan);
+		assertEquals("Wrong study plan", poli.studyPlan(10000), plan.toString());
+	}
+
+	@Test
+	public void testWriterMessages() throws IOException {
+		StringBuilder out = new StringBuilder();
+		poli.listAttendees(35, out);
+		assertEquals(poli.listAttendees(35), out.toString());
+		out.setLength(0);
+		poli.listAttendees(99, out);
+		assertEquals(poli.listAttendees(99), out.toString());
+		out.setLength(0);
+		poli.studyPlan(20000, out);
+		assertEquals(poli.studyPlan(20000), out.toString());
+		out.setLength(0);
+		poli.studyPlan(10050, out);
+		assertEquals("Wrong study plan of a student with a single course", poli.studyPlan(10050), out.toString());
+	}
+
+	@Test
+	public void testPages() {
+		StringBuilder joined = new StringBuilder();
+		for (int offset = 0; offset < 100; offset += 30) {
+			String page = poli.listAttendees(10, offset, 30);
+			assertEquals("Wrong page size", Math.min(30, 100 - offset), page.split("\n").length);
+			joined.append(page);
+		}
+		assertEquals("Pages don't add up to the whole list", poli.listAttendees(10), joined.toString());
+		assertEquals("Page past the end should be empty", "", poli.listAttendees(10, 100, 10));
+		assertEquals("", poli.listAttendees(10, 5, 0));
+		assertEquals("Course not found.", poli.listAttendees(99, 0, 10));
+
+		String plan = poli.studyPlan(10000, 20, 10);
+		assertEquals("Wrong last page", 5, plan.split("\n").length);
+		assertTrue(poli.studyPlan(10000).endsWith(plan));
+		assertEquals("Student not found.", poli.studyPlan(20000, 0, 10));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeOffset() {
+		poli.listAttendees(10, -1, 10);
+	}
+
+	@Test
+	public void testStreams() {
+		List<String> rows = poli.streamAttendees(10).collect(Collectors.toList());
+		assertEquals("Wrong number of attendees", 100, rows.size());
+		assertEquals("Wrong attendee", poli.student(10042), rows.get(42));
+		assertEquals("Streams should be lazy", poli.student(10000),
+					poli.streamAttendees(10).findFirst().get());
+
+		String plan = poli.streamStudyPlan(10000).map(r -> r + "\n").collect(Collectors.joining());
+		assertEquals("Wrong study plan", poli.studyPlan(10000), plan);
+
+		assertEquals(0, poli.streamAttendees(99).count());
+		assertEquals(0, poli.streamAttendees(35).count());
+		assertEquals(0, poli.streamStudyPlan(20000).count());
+	}
+
+	@Test
+	public void testRowsAddedWhileStreaming() {
+		poli.activate("Large", "Teacher");	// 36
+		for (int i = 0; i < 50; i++) {
+			poli.register(10000 + 50 + i, 36);
+		}
+		Iterator<String> rows = poli.streamAttendees(36).iterator();
+		assertEquals(poli.student(10050), rows.next());
+		for (int i = 0; i < 50; i++) {
+			poli.register(10000 + i, 36);
+		}
+		int count = 1;
+		while (rows.hasNext()) {
+			rows.next();
+			count++;
+		}
+		assertTrue("Rows lost while streaming", count >= 50);
+	}
+}
@@ -0,0 +1,104 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.StringPool;
+import university.University;
+
+public class TestStringPool {
+
+	// kept referenced, or the collections run by the benchmark would drop its level
+	private static final Logger ul = Logger.getLogger("University");
+
+	@Before
+	public void setUp() {
+		ul.setLevel(Level.OFF);
+	}
+
+	@Test
+	public void testPool() {
+		StringPool pool = new StringPool();
+		String rossi = pool.intern(new String("Rossi"));
+		assertSame("Equal strings not shared", rossi, pool.intern(new String("Rossi")));
+		assertEquals("Rossi", rossi);
+		assertNotSame(rossi, pool.intern("Verdi"));
+		assertNull(pool.intern(null));
+		assertEquals(2, pool.size());
+	}
+
+	@Test
+	public void testRowsRenderedFromIds() {
+		University poli = new University("PoliTo");
+		int s1 = poli.enroll("Mario", "Rossi");
+		int s2 = poli.enroll("Giulia", "Rossi");
+		int macro = poli.activate("Macro Economics", "Paul Krugman");
+		int oop = poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(s1, macro);
+		poli.register(s2, macro);
+		poli.register(s2, oop);
+		assertEquals("10000 Mario Rossi\n10001 Giulia Rossi\n", poli.listAttendees(macro));
+		assertEquals("Macro Economics Paul Krugman10\nObject Oriented Programming James Gosling11\n", poli.studyPlan(s2));
+		assertEquals("10001 Giulia Rossi\n", poli.listAttendees(macro, 1, 10));
+		poli.deregister(s1, macro);
+		assertEquals("10001 Giulia Rossi\n", poli.listAttendees(macro));
+		assertEquals("", poli.studyPlan(s1));
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	@Test
+	public void testBenchmark() {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int nStudents = 1_000_000;
+		final int nCourses = 40_000;
+		final int perStudent = 4;
+		String[] firstNames = new String[200];
+		String[] lastNames = new String[5000];
+		for (int i = 0; i < firstNames.length; i++) firstNames[i] = "Name" + i;
+		for (int i = 0; i < lastNames.length; i++) lastNames[i] = "Surname" + i;
+		Random random = new Random(5);
+
+		long before = usedHeap();
+		University u = new University("PoliTo");
+		for (int i = 0; i < nCourses; i++) {
+			u.activate("Course title number " + i % 2000, "Teacher " + i % 500);
+		}
+		for (int i = 0; i < nStudents; i++) {
+			// each row of an input file yields new strings
+			u.enroll(new String(firstNames[random.nextInt(firstNames.length)]),
+						new String(lastNames[random.nextInt(lastNames.length)]));
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < nStudents; i++) {
+			for (int c = 0; c < perStudent; c++) {
+				u.register(10000 + i, 10 + random.nextInt(nCourses));
+			}
+		}
+		long register = (System.nanoTime() - start) / (nStudents * perStudent);
+		long heap = usedHeap() - before;
+
+		start = System.nanoTime();
+		long chars = 0;
+		for (int code = 10; code < 10 + nCourses; code += 40) {
+			chars += u.listAttendees(code).length();
+		}
+		long list = (System.nanoTime() - start) / (nCourses / 40);
+		assertTrue(chars > 0);
+		System.out.printf("%d students, %d registrations: %d MB of heap, register %.1f us, list attendees %.1f us%n",
+							nStudents, nStudents * perStudent, heap >> 20, register / 1e3, list / 1e3);
+	}
+}
@@ -0,0 +1,403 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.Metrics.Operation;
+import university.Rejection;
+import university.University;
+import university.UniversityView;
+import university.Waitlist;
+import university.WriteAheadLog;
+import university.WriteAheadLog.Durability;
+
+public class TestWaitlist {
+
+	private static final int COURSE = 10;
+
+	private PrintStream err;
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		// capacity rejections are expected here, don't flood the console
+		err = System.err;
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+		poli = populate(new University("PoliTo"));
+	}
+
+	@After
+	public void tearDown() {
+		System.setErr(err);
+	}
+
+	private static University populate(University u) {
+		for (int i = 0; i < 200; i++) {
+			u.enroll("Name" + i, "Surname" + i);
+		}
+		u.activate("Object Oriented Programming", "James Gosling");	// 10
+		u.activate("Macro Economics", "Paul Krugman");				// 11
+		return u;
+	}
+
+	/** registers students 10000-10099, filling the course */
+	private static void fill(University u) {
+		for (int id = 10000; id < 10100; id++) {
+			u.register(id, COURSE);
+		}
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		assertNull(poli.getWaitlistPriority());
+		fill(poli);
+		poli.register(10150, COURSE);
+		assertEquals(100, countLines(poli.listAttendees(COURSE)));
+		assertArrayEquals(new int[0], poli.waitlist(COURSE));
+		assertEquals(1, poli.metrics().getRejected(Rejection.COURSE_FULL));
+	}
+
+	@Test
+	public void testFifo() {
+		poli.setWaitlistPriority(Waitlist.Priority.FIFO);
+		fill(poli);
+		poli.register(10150, COURSE);
+		poli.register(10120, COURSE);
+		poli.register(10130, COURSE);
+		poli.register(10120, COURSE);	// already waiting
+		assertArrayEquals(new int[] { 10150, 10120, 10130 }, poli.waitlist(COURSE));
+		assertEquals(1, poli.waitlistPosition(10120, COURSE));
+		assertEquals(-1, poli.waitlistPosition(10000, COURSE));
+		assertFalse(poli.isRegistered(10150, COURSE));
+		assertEquals("Waiting students are not rejections", 0, poli.metrics().getRejected(Rejection.WAITLISTED));
+		assertEquals(104, poli.metrics().get(Operation.REGISTER).getCount());
+
+		poli.deregister(10000, COURSE);
+		assertFalse(poli.isRegistered(10000, COURSE));
+		assertTrue("Head of the waitlist not admitted", poli.isRegistered(10150, COURSE));
+		assertArrayEquals(new int[] { 10120, 10130 }, poli.waitlist(COURSE));
+		assertEquals(100, countLines(poli.listAttendees(COURSE)));
+		assertEquals("", poli.studyPlan(10000));
+		assertEquals(1, poli.metrics().get(Operation.DEREGISTER).getCount());
+	}
+
+	@Test
+	public void testSeniority() {
+		poli.setWaitlistPriority(Waitlist.Priority.SENIORITY);
+		fill(poli);
+		poli.register(10150, COURSE);
+		poli.register(10130, COURSE);
+		poli.register(10120, COURSE);
+		assertArrayEquals(new int[] { 10120, 10130, 10150 }, poli.waitlist(COURSE));
+
+		poli.deregister(10050, COURSE);
+		poli.deregister(10051, COURSE);
+		assertTrue(poli.isRegistered(10120, COURSE));
+		assertTrue(poli.isRegistered(10130, COURSE));
+		assertArrayEquals(new int[] { 10150 }, poli.waitlist(COURSE));
+	}
+
+	@Test
+	public void testNewcomersQueueBehindWaitlist() {
+		poli.setWaitlistPriority(Waitlist.Priority.FIFO);
+		fill(poli);
+		poli.register(10150, COURSE);
+		poli.register(10151, COURSE);
+		poli.deregister(10000, COURSE);
+		poli.register(10000, COURSE);
+		assertArrayEquals(new int[] { 10151, 10000 }, poli.waitlist(COURSE));
+	}
+
+	@Test
+	public void testWithdrawFromWaitlist() {
+		poli.setWaitlistPriority(Waitlist.Priority.FIFO);
+		fill(poli);
+		poli.register(10150, COURSE);
+		poli.register(10151, COURSE);
+		poli.deregister(10150, COURSE);
+		assertArrayEquals(new int[] { 10151 }, poli.waitlist(COURSE));
+		assertEquals(100, countLines(poli.listAttendees(COURSE)));
+
+		poli.deregister(10150, COURSE);
+		poli.deregister(10150, 99);
+		assertEquals(1, poli.metrics().getRejected(Rejection.NOT_REGISTERED));
+		assertEquals(1, poli.metrics().getRejected(Rejection.UNKNOWN_COURSE));
+	}
+
+	@Test
+	public void testFullStudentLeavesWaitlist() {
+		poli.setWaitlistPriority(Waitlist.Priority.FIFO);
+		fill(poli);
+		poli.register(10150, COURSE);
+		poli.register(10151, COURSE);
+		for (int i = 0; i < 25; i++) {
+			int code = poli.activate("Course " + i, "Teacher " + i);
+			poli.register(10150, code);
+		}
+		poli.deregister(10000, COURSE);
+		assertFalse("Student over the limit admitted", poli.isRegistered(10150, COURSE));
+		assertTrue(poli.isRegistered(10151, COURSE));
+		assertArrayEquals(new int[0], poli.waitlist(COURSE));
+	}
+
+	@Test
+	public void testScoreAndViews() {
+		poli.register(10000, COURSE);
+		poli.register(10000, 11);
+		poli.exam(10000, COURSE, 30);
+		UniversityView before = poli.snapshot();
+		poli.deregister(10000, 11);
+
+		assertEquals("Name0 Surname0 : 40.0\n", poli.topThreeStudents());
+		assertTrue(before.isRegistered(10000, 11));
+		assertEquals("Name0 Surname0 : 35.0\n", before.topThreeStudents());
+		UniversityView after = poli.snapshot();
+		assertFalse(after.isRegistered(10000, 11));
+		assertEquals(poli.studyPlan(10000), after.studyPlan(10000));
+		assertEquals(poli.listAttendees(11), after.listAttendees(11));
+		assertEquals(poli.topThreeStudents(), after.topThreeStudents());
+	}
+
+	@Test
+	public void testConcurrentRegistrations() throws InterruptedException {
+		poli.setWaitlistPriority(Waitlist.Priority.FIFO);
+		runConcurrently(16, t -> {
+			Random random = new Random(t);
+			for (int i = 0; i < 5000; i++) {
+				int id = 10000 + random.nextInt(200);
+				int code = COURSE + random.nextInt(2);
+				if (random.nextInt(3) == 0) {
+					poli.deregister(id, code);
+				} else {
+					poli.register(id, code);
+				}
+			}
+		});
+		for (int code = COURSE; code <= 11; code++) {
+			int attendees = countLines(poli.listAttendees(code));
+			assertTrue("Course over capacity", attendees <= 100);
+			int[] waiting = poli.waitlist(code);
+			if (waiting.length > 0) {
+				assertEquals("Students waiting for a free seat", 100, attendees);
+			}
+			for (int id : waiting) {
+				assertFalse("Student both attending and waiting", poli.isRegistered(id, code));
+			}
+		}
+	}
+
+	@Test
+	public void testRegisterWhileWaitingAfterDisabling() throws InterruptedException {
+		poli.setWaitlistPriority(Waitlist.Priority.FIFO);
+		fill(poli);
+		for (int id = 10100; id < 10200; id++) {
+			poli.register(id, COURSE);
+		}
+		poli.setWaitlistPriority(null);
+		// the students at the back of the waitlist try to take the seats
+		// freed by the first 48 attendees before the waitlist gives them away
+		CountDownLatch freeing = new CountDownLatch(4);
+		runConcurrently(8, t -> {
+			if (t < 4) {
+				for (int id = 10000 + t; id < 10048; id += 4) {
+					poli.deregister(id, COURSE);
+				}
+				freeing.countDown();
+				return;
+			}
+			for (int id = 10146 + t; id < 10200 && freeing.getCount() > 0; id += 4) {
+				while (freeing.getCount() > 0 && !poli.isRegistered(id, COURSE)) {
+					poli.register(id, COURSE);
+				}
+			}
+		});
+		for (int id : poli.waitlist(COURSE)) {
+			assertFalse("Student both attending and waiting", poli.isRegistered(id, COURSE));
+		}
+		// the rest of the waitlist is admitted, skipping nobody twice
+		for (int id = 10048; id < 10100; id++) {
+			poli.deregister(id, COURSE);
+		}
+		assertArrayEquals(new int[0], poli.waitlist(COURSE));
+		String[] attendees = poli.listAttendees(COURSE).split("\n");
+		assertEquals("Student registered twice", attendees.length, Stream.of(attendees).distinct().count());
+		assertEquals(100, attendees.length);
+		for (int id = 10100; id < 10200; id++) {
+			assertEquals("Student registered twice", 1, countLines(poli.studyPlan(id)));
+		}
+	}
+
+	@Test
+	public void testPersistence() throws IOException {
+		Path dir = Files.createTempDirectory("university-wal");
+		try {
+			University expected;
+			try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+				expected = wal.getUniversity();
+				populate(expected);
+				expected.setWaitlistPriority(Waitlist.Priority.SENIORITY);
+				fill(expected);
+				expected.register(10170, COURSE);
+				expected.register(10160, COURSE);
+				expected.register(10180, COURSE);
+				expected.deregister(10000, COURSE);
+				expected.deregister(10180, COURSE);
+			}
+			try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+				assertSameWaitlists(expected, wal.getUniversity());
+				wal.compact();
+			}
+			try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+				University restored = wal.getUniversity();
+				assertSameWaitlists(expected, restored);
+				restored.register(10150, COURSE);
+				assertArrayEquals("Order lost by the snapshot",
+									new int[] { 10150, 10170 }, restored.waitlist(COURSE));
+			}
+		} finally {
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+			}
+		}
+	}
+
+	private static void assertSameWaitlists(University expected, University actual) {
+		assertEquals(expected.getWaitlistPriority(), actual.getWaitlistPriority());
+		assertEquals(expected.listAttendees(COURSE), actual.listAttendees(COURSE));
+		assertArrayEquals(expected.waitlist(COURSE), actual.waitlist(COURSE));
+		assertEquals(expected.studyPlan(10000), actual.studyPlan(10000));
+		assertEquals(expected.studyPlan(10160), actual.studyPlan(10160));
+	}
+
+	@Test
+	public void testWaitlistOrder() {
+		Waitlist fifo = new Waitlist(Waitlist.Priority.FIFO);
+		Waitlist seniority = new Waitlist(Waitlist.Priority.SENIORITY);
+		int[] ids = { 10005, 10001, 10009, 10003, 10007 };
+		for (int id : ids) {
+			assertTrue(fifo.add(id));
+			assertTrue(seniority.add(id));
+		}
+		assertFalse("Duplicate accepted", fifo.add(10001));
+		assertTrue(fifo.remove(10009));
+		assertTrue(seniority.remove(10009));
+		assertFalse(fifo.remove(10009));
+		assertArrayEquals(new int[] { 10005, 10001, 10003, 10007 }, fifo.toArray());
+		assertArrayEquals(new int[] { 10001, 10003, 10005, 10007 }, seniority.toArray());
+		assertEquals(10005, fifo.poll());
+		assertEquals(10001, seniority.poll());
+		assertEquals(3, fifo.size());
+		assertFalse(fifo.contains(10005));
+		assertTrue(fifo.add(10005));
+		assertEquals("Returning student goes to the back", 10005, fifo.toArray()[3]);
+	}
+
+	@Test
+	public void testRandomWaitlist() {
+		Waitlist seniority = new Waitlist(Waitlist.Priority.SENIORITY);
+		TreeSet<Integer> expected = new TreeSet<>();
+		Random random = new Random(7);
+		for (int i = 0; i < 20_000; i++) {
+			int id = 10000 + random.nextInt(500);
+			switch (random.nextInt(4)) {
+			case 0:
+				assertEquals(expected.remove(id), seniority.remove(id));
+				break;
+			case 1:
+				Integer head = expected.pollFirst();
+				assertEquals(head == null ? -1 : head, seniority.poll());
+				break;
+			default:
+				assertEquals(expected.add(id), seniority.add(id));
+			}
+			assertEquals(expected.size(), seniority.size());
+			assertEquals(expected.contains(id), seniority.contains(id));
+			assertEquals(expected.contains(id) ? expected.headSet(id).size() : -1, seniority.position(id));
+		}
+		assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), seniority.toArray());
+	}
+
+	@Test
+	public void testBenchmark() {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int waiting = 200_000;
+		University u = new University("PoliTo");
+		for (int i = 0; i < waiting + 100; i++) {
+			u.enroll("Name" + i, "Surname" + i);
+		}
+		int course = u.activate("Object Oriented Programming", "James Gosling");
+		u.setWaitlistPriority(Waitlist.Priority.SENIORITY);
+		long start = System.nanoTime();
+		for (int i = waiting + 99; i >= 0; i--) {
+			u.register(10000 + i, course);
+		}
+		long register = (System.nanoTime() - start) / (waiting + 100);
+
+		int[] attendees = u.registeredToAll(course);
+		start = System.nanoTime();
+		for (int i = 0; i < waiting; i++) {
+			// the first attendees, then the students admitted in turn from the waitlist
+			u.deregister(i < attendees.length ? attendees[i] : 10000 + i - attendees.length, course);
+		}
+		long deregister = (System.nanoTime() - start) / waiting;
+		assertEquals(0, u.waitlist(course).length);
+		System.out.printf("Waitlist of %d students: register %.1f us, deregister and promote %.1f us%n",
+							waiting, register / 1e3, deregister / 1e3);
+	}
+
+	interface Task {
+		void run(int thread) throws Exception;
+	}
+
+	private static void runConcurrently(int threads, Task task) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<>();
+		List<Throwable> failures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			Thread w = new Thread(() -> {
+				try {
+					start.await();
+					task.run(thread);
+				} catch (Throwable e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+			workers.add(w);
+			w.start();
+		}
+		start.countDown();
+		for (Thread w : workers) {
+			w.join();
+		}
+		assertTrue("Failures: " + failures, failures.isEmpty());
+	}
+
+	private static int countLines(String s) {
+		if (s == null || s.isEmpty() || !s.contains("\n")) return 0;
+		return s.split("\n").length;
+	}
+}
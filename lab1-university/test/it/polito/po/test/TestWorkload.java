@@ -0,0 +1,128 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.Workload;
+import university.Workload.Phase;
+import university.WorkloadReport;
+import university.ZipfSampler;
+
+public class TestWorkload {
+
+	private PrintStream err;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		// capacity rejections are expected here, don't flood the console
+		err = System.err;
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	@After
+	public void tearDown() {
+		System.setErr(err);
+	}
+
+	private static Workload small(long seed, int threads) {
+		Workload w = new Workload(seed);
+		w.setStudents(2000);
+		w.setCourses(50);
+		w.setCoursesPerStudent(5);
+		w.setZipfExponent(1.2);
+		w.setReportQueries(500);
+		w.setThreads(threads);
+		w.setMeasureHeap(false);
+		return w;
+	}
+
+	private static String state(University u) {
+		StringBuilder result = new StringBuilder();
+		for (int code = 10; code < 60; code++) {
+			result.append(u.listAttendees(code)).append(u.courseAvg(code));
+		}
+		for (int id = 10000; id < 12000; id += 7) {
+			result.append(u.studyPlan(id)).append(u.studentAvg(id));
+		}
+		return result.append(u.topStudents(10)).toString();
+	}
+
+	@Test
+	public void testReproducible() throws InterruptedException {
+		University first = new University("PoliTo");
+		WorkloadReport report = small(7, 1).run(first);
+		University second = new University("PoliTo");
+		small(7, 1).run(second);
+		assertEquals("Same seed, different state", state(first), state(second));
+
+		University other = new University("PoliTo");
+		small(8, 1).run(other);
+		assertNotEquals("Seed ignored", state(first), state(other));
+
+		assertEquals(Phase.values().length, report.getPhases().size());
+		assertEquals(50, report.get(Phase.ACTIVATION).getOperations());
+		assertEquals(2000, report.get(Phase.ENROLLMENT).getOperations());
+		assertEquals(500, report.get(Phase.REPORTS).getOperations());
+		WorkloadReport.PhaseStats registration = report.get(Phase.REGISTRATION);
+		assertTrue(registration.getOperations() > 0 && registration.getOperations() <= 2000 * 5);
+		assertTrue("Popular courses should fill up", registration.getRejected() > 0);
+		assertTrue(registration.getP50Micros() <= registration.getP99Micros());
+		assertEquals(-1, registration.getHeapBytes());
+	}
+
+	@Test
+	public void testSameOperationsOnMoreThreads() throws InterruptedException {
+		WorkloadReport one = small(7, 1).run(new University("PoliTo"));
+		WorkloadReport four = small(7, 4).run(new University("PoliTo"));
+		for (Phase phase : Phase.values()) {
+			assertEquals("Different operations in " + phase,
+							one.get(phase).getOperations(), four.get(phase).getOperations());
+		}
+	}
+
+	@Test
+	public void testZipf() {
+		ZipfSampler zipf = new ZipfSampler(100, 1.0);
+		double harmonic = 0;
+		for (int r = 1; r <= 100; r++) {
+			harmonic += 1.0 / r;
+		}
+		assertEquals(1 / harmonic, zipf.probability(0), 1e-9);
+		assertEquals(zipf.probability(0) / 10, zipf.probability(9), 1e-9);
+
+		int[] counts = new int[100];
+		SplittableRandom random = new SplittableRandom(1);
+		final int n = 1_000_000;
+		for (int i = 0; i < n; i++) {
+			counts[zipf.sample(random)]++;
+		}
+		for (int r : new int[] { 0, 1, 9, 99 }) {
+			assertEquals("Wrong frequency of rank " + r, zipf.probability(r), (double)counts[r] / n, 0.002);
+		}
+
+		ZipfSampler uniform = new ZipfSampler(4, 0);
+		assertEquals(0.25, uniform.probability(3), 1e-9);
+	}
+
+	@Test
+	public void testBenchmark() throws InterruptedException {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		Workload w = new Workload(42);
+		w.setStudents(Integer.getInteger("students", 200_000));
+		w.setCourses(20_000);
+		System.out.print(w.run(new University("PoliTo")));
+	}
+}
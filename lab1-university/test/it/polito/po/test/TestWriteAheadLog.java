@@ -0,0 +1,261 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.WriteAheadLog;
+import university.WriteAheadLog.Durability;
+
+public class TestWriteAheadLog {
+
+	private Path dir;
+
+	@Before
+	public void setUp() throws IOException {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+		dir = Files.createTempDirectory("university-wal");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+		}
+	}
+
+	private static void activities(University poli) {
+		poli.setRector("Guido", "Saracco");
+		poli.enroll("Mario","Rossi");
+		poli.enroll("Francesca","Verdi");
+		poli.enroll("Filippo","Neri");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.register(10002, 11);
+		poli.register(10002, 99);	// refused, not journaled
+		poli.exam(10000, 10, 25);
+		poli.exam(10001, 10, 26);
+		poli.exam(10001, 11, 28);
+	}
+
+	private static void assertSameState(University expected, University actual) {
+		assertEquals("Wrong name", expected.getName(), actual.getName());
+		assertEquals("Wrong rector", expected.getRector(), actual.getRector());
+		for (int id = 10000; id <= 10003; id++) {
+			assertEquals("Wrong student", expected.student(id), actual.student(id));
+			assertEquals("Wrong study plan", expected.studyPlan(id), actual.studyPlan(id));
+			assertEquals("Wrong student average", expected.studentAvg(id), actual.studentAvg(id));
+		}
+		for (int code = 10; code <= 12; code++) {
+			assertEquals("Wrong course", expected.course(code), actual.course(code));
+			assertEquals("Wrong attendees", expected.listAttendees(code), actual.listAttendees(code));
+			assertEquals("Wrong course average", expected.courseAvg(code), actual.courseAvg(code));
+		}
+		assertEquals("Wrong best students", expected.topThreeStudents(), actual.topThreeStudents());
+	}
+
+	private static University expected() {
+		University poli = new University("PoliTo");
+		activities(poli);
+		return poli;
+	}
+
+	@Test
+	public void testReplaySync() throws IOException {
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			activities(wal.getUniversity());
+			assertTrue("Journal should not be empty", wal.getJournalSize() > 0);
+		}
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "Ignored", Durability.SYNC)) {
+			assertSameState(expected(), wal.getUniversity());
+			assertEquals("Wrong id after replay", 10003, wal.getUniversity().enroll("Laura", "Bianchi"));
+		}
+	}
+
+	@Test
+	public void testReplayAsync() throws IOException {
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.ASYNC)) {
+			activities(wal.getUniversity());
+		}
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.ASYNC)) {
+			assertSameState(expected(), wal.getUniversity());
+		}
+	}
+
+	@Test
+	public void testSyncIsOnDiskWithoutClose() throws IOException {
+		WriteAheadLog crashed = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC);
+		activities(crashed.getUniversity());
+		// the journal is read while the first one is still open, as after a crash
+		Path copy = Files.createTempDirectory("university-wal-copy");
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path f : (Iterable<Path>)files::iterator) {
+				Files.copy(f, copy.resolve(f.getFileName()));
+			}
+		}
+		crashed.close();
+		try (WriteAheadLog wal = WriteAheadLog.open(copy, "PoliTo", Durability.SYNC)) {
+			assertSameState(expected(), wal.getUniversity());
+		} finally {
+			try (Stream<Path> files = Files.walk(copy)) {
+				files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	public void testTornTailIgnored() throws IOException {
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.ASYNC)) {
+			activities(wal.getUniversity());
+		}
+		Path journal = dir.resolve("journal.0");
+		long size = Files.size(journal);
+		Files.write(journal, new byte[] { 0, 0, 0, 20, 1, 2, 3, 4, 1, 7 }, StandardOpenOption.APPEND);
+
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			assertSameState(expected(), wal.getUniversity());
+			assertEquals("Torn record should be truncated", size, wal.getJournalSize());
+			wal.getUniversity().enroll("Laura", "Bianchi");
+		}
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			assertEquals("Record after the torn one lost", "10003 Laura Bianchi", wal.getUniversity().student(10003));
+		}
+	}
+
+	@Test
+	public void testCompaction() throws IOException {
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			activities(wal.getUniversity());
+			wal.compact();
+			assertEquals("Wrong generation", 1, wal.getGeneration());
+			assertEquals("Journal should be empty", 0, wal.getJournalSize());
+			assertFalse("Old journal not removed", Files.exists(dir.resolve("journal.0")));
+			assertFalse("Old snapshot not removed", Files.exists(dir.resolve("snapshot.0")));
+			wal.getUniversity().exam(10002, 11, 30);
+		}
+		University poli = expected();
+		poli.exam(10002, 11, 30);
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			assertSameState(poli, wal.getUniversity());
+		}
+	}
+
+	@Test
+	public void testCrashDuringCompaction() throws IOException {
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			activities(wal.getUniversity());
+		}
+		// new snapshot written, new journal not yet created: journal.0 must not be replayed again
+		expected().snapshot(dir.resolve("snapshot.1"));
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			assertEquals("Wrong generation", 1, wal.getGeneration());
+			assertSameState(expected(), wal.getUniversity());
+		}
+		assertFalse("Old journal not removed", Files.exists(dir.resolve("journal.0")));
+	}
+
+	@Test
+	public void testCrashBeforeSnapshotCompleted() throws IOException {
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			activities(wal.getUniversity());
+		}
+		// new journal created, new snapshot not yet written: both journals must be replayed
+		Files.createFile(dir.resolve("journal.1"));
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			assertEquals("Wrong generation", 1, wal.getGeneration());
+			assertSameState(expected(), wal.getUniversity());
+			wal.getUniversity().exam(10002, 11, 30);
+		}
+		University poli = expected();
+		poli.exam(10002, 11, 30);
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			assertSameState(poli, wal.getUniversity());
+			wal.compact();
+			assertFalse("Old journal not removed", Files.exists(dir.resolve("journal.1")));
+		}
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			assertSameState(poli, wal.getUniversity());
+		}
+	}
+
+	@Test
+	public void testBackgroundCompaction() throws Exception {
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.ASYNC)) {
+			wal.setCompactionThreshold(1000);
+			University poli = wal.getUniversity();
+			for (int i = 0; i < 1000; i++) {
+				poli.enroll("Name" + i, "Surname" + i);
+			}
+			wal.flush();
+			for (int i = 0; i < 1000 && wal.getGeneration() == 0; i++) {
+				Thread.sleep(10);
+			}
+			assertTrue("Journal never compacted", wal.getGeneration() > 0);
+		}
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.ASYNC)) {
+			assertEquals("10999 Name999 Surname999", wal.getUniversity().student(10999));
+			assertNull(wal.getUniversity().student(11000));
+		}
+	}
+
+	@Test
+	public void testDetachedAfterClose() throws IOException {
+		University poli;
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			poli = wal.getUniversity();
+			poli.enroll("Mario", "Rossi");
+		}
+		poli.enroll("Francesca", "Verdi");
+		try (WriteAheadLog wal = WriteAheadLog.open(dir, "PoliTo", Durability.SYNC)) {
+			assertNotNull(wal.getUniversity().student(10000));
+			assertNull("Change after close journaled", wal.getUniversity().student(10001));
+		}
+	}
+
+	@Test
+	public void testBenchmark() throws Exception {
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int threads = 8;
+		final int perThread = 2_000;
+		for (Durability durability : Durability.values()) {
+			try (WriteAheadLog wal = WriteAheadLog.open(dir.resolve(durability.name()), "PoliTo", durability)) {
+				University poli = wal.getUniversity();
+				Thread[] workers = new Thread[threads];
+				long start = System.nanoTime();
+				for (int t = 0; t < threads; t++) {
+					workers[t] = new Thread(() -> {
+						for (int i = 0; i < perThread; i++) {
+							poli.enroll("Name" + i, "Surname");
+						}
+					});
+					workers[t].start();
+				}
+				for (Thread w : workers) {
+					w.join();
+				}
+				wal.flush();
+				long elapsed = System.nanoTime() - start;
+				System.out.printf("%s journal: %d enrollments from %d threads in %d ms (%.0f ops/s)%n",
+									durability, threads * perThread, threads, elapsed / 1_000_000,
+									threads * perThread * 1e9 / elapsed);
+			}
+		}
+	}
+}
@@ -0,0 +1,450 @@
+package hydraulic;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * An hydraulics system compiled into a flat program for the simulation,
+ * see {@link HSystem#compile()}.
+ *
+ * Each element reached from a source becomes an instruction; the instructions
+ * are stored in the depth first order the recursive simulation visits them,
+ * which is a topological order. The program is made of columns indexed by
+ * instruction: the kind of element, the source flow, the tap status and the
+ * maximum flow. The outputs are stored CSR-style: the outputs of instruction
+ * {@code i} are the slots from {@code outStart[i]} to {@code outStart[i + 1]},
+ * each with its proportion and its successor instruction.
+ * The simulation is then a single pass over the arrays, without recursion,
+ * so that deep chains cannot overflow the stack.
+ *
+ * An element reached through several paths (or a source reached from another
+ * source) gets an instruction for each path, as the recursive simulation
+ * notifies it once per path.
+ *
+ * The program is a snapshot: changes to the topology or to the parameters
+ * of the elements made after the compilation are not seen by the program.
+ */
+public class CompiledSystem {
+
+	static final byte SOURCE = 0;
+	static final byte TAP = 1;
+	static final byte SPLIT = 2;
+	static final byte MULTISPLIT = 3;
+	static final byte SINK = 4;
+
+	private static final String[] TYPES = {"Source", "Tap", "Split", "Multisplit", "Sink"};
+
+	final int size;
+	final Element[] element;
+	final byte[] kind;
+	final double[] sourceFlow;
+	final boolean[] open;
+	final double[] maxFlow;
+	/** slot whose flow enters each instruction, -1 for the roots */
+	final int[] inputSlot;
+	final int[] outStart;
+	final int[] successor;
+	final double[] proportion;
+
+	CompiledSystem(HSystem system) {
+		Builder b = new Builder();
+		for (int i = 0; i < system.end; i++) {
+			if (system.elements[i] instanceof Source) {
+				b.visit(system.elements[i]);
+			}
+		}
+		size = b.size;
+		element = Arrays.copyOf(b.element, size);
+		kind = Arrays.copyOf(b.kind, size);
+		sourceFlow = Arrays.copyOf(b.sourceFlow, size);
+		open = Arrays.copyOf(b.open, size);
+		maxFlow = Arrays.copyOf(b.maxFlow, size);
+		inputSlot = Arrays.copyOf(b.inputSlot, size);
+		outStart = Arrays.copyOf(b.outStart, size + 1);
+		outStart[size] = b.slots;
+		successor = Arrays.copyOf(b.successor, b.slots);
+		proportion = Arrays.copyOf(b.proportion, b.slots);
+	}
+
+	/**
+	 * @return the number of instructions of the program
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of output slots of the program
+	 */
+	public int slots() {
+		return outStart[size];
+	}
+
+	/**
+	 * Computes the flows of all the instructions
+	 *
+	 * @param in input flow of each instruction
+	 * @param out flow of each output slot
+	 */
+	void propagate(double[] in, double[] out) {
+		for (int i = 0; i < size; i++) {
+			step(i, in, out);
+		}
+	}
+
+	/**
+	 * Computes the flows of an instruction from the flow entering it
+	 *
+	 * @param i the instruction
+	 * @param in input flow of each instruction
+	 * @param out flow of each output slot
+	 */
+	void step(int i, double[] in, double[] out) {
+		int o = outStart[i];
+		double f;
+		switch (kind[i]) {
+		case SOURCE:
+			f = SimulationObserver.NO_FLOW;
+			out[o] = sourceFlow[i];
+			break;
+		case TAP:
+			f = out[inputSlot[i]];
+			out[o] = open[i] ? f : 0.0;
+			break;
+		case SPLIT:
+			f = out[inputSlot[i]];
+			out[o] = f / 2.0;
+			out[o + 1] = f / 2.0;
+			break;
+		case MULTISPLIT:
+			f = out[inputSlot[i]];
+			for (int k = o; k < outStart[i + 1]; k++) {
+				out[k] = f * proportion[k];
+			}
+			break;
+		default:
+			f = out[inputSlot[i]];
+		}
+		in[i] = f;
+	}
+
+	/**
+	 * Reads again the parameters of the element of an instruction
+	 *
+	 * @param i the instruction
+	 */
+	void refresh(int i) {
+		Element e = element[i];
+		switch (kind[i]) {
+		case SOURCE:
+			sourceFlow[i] = e.getFlow();
+			break;
+		case TAP:
+			open[i] = ((Tap) e).isOpen();
+			break;
+		case MULTISPLIT:
+			copyProportions((Multisplit) e, proportion, outStart[i], outStart[i + 1] - outStart[i]);
+			break;
+		default:
+		}
+	}
+
+	private static void copyProportions(Multisplit ms, double[] proportion, int from, int outputs) {
+		double[] props = ms.getProportions();
+		if (props == null || props.length < outputs) {
+			throw new IllegalStateException("Missing proportions for " + ms.getName());
+		}
+		System.arraycopy(props, 0, proportion, from, outputs);
+	}
+
+	/**
+	 * starts the simulation of the compiled system
+	 *
+	 * The observer receives the same notifications, in the same order,
+	 * as {@link HSystem#simulate(SimulationObserver)}
+	 *
+	 * @param observer the observer receiving notifications
+	 */
+	public void simulate(SimulationObserver observer) {
+		simulate(observer, false);
+	}
+
+	/**
+	 * starts the simulation of the compiled system; if {@code enableMaxFlowCheck} is {@code true},
+	 * checks also the elements maximum flows against the input flow
+	 *
+	 * The observer receives the same notifications, in the same order,
+	 * as {@link HSystem#simulate(SimulationObserver, boolean)}
+	 *
+	 * @param observer the observer receiving notifications
+	 * @param enableMaxFlowCheck whether to check the maximum flows
+	 */
+	public void simulate(SimulationObserver observer, boolean enableMaxFlowCheck) {
+		double[] in = new double[size];
+		double[] out = new double[slots()];
+		propagate(in, out);
+		for (int i = 0; i < size; i++) {
+			notify(observer, i, in[i], out, enableMaxFlowCheck);
+		}
+	}
+
+	/**
+	 * simulates many scenarios at once, see {@link Scenarios}
+	 *
+	 * The flows are computed one element at a time for all the scenarios,
+	 * in tight loops over contiguous arrays that the JIT can vectorize.
+	 * Arrays holding the same flows, e.g. the input of an element and the
+	 * output feeding it, are shared rather than copied.
+	 *
+	 * @param scenarios flows of the sources and status of the taps in each scenario
+	 * @return the flows of every element in every scenario
+	 * @throws IllegalArgumentException if a scenario names a source or a tap
+	 * 			that is not part of the program
+	 */
+	public ScenarioResults simulate(Scenarios scenarios) {
+		Set<String> sources = new HashSet<>();
+		Set<String> taps = new HashSet<>();
+		for (int i = 0; i < size; i++) {
+			if (kind[i] == SOURCE) sources.add(element[i].getName());
+			else if (kind[i] == TAP) taps.add(element[i].getName());
+		}
+		for (String name : scenarios.sources()) {
+			if (!sources.contains(name)) throw new IllegalArgumentException("No source named " + name);
+		}
+		for (String name : scenarios.taps()) {
+			if (!taps.contains(name)) throw new IllegalArgumentException("No tap named " + name);
+		}
+
+		final int n = scenarios.size();
+		double[] noFlows = new double[n];
+		Arrays.fill(noFlows, SimulationObserver.NO_FLOW);
+		double[] zeros = new double[n];
+		double[][] in = new double[size][];
+		double[][] out = new double[slots()][];
+		for (int i = 0; i < size; i++) {
+			int o = outStart[i];
+			double[] f = kind[i] == SOURCE ? noFlows : out[inputSlot[i]];
+			in[i] = f;
+			switch (kind[i]) {
+			case SOURCE:
+				double[] flows = scenarios.flows(element[i].getName());
+				if (flows != null) {
+					out[o] = flows.clone();
+					BitSet set = scenarios.flowsSet(element[i].getName());
+					for (int j = set == null ? n : set.nextClearBit(0); j < n; j = set.nextClearBit(j + 1)) {
+						out[o][j] = sourceFlow[i];
+					}
+				} else {
+					out[o] = new double[n];
+					Arrays.fill(out[o], sourceFlow[i]);
+				}
+				break;
+			case TAP:
+				boolean[] states = scenarios.open(element[i].getName());
+				if (states == null) {
+					out[o] = open[i] ? f : zeros;
+				} else {
+					BitSet set = scenarios.openSet(element[i].getName());
+					double[] r = new double[n];
+					for (int j = 0; j < n; j++) {
+						boolean isOpen = set == null || set.get(j) ? states[j] : open[i];
+						r[j] = isOpen ? f[j] : 0.0;
+					}
+					out[o] = r;
+				}
+				break;
+			case SPLIT:
+				double[] half = new double[n];
+				for (int j = 0; j < n; j++) {
+					half[j] = f[j] / 2.0;
+				}
+				out[o] = half;
+				out[o + 1] = half;
+				break;
+			case MULTISPLIT:
+				for (int k = o; k < outStart[i + 1]; k++) {
+					double p = proportion[k];
+					double[] r = new double[n];
+					for (int j = 0; j < n; j++) {
+						r[j] = f[j] * p;
+					}
+					out[k] = r;
+				}
+				break;
+			default:
+			}
+		}
+		return new ScenarioResults(this, n, in, out, noFlows);
+	}
+
+	/**
+	 * Sends the notifications of an instruction
+	 */
+	void notify(SimulationObserver observer, int i, double in, double[] out, boolean enableMaxFlowCheck) {
+		String name = element[i].getName();
+		if (enableMaxFlowCheck && kind[i] != SOURCE && in > maxFlow[i]) {
+			String type = kind[i] == TAP || kind[i] == SINK ? element[i].getClass().getSimpleName() : TYPES[kind[i]];
+			observer.notifyFlowError(type, name, in, maxFlow[i]);
+		}
+		switch (kind[i]) {
+		case SOURCE:
+		case TAP:
+			observer.notifyFlow(TYPES[kind[i]], name, in, out[outStart[i]]);
+			break;
+		case SINK:
+			observer.notifyFlow(TYPES[kind[i]], name, in, SimulationObserver.NO_FLOW);
+			break;
+		default:
+			observer.notifyFlow(TYPES[kind[i]], name, in, Arrays.copyOfRange(out, outStart[i], outStart[i + 1]));
+		}
+	}
+
+	/**
+	 * Lays out the instructions while visiting the elements
+	 */
+	private static class Builder {
+		int size;
+		int slots;
+		Element[] element = new Element[16];
+		byte[] kind = new byte[16];
+		double[] sourceFlow = new double[16];
+		boolean[] open = new boolean[16];
+		double[] maxFlow = new double[16];
+		int[] inputSlot = new int[16];
+		int[] outStart = new int[17];
+		int[] successor = new int[16];
+		double[] proportion = new double[16];
+
+		/** elements still to visit, with their parent instruction and input slot */
+		private Element[] pending = new Element[16];
+		private int[] pendingParent = new int[16];
+		private int[] pendingSlot = new int[16];
+		private int pendingCount;
+		/** instructions from the root to the last visited one */
+		private int[] path = new int[16];
+		private int depth;
+		private final Set<Element> onPath = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		/**
+		 * Visits the elements reached from a source, depth first
+		 */
+		void visit(Element source) {
+			push(source, -1, -1);
+			while (pendingCount > 0) {
+				Element e = pending[--pendingCount];
+				pending[pendingCount] = null;
+				int parent = pendingParent[pendingCount];
+				int input = pendingSlot[pendingCount];
+				while (depth > 0 && path[depth - 1] != parent) {
+					onPath.remove(element[path[--depth]]);
+				}
+				byte k = kindOf(e);
+				if (k < 0) {
+					continue;	// not simulated
+				}
+				if (!onPath.add(e)) {
+					throw new IllegalStateException("The system contains a loop through " + e.getName());
+				}
+				int i = add(e, k, input);
+				if (input >= 0) {
+					successor[input] = i;
+				}
+				if (depth == path.length) {
+					path = Arrays.copyOf(path, depth * 2);
+				}
+				path[depth++] = i;
+				// pushed in reverse order, so that the first output is visited first
+				switch (k) {
+				case SOURCE:
+				case TAP:
+					push(e.getOutput(), i, outStart[i]);
+					break;
+				case SPLIT:
+				case MULTISPLIT:
+					Element[] outs = e.getOutputs();
+					for (int o = slots - outStart[i] - 1; o >= 0; o--) {
+						push(outs[o], i, outStart[i] + o);
+					}
+					break;
+				default:
+				}
+			}
+			while (depth > 0) {
+				onPath.remove(element[path[--depth]]);
+			}
+		}
+
+		private void push(Element e, int parent, int slot) {
+			if (e == null) {
+				return;
+			}
+			if (pendingCount == pending.length) {
+				pending = Arrays.copyOf(pending, pendingCount * 2);
+				pendingParent = Arrays.copyOf(pendingParent, pendingCount * 2);
+				pendingSlot = Arrays.copyOf(pendingSlot, pendingCount * 2);
+			}
+			pending[pendingCount] = e;
+			pendingParent[pendingCount] = parent;
+			pendingSlot[pendingCount++] = slot;
+		}
+
+		private static byte kindOf(Element e) {
+			if (e instanceof Source) return SOURCE;
+			if (e instanceof Tap) return TAP;
+			if (e instanceof Multisplit) return MULTISPLIT;
+			if (e instanceof Split) return SPLIT;
+			if (e instanceof Sink) return SINK;
+			return -1;
+		}
+
+		private int add(Element e, byte k, int input) {
+			if (size == element.length) {
+				int n = size * 2;
+				element = Arrays.copyOf(element, n);
+				kind = Arrays.copyOf(kind, n);
+				sourceFlow = Arrays.copyOf(sourceFlow, n);
+				open = Arrays.copyOf(open, n);
+				maxFlow = Arrays.copyOf(maxFlow, n);
+				inputSlot = Arrays.copyOf(inputSlot, n);
+				outStart = Arrays.copyOf(outStart, n + 1);
+			}
+			int outputs;
+			switch (k) {
+			case SOURCE:
+			case TAP:
+				outputs = 1;
+				break;
+			case SPLIT:
+				outputs = 2;
+				break;
+			case MULTISPLIT:
+				outputs = e.getOutputs().length;
+				break;
+			default:
+				outputs = 0;
+			}
+			while (slots + outputs > successor.length) {
+				successor = Arrays.copyOf(successor, successor.length * 2);
+				proportion = Arrays.copyOf(proportion, proportion.length * 2);
+			}
+			int i = size++;
+			element[i] = e;
+			kind[i] = k;
+			sourceFlow[i] = e.getFlow();
+			open[i] = k == TAP && ((Tap) e).isOpen();
+			maxFlow[i] = e.getMaxFlow();
+			inputSlot[i] = input;
+			outStart[i] = slots;
+			Arrays.fill(successor, slots, slots + outputs, -1);
+			if (k == MULTISPLIT) {
+				copyProportions((Multisplit) e, proportion, slots, outputs);
+			}
+			slots += outputs;
+			return i;
+		}
+	}
+}
@@ -1,5 +1,9 @@
 package hydraulic;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
 
 /**
  * Represents the generic abstract element of an hydraulics system.
@@ -21,8 +25,14 @@ public abstract class Element {
 	protected String name;
 	protected Element nextElm;
 	protected Element previousElm;
+	protected int previousIndex;
 	protected double Flow = 0.0;
 	protected double maxFlow ;
+	/**
+	 * incremental simulations following the changes of this element,
+	 * held weakly so that a simulation not closed can be collected
+	 */
+	private List<WeakReference<IncrementalSimulation>> watchers;
 	
 
 	public Element(String name) {
@@ -42,6 +52,7 @@ public abstract class Element {
 	 * @param elem the element that will be placed downstream
 	 */
 	public void connect(Element elem) {
+		linkOutput(nextElm, elem, 0);
 		this.nextElm = elem;
 	}
 	
@@ -77,6 +88,41 @@ public abstract class Element {
 	public double getFlow() {
 		return Flow;
 	}
+
+	/**
+	 * Retrieves the element connected upstream of this element
+	 * 
+	 * @return upstream element, {@code null} if not connected
+	 */
+	public Element getInput() {
+		return previousElm;
+	}
+
+	/**
+	 * @return index of the output of the upstream element
+	 * 			this element is connected to
+	 */
+	int getInputIndex() {
+		return previousIndex;
+	}
+
+	/**
+	 * Keeps the upstream links in sync when an output is reconnected:
+	 * must be called by {@code connect()} before replacing the output
+	 * 
+	 * @param old the element currently connected to the output, if any
+	 * @param elem the element being connected, if any
+	 * @param index the output index
+	 */
+	protected void linkOutput(Element old, Element elem, int index) {
+		if (old != null && old != elem && old.previousElm == this && old.previousIndex == index) {
+			old.previousElm = null;
+		}
+		if (elem != null) {
+			elem.previousElm = this;
+			elem.previousIndex = index;
+		}
+	}
 	
 	
 	/**
@@ -91,6 +137,36 @@ public abstract class Element {
 		return maxFlow;
 	   }
 
+	void watch(IncrementalSimulation simulation) {
+		if (watchers == null) {
+			watchers = new ArrayList<>(1);
+		}
+		watchers.add(new WeakReference<>(simulation));
+	}
+
+	void unwatch(IncrementalSimulation simulation) {
+		if (watchers != null) {
+			watchers.removeIf(w -> w.get() == null || w.get() == simulation);
+		}
+	}
+
+	/**
+	 * Must be called when a parameter used by the simulation changes,
+	 * so that incremental simulations can update the flows
+	 */
+	protected void changed() {
+		if (watchers != null) {
+			watchers.removeIf(w -> {
+				IncrementalSimulation simulation = w.get();
+				if (simulation == null) {
+					return true;
+				}
+				simulation.changed(this);
+				return false;
+			});
+		}
+	}
+
 	protected static String pad(String current, String down){
 		int n = current.length();
 		final String fmt = "\n%"+n+"s";
@@ -1,5 +1,9 @@
 package hydraulic;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Main class that acts as a container of the elements for
  * the simulation of an hydraulics system 
@@ -8,19 +12,56 @@ package hydraulic;
 public class HSystem {
 
 // R1
+	/**
+	 * Elements in insertion order; deleted elements leave a {@code null} slot
+	 * until the array is compacted, so that deletion does not shift the array.
+	 */
+	Element [] elements = new Element[16];
+	/** number of slots in use, including the deleted ones */
+	int end = 0;
+	int elementCount = 0;
+	/** slot of the first element with each name */
+	private final Map<String, Integer> slots = new HashMap<>();
+	/** slot of the next element with the same name, -1 if none */
+	private int[] sameName = new int[16];
+
 	/**
 	 * Adds a new element to the system
 	 * 
+	 * Element names are expected to be unique: a lookup by name
+	 * finds the first element added with that name and still present.
+	 * 
 	 * @param elem the new element to be added to the system
 	 */
-	Element [] elements = new Element[100];
-	int elementCount = 0;
-
 	public void addElement(Element elem){
-		elements[elementCount] = elem;
+		if (end == elements.length) {
+			if (elementCount < end / 2) {
+				compact();
+			} else {
+				elements = Arrays.copyOf(elements, end * 2);
+				sameName = Arrays.copyOf(sameName, end * 2);
+			}
+		}
+		index(elem.getName(), end);
+		elements[end++] = elem;
 		elementCount++;
 	}
 
+	/**
+	 * Adds a slot at the end of the chain of the elements with a name
+	 */
+	private void index(String name, int slot) {
+		sameName[slot] = -1;
+		Integer first = slots.putIfAbsent(name, slot);
+		if (first != null) {
+			int last = first;
+			while (sameName[last] >= 0) {
+				last = sameName[last];
+			}
+			sameName[last] = slot;
+		}
+	}
+
 	/**
 	 * returns the number of element currently present in the system
 	 * 
@@ -39,11 +80,64 @@ public class HSystem {
 	public Element[] getElements(){
 		
 		Element[] elementsCopy = new Element[elementCount];
-		for (int i = 0; i < elementCount; i++) {
-			elementsCopy[i] = elements[i];
+		int n = 0;
+		for (int i = 0; i < end; i++) {
+			if (elements[i] != null) {
+				elementsCopy[n++] = elements[i];
+			}
 		}
 		return elementsCopy;
     }
+
+	/**
+	 * retrieves an element of the system by name
+	 * 
+	 * @param name the name of the element
+	 * @return the element, {@code null} if not present
+	 */
+	public Element getElement(String name) {
+		Integer slot = slots.get(name);
+		return slot == null ? null : elements[slot];
+	}
+
+	/**
+	 * Removes the slots left by deleted elements, keeping the insertion order
+	 */
+	private void compact() {
+		int n = 0;
+		boolean duplicates = false;
+		for (int i = 0; i < end; i++) {
+			Element e = elements[i];
+			if (e != null) {
+				if (n != i) {
+					elements[n] = e;
+					// an element alone with its name only changes slot
+					if (!duplicates && sameName[i] < 0 && slots.replace(e.getName(), i, n)) {
+						sameName[n] = -1;
+					} else {
+						duplicates = true;
+					}
+				}
+				n++;
+			}
+		}
+		Arrays.fill(elements, n, end, null);
+		end = n;
+		if (duplicates) {
+			slots.clear();
+			Map<String, Integer> last = new HashMap<>();
+			for (int i = 0; i < end; i++) {
+				String name = elements[i].getName();
+				sameName[i] = -1;
+				Integer previous = last.put(name, i);
+				if (previous == null) {
+					slots.put(name, i);
+				} else {
+					sameName[previous] = i;
+				}
+			}
+		}
+	}
 	
 
 // R4
@@ -59,7 +153,8 @@ public class HSystem {
 	 * @param observer the observer receiving notifications
 	 */
 	public void simulate(SimulationObserver observer){
-		for (Element e : elements) {
+		for (int i = 0; i < end; i++) {
+			Element e = elements[i];
 			if (e instanceof Source) {
 			    simulateElement(e, ((Source)e).getFlow(), observer);
 			}
@@ -119,97 +214,86 @@ public class HSystem {
 	   
 
 
+	/**
+	 * compiles the system into a flat program that can be simulated
+	 * repeatedly, without recursion, see {@link CompiledSystem}
+	 * 
+	 * The program reflects the topology and the parameters
+	 * of the elements at the time of the compilation.
+	 * 
+	 * @return the compiled system
+	 * @throws IllegalStateException if the system contains a loop or
+	 * 			a multisplit lacks its proportions
+	 */
+	public CompiledSystem compile() {
+		return new CompiledSystem(this);
+	}
+
+
 // R6
 	/**
 	 * Deletes a previously added element 
 	 * with the given name from the system
+	 * 
+	 * The element upstream is reconnected to the one downstream;
+	 * a split can be deleted only if at most one of its outputs is connected.
+	 * 
+	 * @param name the name of the element
+	 * @return {@code true} if the element was deleted
 	 */
 	public boolean deleteElement(String name) {
-		// Step 1: Find the element to delete and its index
-		Element toDelete = null;
-		int index = -1;
-	   
-		for (int i = 0; i < elementCount; i++) {
-		    if (elements[i].getName().equals(name)) {
-			 toDelete = elements[i];
-			 index = i;
-			 break;
-		    }
-		}
-	   
-		if (toDelete == null) return false; // Not found
+		// Step 1: Find the element to delete and its slot
+		Integer slot = slots.get(name);
+		if (slot == null) return false; // Not found
+		Element toDelete = elements[slot];
 	   
 		// Step 2: If it's a Split or Multisplit, check connected outputs
-		if (toDelete instanceof Split || toDelete instanceof Multisplit) {
-		    Element[] outs = toDelete.getOutputs();
-		    int connectedCount = 0;
-		    if (outs != null) {
-			 for (Element e : outs) {
-			     if (e != null) connectedCount++;
-			 }
-		    }
-		    if (connectedCount > 1) return false;
-		}
-	   
-		// Step 3: Find upstream element and output index
-		Element upstream = null;
-		int outputIndex = -1;
-	   
-		for (Element e : elements) {
-		    if (e == null || e == toDelete) continue;
-	   
-		    Element[] outs = e.getOutputs();
-		    if (outs != null) { // for Split and Multisplit
-			 for (int i = 0; i < outs.length; i++) {
-			     if (outs[i] == toDelete) {
-				  upstream = e;
-				  outputIndex = i;
-				  break;
-			     }
-			 }
-		    } else if (e.getOutput() == toDelete) { // for single output elements
-			 upstream = e;
-			 outputIndex = 0;
-		    }
-	   
-		    if (upstream != null) break;
-		}
-	   
-		// Step 4: Find the downstream element connected to `toDelete`
-		Element downstream = null;
 		Element[] toDeleteOuts = toDelete.getOutputs();
+		Element downstream = null;
 		if (toDeleteOuts != null) {
 		    for (Element out : toDeleteOuts) {
 			 if (out != null) {
+			     if (downstream != null) return false;
 			     downstream = out;
-			     break;
 			 }
 		    }
 		} else {
 		    downstream = toDelete.getOutput();
 		}
 	   
-		// Step 5: Reconnect upstream to downstream
+		// Step 3: Disconnect downstreams from the toDelete element (cleanup)
+		if (toDeleteOuts != null) {
+		    for (int i = 0; i < toDeleteOuts.length; i++) {
+			 toDelete.connect(null, i);
+		    }
+		} else {
+		    toDelete.connect(null);
+		}
+	   
+		// Step 4: Reconnect upstream to downstream
+		Element upstream = toDelete.getInput();
+		int outputIndex = toDelete.getInputIndex();
 		if (upstream != null) { // anything except deleting the source
-			if (upstream instanceof Split || upstream instanceof Multisplit) {
+			if (upstream instanceof Split) {
 			    upstream.connect(downstream, outputIndex);
 			} else {
 			    upstream.connect(downstream);
 			}
 		}
 	   
-		// Step 6: Disconnect downstreams from the toDelete element (cleanup)
-		if (toDeleteOuts != null) {
-		    for (int i = 0; i < toDeleteOuts.length; i++) {
-			 toDeleteOuts[i] = null;
-		    }
+		// Step 5: Free the slot, compacting once half of the slots are free
+		elements[slot] = null;
+		if (sameName[slot] < 0) {
+			slots.remove(name);
+		} else {
+			slots.put(name, sameName[slot]);
 		}
-	   
-		// Step 7: Remove element from array and shift left
-		for (int i = index; i < elementCount - 1; i++) {
-		    elements[i] = elements[i + 1];
+		elementCount--;
+		if (slot == end - 1) {
+			while (end > 0 && elements[end - 1] == null) end--;
+		} else if (elementCount < end / 2) {
+			compact();
 		}
-		elements[--elementCount] = null;
 	   
 		return true;
 	}
@@ -227,7 +311,8 @@ public class HSystem {
 	 * system must be defined.
 	 */
 	public void simulate(SimulationObserver observer, boolean enableMaxFlowCheck) {
-		for (Element e : elements) {
+		for (int i = 0; i < end; i++) {
+			Element e = elements[i];
 			if (e instanceof Source) {
 			    Source s = (Source) e;
 			    simulateElement(s, s.getFlow(), observer, enableMaxFlowCheck);
@@ -300,6 +385,21 @@ public class HSystem {
 	   }
 
 
+	/**
+	 * starts a simulation that can be updated incrementally, see {@link IncrementalSimulation}
+	 * 
+	 * The observer first receives the notifications of a full simulation,
+	 * then, at each update, those of the elements whose flows changed.
+	 * 
+	 * @param observer the observer receiving notifications
+	 * @param enableMaxFlowCheck whether to check the maximum flows
+	 * @return the simulation, to be closed when no longer needed
+	 */
+	public IncrementalSimulation simulateIncrementally(SimulationObserver observer, boolean enableMaxFlowCheck) {
+		return new IncrementalSimulation(this, observer, enableMaxFlowCheck);
+	}
+
+
 // R8
 	/**
 	 * creates a new builder that can be used to create a 
@@ -0,0 +1,136 @@
+package hydraulic;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A simulation that keeps the flows it computed and, when the flow of a
+ * source, the status of a tap or the proportions of a multisplit change,
+ * computes again only the flows downstream of the changed elements,
+ * see {@link HSystem#simulateIncrementally(SimulationObserver, boolean)}.
+ *
+ * The changes are collected as they are made through the setters of the
+ * elements; {@link #update()} then sends to the observer a notification
+ * for each element whose input or output flows actually changed.
+ * Changes to the topology of the system, or to the array given to
+ * {@link Multisplit#setProportions(double...)}, are not seen:
+ * a new simulation is needed.
+ *
+ * The elements refer to the simulation weakly, so a simulation that is
+ * no longer used is collected, but it keeps recording changes until
+ * then: it should be closed, e.g. with a try-with-resources statement.
+ */
+public class IncrementalSimulation implements AutoCloseable {
+
+	private final CompiledSystem program;
+	private final SimulationObserver observer;
+	private final boolean enableMaxFlowCheck;
+	private final double[] in;
+	private final double[] out;
+	/** instructions of each element whose parameters are followed */
+	private final Map<Element, int[]> instructions = new IdentityHashMap<>();
+	/** instructions to compute again */
+	private final BitSet dirty = new BitSet();
+	private double[] previous = new double[2];
+
+	IncrementalSimulation(HSystem system, SimulationObserver observer, boolean enableMaxFlowCheck) {
+		this.program = new CompiledSystem(system);
+		this.observer = observer;
+		this.enableMaxFlowCheck = enableMaxFlowCheck;
+		in = new double[program.size];
+		out = new double[program.slots()];
+		program.propagate(in, out);
+		for (int i = 0; i < program.size; i++) {
+			program.notify(observer, i, in[i], out, enableMaxFlowCheck);
+			if (program.kind[i] != CompiledSystem.SPLIT && program.kind[i] != CompiledSystem.SINK) {
+				int[] is = instructions.get(program.element[i]);
+				if (is == null) {
+					instructions.put(program.element[i], new int[] {i});
+					program.element[i].watch(this);
+				} else {
+					is = Arrays.copyOf(is, is.length + 1);
+					is[is.length - 1] = i;
+					instructions.put(program.element[i], is);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records a change of an element
+	 */
+	void changed(Element e) {
+		for (int i : instructions.get(e)) {
+			dirty.set(i);
+		}
+	}
+
+	/**
+	 * @return whether there are changes not yet simulated
+	 */
+	public boolean isChanged() {
+		return !dirty.isEmpty();
+	}
+
+	/**
+	 * Computes again the flows affected by the changes made since the
+	 * last update and notifies the elements whose flows changed
+	 *
+	 * The notifications are sent in the order of the full simulation.
+	 * If a changed multisplit has fewer proportions than outputs, an
+	 * {@link IllegalStateException} is thrown and the change is kept,
+	 * so that the update can be retried once the proportions are fixed.
+	 *
+	 * @return number of elements notified
+	 */
+	public int update() {
+		int notified = 0;
+		// successors come after their element, so they are reached by the same scan
+		for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+			program.refresh(i);
+			dirty.clear(i);
+			int from = program.outStart[i];
+			int outputs = program.outStart[i + 1] - from;
+			if (previous.length < outputs) {
+				previous = new double[outputs];
+			}
+			System.arraycopy(out, from, previous, 0, outputs);
+			double before = in[i];
+
+			program.step(i, in, out);
+
+			boolean changed = !same(before, in[i]);
+			for (int k = 0; k < outputs; k++) {
+				if (!same(previous[k], out[from + k])) {
+					changed = true;
+					if (program.successor[from + k] >= 0) {
+						dirty.set(program.successor[from + k]);
+					}
+				}
+			}
+			if (changed) {
+				program.notify(observer, i, in[i], out, enableMaxFlowCheck);
+				notified++;
+			}
+		}
+		return notified;
+	}
+
+	private static boolean same(double a, double b) {
+		return a == b || (a != a && b != b);
+	}
+
+	/**
+	 * Stops following the changes of the elements
+	 */
+	@Override
+	public void close() {
+		for (Element e : instructions.keySet()) {
+			e.unwatch(this);
+		}
+		instructions.clear();
+		dirty.clear();
+	}
+}
@@ -33,12 +33,14 @@ public class Multisplit extends Split {
 	 */
 	public void setProportions(double... proportions) {
 		this.proportions = proportions;
+		changed();
 	}
 	public double[] getProportions() {
 		return proportions;
 	}
 	@Override
 	public void connect(Element elem, int index) {
+		linkOutput(outputs[index], elem, index);
 		outputs[index] = elem;
 	}
 	@Override
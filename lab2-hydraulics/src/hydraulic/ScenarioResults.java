@@ -0,0 +1,86 @@
+package hydraulic;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flows computed by a batch simulation, see {@link CompiledSystem#simulate(Scenarios)}.
+ *
+ * The results are stored by column: for each element there is an array
+ * with its input flow in each scenario, and for each output of the element
+ * an array with the output flow in each scenario.
+ * As in the notifications, a source has no input flow and a sink has no
+ * output: their flows are {@link SimulationObserver#NO_FLOW}.
+ *
+ * The arrays belong to the result set and must not be modified.
+ * An element reached through several paths is found by name
+ * on the first path the simulation visits.
+ */
+public class ScenarioResults {
+
+	private final CompiledSystem program;
+	private final int scenarios;
+	private final double[][] inFlows;
+	private final double[][] outFlows;
+	/** flows of every scenario when there is no flow */
+	private final double[] noFlows;
+	private final Map<String, Integer> instructions = new HashMap<>();
+
+	ScenarioResults(CompiledSystem program, int scenarios, double[][] inFlows, double[][] outFlows, double[] noFlows) {
+		this.program = program;
+		this.scenarios = scenarios;
+		this.inFlows = inFlows;
+		this.outFlows = outFlows;
+		this.noFlows = noFlows;
+		for (int i = 0; i < program.size; i++) {
+			instructions.putIfAbsent(program.element[i].getName(), i);
+		}
+	}
+
+	/**
+	 * @return number of scenarios
+	 */
+	public int size() {
+		return scenarios;
+	}
+
+	private int instruction(String name) {
+		Integer i = instructions.get(name);
+		if (i == null) throw new IllegalArgumentException("No simulated element named " + name);
+		return i;
+	}
+
+	/**
+	 * @param name name of an element
+	 * @return the input flow of the element in each scenario
+	 */
+	public double[] getInFlows(String name) {
+		return inFlows[instruction(name)];
+	}
+
+	/**
+	 * @param name name of an element
+	 * @return the output flow of the element in each scenario,
+	 * 			for the first output of a split
+	 */
+	public double[] getOutFlows(String name) {
+		return getOutFlows(name, 0);
+	}
+
+	/**
+	 * @param name name of an element
+	 * @param output index of the output
+	 * @return the flow of the output of the element in each scenario
+	 */
+	public double[] getOutFlows(String name, int output) {
+		int i = instruction(name);
+		int outputs = program.outStart[i + 1] - program.outStart[i];
+		if (outputs == 0 && output == 0) {
+			return noFlows;
+		}
+		if (output < 0 || output >= outputs) {
+			throw new IndexOutOfBoundsException("Element " + name + " has " + outputs + " outputs");
+		}
+		return outFlows[program.outStart[i] + output];
+	}
+}
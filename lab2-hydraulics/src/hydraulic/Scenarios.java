@@ -0,0 +1,135 @@
+package hydraulic;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A matrix of what-if scenarios to be simulated in a single pass,
+ * see {@link CompiledSystem#simulate(Scenarios)}.
+ *
+ * Each scenario defines the flows of the sources and the status of the taps:
+ * a column of values, one per scenario, can be given for any source and tap
+ * by name. Sources and taps without a column keep, in every scenario,
+ * the flow or status they had when the system was compiled; so do those
+ * given a value only for some scenarios, in the other scenarios.
+ */
+public class Scenarios {
+
+	private final int count;
+	private final Map<String, double[]> flows = new HashMap<>();
+	private final Map<String, boolean[]> open = new HashMap<>();
+	/** scenarios with a value, for the columns given one value at a time */
+	private final Map<String, BitSet> flowsSet = new HashMap<>();
+	private final Map<String, BitSet> openSet = new HashMap<>();
+
+	/**
+	 * @param count number of scenarios
+	 */
+	public Scenarios(int count) {
+		if (count < 1) throw new IllegalArgumentException("there must be at least one scenario");
+		this.count = count;
+	}
+
+	/**
+	 * @return number of scenarios
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Defines the flow of a source in each scenario
+	 *
+	 * @param source name of the source
+	 * @param flows flow of the source in each scenario
+	 */
+	public void setFlows(String source, double... flows) {
+		if (flows.length != count) {
+			throw new IllegalArgumentException("Expected " + count + " flows for " + source + " but were " + flows.length);
+		}
+		this.flows.put(source, flows);
+		flowsSet.remove(source);
+	}
+
+	/**
+	 * Defines the flow of a source in a scenario; in the scenarios
+	 * without a flow, the source keeps its compiled flow
+	 *
+	 * @param source name of the source
+	 * @param scenario index of the scenario
+	 * @param flow flow of the source in the scenario
+	 */
+	public void setFlow(String source, int scenario, double flow) {
+		if (!flows.containsKey(source)) {
+			flowsSet.put(source, new BitSet(count));
+		}
+		flows.computeIfAbsent(source, s -> new double[count])[scenario] = flow;
+		BitSet set = flowsSet.get(source);
+		if (set != null) set.set(scenario);
+	}
+
+	/**
+	 * Defines whether a tap is open in each scenario
+	 *
+	 * @param tap name of the tap
+	 * @param open status of the tap in each scenario
+	 */
+	public void setOpen(String tap, boolean... open) {
+		if (open.length != count) {
+			throw new IllegalArgumentException("Expected " + count + " states for " + tap + " but were " + open.length);
+		}
+		this.open.put(tap, open);
+		openSet.remove(tap);
+	}
+
+	/**
+	 * Defines whether a tap is open in a scenario; in the scenarios
+	 * without a status, the tap keeps its compiled status
+	 *
+	 * @param tap name of the tap
+	 * @param scenario index of the scenario
+	 * @param open status of the tap in the scenario
+	 */
+	public void setOpen(String tap, int scenario, boolean open) {
+		if (!this.open.containsKey(tap)) {
+			openSet.put(tap, new BitSet(count));
+		}
+		this.open.computeIfAbsent(tap, t -> new boolean[count])[scenario] = open;
+		BitSet set = openSet.get(tap);
+		if (set != null) set.set(scenario);
+	}
+
+	double[] flows(String source) {
+		return flows.get(source);
+	}
+
+	boolean[] open(String tap) {
+		return open.get(tap);
+	}
+
+	/**
+	 * @return the scenarios with a flow for the source,
+	 * 			{@code null} if all of them have one
+	 */
+	BitSet flowsSet(String source) {
+		return flowsSet.get(source);
+	}
+
+	/**
+	 * @return the scenarios with a status for the tap,
+	 * 			{@code null} if all of them have one
+	 */
+	BitSet openSet(String tap) {
+		return openSet.get(tap);
+	}
+
+	Set<String> sources() {
+		return flows.keySet();
+	}
+
+	Set<String> taps() {
+		return open.keySet();
+	}
+}
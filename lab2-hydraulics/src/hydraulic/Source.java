@@ -25,6 +25,7 @@ public class Source extends Element {
 	 */
 	public void setFlow(double flow){
 		this.Flow = flow;
+		changed();
 	}
 	@Override
 	public void setMaxFlow(double maxFlow) {
@@ -28,6 +28,7 @@ public class Split extends Element {
 	@Override
 	public void connect(Element elem, int index) {
 		// connect the first output to the given element
+		linkOutput(outputs[index], elem, index);
 		this.outputs[index] = elem;
 		
 
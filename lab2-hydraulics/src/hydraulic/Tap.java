@@ -29,6 +29,7 @@ public class Tap extends Element {
 	 */
 	public void setOpen(boolean open){
 		gate = open;
+		changed();
 	}
 	public boolean isOpen() {
 		return gate;
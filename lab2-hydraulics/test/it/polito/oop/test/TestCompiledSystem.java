@@ -0,0 +1,230 @@
+package it.polito.oop.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import hydraulic.*;
+
+public class TestCompiledSystem {
+
+	/**
+	 * Records every notification, in order
+	 */
+	private static class RecordingObserver implements SimulationObserver {
+		final List<String> events = new ArrayList<>();
+
+		@Override
+		public void notify(Level level, String type, String name, double inFlow, double... flows) {
+			events.add(level + " " + type + " " + name + " " + inFlow + " " + Arrays.toString(flows));
+		}
+	}
+
+	/**
+	 * Counts the notifications
+	 */
+	private static class CountingObserver implements SimulationObserver {
+		long count;
+		double total;
+
+		@Override
+		public void notify(Level level, String type, String name, double inFlow, double... flows) {
+			count++;
+			if (inFlow == inFlow) total += inFlow;
+		}
+	}
+
+	private static void assertSameNotifications(HSystem s, boolean enableMaxFlowCheck) {
+		RecordingObserver expected = new RecordingObserver();
+		RecordingObserver actual = new RecordingObserver();
+
+		s.simulate(expected, enableMaxFlowCheck);
+		s.compile().simulate(actual, enableMaxFlowCheck);
+
+		assertEquals("Compiled simulation notifies differently", expected.events, actual.events);
+	}
+
+	private static HSystem example() {
+		return HSystem.build()
+				.addSource("Src").withFlow(20)
+				.linkToTap("R").open().maxFlow(15)
+				.linkToMultisplit("MS", 3).withPropotions(new double[] {.25, .35, .40}).maxFlow(30)
+				.withOutputs()
+					.linkToSplit("T").maxFlow(2)
+					.withOutputs()
+						.linkToSink("sink A").maxFlow(1)
+					.then()
+						.linkToTap("closed").closed()
+						.linkToSink("sink B")
+					.done()
+				.then()
+					.linkToSink("sink C").maxFlow(10)
+				.then()
+					.linkToSink("sink D")
+				.done()
+				.complete();
+	}
+
+	@Test
+	public void testSameNotifications(){
+		HSystem s = example();
+
+		assertSameNotifications(s, false);
+		assertSameNotifications(s, true);
+		assertEquals("Wrong number of instructions", s.size(), s.compile().size());
+	}
+
+	@Test
+	public void testSeveralSources(){
+		HSystem s = example();
+		Source src = new Source("Src 2");
+		Split t = new Split("T 2");
+		Sink sink = new Sink("Sink 2");
+		s.addElement(sink);
+		s.addElement(src);
+		s.addElement(t);
+		src.setFlow(3);
+		src.connect(t);
+		t.connect(sink, 1);	// first output left unconnected
+
+		assertSameNotifications(s, true);
+	}
+
+	@Test
+	public void testSharedElement(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Split t = new Split("T");
+		Tap tap = new Tap("Tap");
+		Sink sink = new Sink("Sink");
+		s.addElement(src);
+		s.addElement(t);
+		s.addElement(tap);
+		s.addElement(sink);
+		src.setFlow(8);
+		tap.setOpen(true);
+		src.connect(t);
+		t.connect(tap, 0);
+		t.connect(tap, 1);	// the tap is reached twice
+		tap.connect(sink);
+
+		assertSameNotifications(s, false);
+		assertEquals("Shared element should be simulated once per path", 6, s.compile().size());
+	}
+
+	@Test
+	public void testSnapshot(){
+		HSystem s = example();
+		CompiledSystem program = s.compile();
+		((Source) s.getElement("Src")).setFlow(40);
+
+		StoreObserver obs = new StoreObserver();
+		program.simulate(obs);
+
+		assertEquals("Program should keep the flows at compile time", 20, obs.outFlowOf("Src"), 0.001);
+	}
+
+	@Test
+	public void testDeepChain(){
+		final int n = 200_000;
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(5);
+		s.addElement(src);
+		Element last = src;
+		for (int i = 0; i < n; i++) {
+			Tap tap = new Tap("Tap " + i);
+			tap.setOpen(true);
+			s.addElement(tap);
+			last.connect(tap);
+			last = tap;
+		}
+		Sink sink = new Sink("Sink");
+		s.addElement(sink);
+		last.connect(sink);
+
+		StoreObserver obs = new StoreObserver();
+		s.compile().simulate(obs);
+
+		assertEquals("Wrong flow at the end of the chain", 5, obs.inFlowOf("Sink"), 0.001);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testLoop(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Tap a = new Tap("A");
+		Tap b = new Tap("B");
+		s.addElement(src);
+		s.addElement(a);
+		s.addElement(b);
+		src.connect(a);
+		a.connect(b);
+		b.connect(a);
+
+		s.compile();
+	}
+
+	/**
+	 * Builds a binary tree of taps and splits, with sinks as leaves:
+	 * 2^(depth + 2) - 2 elements below the source
+	 */
+	private static Element tree(HSystem s, int depth, int[] counter) {
+		Tap tap = new Tap("Tap " + counter[0]++);
+		tap.setOpen(counter[0] % 7 != 0);
+		tap.setMaxFlow(1);
+		s.addElement(tap);
+		if (depth == 0) {
+			Sink sink = new Sink("Sink " + counter[0]++);
+			s.addElement(sink);
+			tap.connect(sink);
+		} else {
+			Split t = new Split("T " + counter[0]++);
+			s.addElement(t);
+			tap.connect(t);
+			t.connect(tree(s, depth - 1, counter), 0);
+			t.connect(tree(s, depth - 1, counter), 1);
+		}
+		return tap;
+	}
+
+	@Test
+	public void benchmarkSimulate(){
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(1e6);
+		s.addElement(src);
+		src.connect(tree(s, 18, new int[1]));
+
+		long start = System.nanoTime();
+		CompiledSystem program = s.compile();
+		long compiled = System.nanoTime() - start;
+
+		long bestRecursive = Long.MAX_VALUE;
+		long bestCompiled = Long.MAX_VALUE;
+		CountingObserver recursive = null;
+		CountingObserver flat = null;
+		for (int round = 0; round < 10; round++) {
+			recursive = new CountingObserver();
+			start = System.nanoTime();
+			s.simulate(recursive, true);
+			bestRecursive = Math.min(bestRecursive, System.nanoTime() - start);
+
+			flat = new CountingObserver();
+			start = System.nanoTime();
+			program.simulate(flat, true);
+			bestCompiled = Math.min(bestCompiled, System.nanoTime() - start);
+		}
+
+		System.out.printf("%d elements: compile %d ms, recursive %d ms, compiled %d ms%n",
+							s.size(), compiled / 1_000_000, bestRecursive / 1_000_000, bestCompiled / 1_000_000);
+		assertEquals(recursive.count, flat.count);
+		assertEquals(recursive.total, flat.total, 0.0);
+	}
+}
@@ -0,0 +1,244 @@
+package it.polito.oop.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hydraulic.*;
+
+public class TestIncrementalSimulation {
+
+	/**
+	 * Records the names of the notified elements, in order,
+	 * and keeps the last notification of each element
+	 */
+	private static class DeltaObserver implements SimulationObserver {
+		final StoreObserver state = new StoreObserver();
+		final List<String> names = new ArrayList<>();
+
+		@Override
+		public void notify(Level level, String type, String name, double inFlow, double... flows) {
+			state.notify(level, type, name, inFlow, flows);
+			if (level == Level.STATUS) names.add(name);
+		}
+	}
+
+	private static HSystem example() {
+		return HSystem.build()
+				.addSource("Src").withFlow(20)
+				.linkToTap("R").open()
+				.linkToMultisplit("MS", 3).withPropotions(new double[] {.25, .35, .40})
+				.withOutputs()
+					.linkToSplit("T")
+					.withOutputs()
+						.linkToSink("sink A")
+					.then()
+						.linkToTap("V").closed()
+						.linkToSink("sink B")
+					.done()
+				.then()
+					.linkToSink("sink C").maxFlow(7)
+				.then()
+					.linkToSink("sink D")
+				.done()
+				.complete();
+	}
+
+	/**
+	 * Checks the flows notified so far against a full simulation
+	 */
+	private static void assertUpToDate(HSystem s, DeltaObserver delta) {
+		StoreObserver full = new StoreObserver();
+		s.simulate(full);
+		for (Element e : s.getElements()) {
+			String name = e.getName();
+			assertEquals("Wrong input flow of " + name, full.inFlowOf(name), delta.state.inFlowOf(name), 0.0);
+			assertArrayEquals("Wrong output flows of " + name, full.outFlowsOf(name), delta.state.outFlowsOf(name), 0.0);
+		}
+	}
+
+	@Test
+	public void testInitialSimulation(){
+		HSystem s = example();
+		DeltaObserver obs = new DeltaObserver();
+
+		IncrementalSimulation sim = s.simulateIncrementally(obs, false);
+
+		assertEquals("All elements should be notified", s.size(), obs.names.size());
+		assertFalse("Nothing changed yet", sim.isChanged());
+		assertEquals("Nothing to update", 0, sim.update());
+		assertUpToDate(s, obs);
+	}
+
+	@Test
+	public void testToggleTap(){
+		HSystem s = example();
+		DeltaObserver obs = new DeltaObserver();
+		IncrementalSimulation sim = s.simulateIncrementally(obs, false);
+		obs.names.clear();
+
+		((Tap) s.getElement("V")).setOpen(true);
+		assertTrue("Change not recorded", sim.isChanged());
+		int n = sim.update();
+
+		assertEquals("Only the tap and its sink should be notified", List.of("V", "sink B"), obs.names);
+		assertEquals(2, n);
+		assertUpToDate(s, obs);
+	}
+
+	@Test
+	public void testUnchangedFlows(){
+		HSystem s = example();
+		DeltaObserver obs = new DeltaObserver();
+		IncrementalSimulation sim = s.simulateIncrementally(obs, false);
+		obs.names.clear();
+
+		((Tap) s.getElement("R")).setOpen(true);	// already open
+
+		assertEquals("No flow changed", 0, sim.update());
+		assertTrue("No notification expected", obs.names.isEmpty());
+	}
+
+	@Test
+	public void testProportions(){
+		HSystem s = example();
+		DeltaObserver obs = new DeltaObserver();
+		IncrementalSimulation sim = s.simulateIncrementally(obs, true);
+		obs.names.clear();
+
+		((Multisplit) s.getElement("MS")).setProportions(.25, .45, .30);
+		sim.update();
+
+		assertEquals("Only the changed outputs should be followed", List.of("MS", "sink C", "sink D"), obs.names);
+		assertTrue("Max flow error expected", obs.state.containsError("sink C"));
+		assertUpToDate(s, obs);
+	}
+
+	@Test
+	public void testClose(){
+		HSystem s = example();
+		DeltaObserver obs = new DeltaObserver();
+		IncrementalSimulation sim;
+		try (IncrementalSimulation open = s.simulateIncrementally(obs, false)) {
+			sim = open;
+		}
+		((Source) s.getElement("Src")).setFlow(40);
+
+		assertFalse("Closed simulation should ignore changes", sim.isChanged());
+		assertEquals(0, sim.update());
+	}
+
+	@Test
+	public void testMissingProportions(){
+		HSystem s = example();
+		DeltaObserver obs = new DeltaObserver();
+		try (IncrementalSimulation sim = s.simulateIncrementally(obs, false)) {
+			Multisplit ms = (Multisplit) s.getElement("MS");
+			ms.setProportions(.5, .5);
+			try {
+				sim.update();
+				fail("Missing proportion not detected");
+			} catch (IllegalStateException e) {
+				assertTrue("Change should be kept", sim.isChanged());
+			}
+			ms.setProportions(.25, .45, .30);
+			sim.update();
+			assertFalse(sim.isChanged());
+			assertUpToDate(s, obs);
+		}
+	}
+
+	private static Element tree(HSystem s, int depth, int[] counter, List<Tap> taps) {
+		Tap tap = new Tap("Tap " + counter[0]++);
+		tap.setOpen(true);
+		s.addElement(tap);
+		taps.add(tap);
+		if (depth == 0) {
+			Sink sink = new Sink("Sink " + counter[0]++);
+			s.addElement(sink);
+			tap.connect(sink);
+		} else {
+			Split t = new Split("T " + counter[0]++);
+			s.addElement(t);
+			tap.connect(t);
+			t.connect(tree(s, depth - 1, counter, taps), 0);
+			t.connect(tree(s, depth - 1, counter, taps), 1);
+		}
+		return tap;
+	}
+
+	@Test
+	public void testRandomChanges(){
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(64);
+		s.addElement(src);
+		List<Tap> taps = new ArrayList<>();
+		src.connect(tree(s, 6, new int[1], taps));
+		DeltaObserver obs = new DeltaObserver();
+		IncrementalSimulation sim = s.simulateIncrementally(obs, false);
+		Random random = new Random(3);
+
+		for (int round = 0; round < 50; round++) {
+			for (int k = random.nextInt(4); k >= 0; k--) {
+				taps.get(random.nextInt(taps.size())).setOpen(random.nextBoolean());
+			}
+			if (random.nextInt(5) == 0) {
+				src.setFlow(random.nextInt(100));
+			}
+			sim.update();
+			assertUpToDate(s, obs);
+		}
+	}
+
+	/**
+	 * Counts the notifications
+	 */
+	private static class CountingObserver implements SimulationObserver {
+		long count;
+
+		@Override
+		public void notify(Level level, String type, String name, double inFlow, double... flows) {
+			count++;
+		}
+	}
+
+	@Test
+	public void benchmarkUpdate(){
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(1e6);
+		s.addElement(src);
+		List<Tap> taps = new ArrayList<>();
+		src.connect(tree(s, 18, new int[1], taps));
+		CountingObserver obs = new CountingObserver();
+		IncrementalSimulation sim = s.simulateIncrementally(obs, false);
+		Random random = new Random(11);
+
+		final int rounds = 1000;
+		long notified = 0;
+		long start = System.nanoTime();
+		for (int round = 0; round < rounds; round++) {
+			Tap tap = taps.get(random.nextInt(taps.size()));
+			tap.setOpen(!tap.isOpen());
+			notified += sim.update();
+		}
+		long incremental = (System.nanoTime() - start) / rounds;
+
+		long full = Long.MAX_VALUE;
+		for (int round = 0; round < 5; round++) {
+			start = System.nanoTime();
+			s.simulate(new CountingObserver());
+			full = Math.min(full, System.nanoTime() - start);
+		}
+		System.out.printf("%d elements: full simulation %.1f ms, incremental update %.1f us (%d elements notified on average)%n",
+							s.size(), full / 1e6, incremental / 1e3, notified / rounds);
+		sim.close();
+	}
+}
@@ -0,0 +1,166 @@
+package it.polito.oop.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import static it.polito.oop.test.OOPAssertions.*;
+
+import org.junit.Test;
+
+import hydraulic.*;
+
+public class TestLargeSystem {
+
+	/**
+	 * Builds a chain source, tap 1, ..., tap n, sink
+	 */
+	private static HSystem chain(int taps) {
+		HSystem s = new HSystem();
+		Element last = new Source("Src");
+		s.addElement(last);
+		for (int i = 1; i <= taps; i++) {
+			Tap tap = new Tap("Tap " + i);
+			s.addElement(tap);
+			last.connect(tap);
+			last = tap;
+		}
+		Sink sink = new Sink("Sink");
+		s.addElement(sink);
+		last.connect(sink);
+		return s;
+	}
+
+	@Test
+	public void testMoreThanHundredElements(){
+		HSystem s = chain(1000);
+
+		assertEquals("Wrong number of elements", 1002, s.size());
+		Element[] elements = s.getElements();
+		assertEquals("Wrong number of elements", 1002, elements.length);
+		assertEquals("Elements not in insertion order", "Src", elements[0].getName());
+		assertEquals("Elements not in insertion order", "Tap 500", elements[500].getName());
+		assertEquals("Elements not in insertion order", "Sink", elements[1001].getName());
+	}
+
+	@Test
+	public void testGetElement(){
+		HSystem s = chain(10);
+
+		assertEquals("Wrong element", "Tap 7", s.getElement("Tap 7").getName());
+		assertNull("Unknown element should not be found", s.getElement("Tap 11"));
+
+		assertTrue("Operation not performed", s.deleteElement("Tap 7"));
+		assertNull("Deleted element should not be found", s.getElement("Tap 7"));
+		assertNotNull("Element missing after delete", s.getElement("Tap 8"));
+		assertFalse("Deleted element cannot be deleted twice", s.deleteElement("Tap 7"));
+	}
+
+	@Test
+	public void testDuplicateNames(){
+		HSystem s = new HSystem();
+		Sink[] sinks = new Sink[40];
+		for (int i = 0; i < sinks.length; i++) {
+			sinks[i] = new Sink(i % 4 == 0 ? "Drain" : "Sink " + i);
+			s.addElement(sinks[i]);
+		}
+		for (int i = 1; i < 30; i++) {
+			if (i % 4 != 0) {
+				// once half of the slots are free the elements are compacted
+				assertTrue("Operation not performed", s.deleteElement("Sink " + i));
+			}
+		}
+		assertEquals("Wrong number of elements after delete", 18, s.size());
+
+		for (int i = 0; i < sinks.length; i += 4) {
+			assertSameElement("First element with the name expected", sinks[i], s.getElement("Drain"));
+			assertTrue("Operation not performed", s.deleteElement("Drain"));
+		}
+		assertNull("All the elements with the name deleted", s.getElement("Drain"));
+		assertFalse(s.deleteElement("Drain"));
+		assertSameElement("Element not found after compaction", sinks[39], s.getElement("Sink 39"));
+	}
+
+	@Test
+	public void testInputLinks(){
+		Source src = new Source("Src");
+		Split t = new Split("T");
+		Sink sink1 = new Sink("Sink 1");
+		Sink sink2 = new Sink("Sink 2");
+		src.connect(t);
+		t.connect(sink1, 0);
+		t.connect(sink2, 1);
+
+		assertSameElement("Wrong upstream element", src, t.getInput());
+		assertSameElement("Wrong upstream element", t, sink2.getInput());
+		assertNull("Source has no upstream element", src.getInput());
+
+		t.connect(sink1, 1);
+		assertNull("Replaced element should be disconnected", sink2.getInput());
+		assertSameElement("Wrong upstream element", t, sink1.getInput());
+	}
+
+	@Test
+	public void testDeleteKeepsOrder(){
+		HSystem s = chain(100);
+
+		for (int i = 1; i <= 100; i += 2) {
+			assertTrue("Operation not performed", s.deleteElement("Tap " + i));
+		}
+		for (int i = 2; i <= 80; i += 2) {
+			assertTrue("Operation not performed", s.deleteElement("Tap " + i));
+		}
+
+		Element[] elements = s.getElements();
+		assertEquals("Wrong number of elements after delete", 12, s.size());
+		assertEquals("Wrong number of elements after delete", 12, elements.length);
+		assertEquals("Elements not in insertion order", "Src", elements[0].getName());
+		assertEquals("Elements not in insertion order", "Tap 82", elements[1].getName());
+		assertEquals("Elements not in insertion order", "Sink", elements[11].getName());
+		assertSameElement("Output not fixed after delete", elements[1], elements[0].getOutput());
+		assertSameElement("Element not found after delete", elements[5], s.getElement("Tap 90"));
+
+		s.addElement(new Sink("Other"));
+		assertEquals("Element not added at the end", "Other", s.getElements()[12].getName());
+	}
+
+	@Test
+	public void testSimulateAfterDeletes(){
+		HSystem s = chain(300);
+		((Source) s.getElement("Src")).setFlow(20);
+		for (Element e : s.getElements()) {
+			if (e instanceof Tap) ((Tap) e).setOpen(true);
+		}
+		for (int i = 1; i < 300; i++) {
+			s.deleteElement("Tap " + i);
+		}
+		StoreObserver obs = new StoreObserver();
+
+		s.simulate(obs);
+
+		assertTrue("Missing notification for remaining tap", obs.contains("Tap 300"));
+		assertFalse("Notification for deleted tap", obs.contains("Tap 1"));
+		assertEquals("Wrong flow at sink", 20, obs.inFlowOf("Sink"), 0.001);
+	}
+
+	@Test
+	public void benchmarkDelete(){
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int n = 500_000;
+
+		long start = System.nanoTime();
+		HSystem s = chain(n);
+		long built = System.nanoTime();
+		for (int i = 1; i <= n; i += 2) {
+			assertNotNull(s.getElement("Tap " + i));
+		}
+		long looked = System.nanoTime();
+		for (int i = 1; i <= n; i += 2) {
+			assertTrue(s.deleteElement("Tap " + i));
+		}
+		long deleted = System.nanoTime();
+
+		System.out.printf("%d elements: add %.0f ns, lookup %.0f ns, delete %.0f ns per element%n",
+							n + 2, (built - start) / (double) (n + 2),
+							(looked - built) / (n / 2.0), (deleted - looked) / (n / 2.0));
+		assertEquals(n / 2 + 2, s.size());
+	}
+}
@@ -0,0 +1,192 @@
+package it.polito.oop.test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hydraulic.*;
+
+public class TestScenarios {
+
+	private static HSystem example() {
+		return HSystem.build()
+				.addSource("Src").withFlow(20)
+				.linkToTap("R").open()
+				.linkToMultisplit("MS", 3).withPropotions(new double[] {.25, .35, .40})
+				.withOutputs()
+					.linkToSplit("T")
+					.withOutputs()
+						.linkToSink("sink A")
+					.then()
+						.linkToTap("V").closed()
+						.linkToSink("sink B")
+					.done()
+				.then()
+					.linkToSink("sink C")
+				.then()
+					.linkToSink("sink D")
+				.done()
+				.complete();
+	}
+
+	@Test
+	public void testSameAsSimulate(){
+		HSystem s = example();
+		CompiledSystem program = s.compile();
+		double[] flows = {20, 0, 7.5, 100};
+		boolean[] r = {true, false, true, true};
+		boolean[] v = {false, true, true, false};
+		Scenarios scenarios = new Scenarios(4);
+		scenarios.setFlows("Src", flows);
+		scenarios.setOpen("R", r);
+		scenarios.setOpen("V", v);
+
+		ScenarioResults results = program.simulate(scenarios);
+
+		assertEquals("Wrong number of scenarios", 4, results.size());
+		for (int j = 0; j < 4; j++) {
+			((Source) s.getElement("Src")).setFlow(flows[j]);
+			((Tap) s.getElement("R")).setOpen(r[j]);
+			((Tap) s.getElement("V")).setOpen(v[j]);
+			StoreObserver obs = new StoreObserver();
+			s.simulate(obs);
+			for (Element e : s.getElements()) {
+				String name = e.getName();
+				assertEquals("Wrong input flow of " + name + " in scenario " + j,
+								obs.inFlowOf(name), results.getInFlows(name)[j], 0.0);
+				double[] out = obs.outFlowsOf(name);
+				for (int k = 0; k < out.length; k++) {
+					assertEquals("Wrong output flow of " + name + " in scenario " + j,
+									out[k], results.getOutFlows(name, k)[j], 0.0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDefaults(){
+		Scenarios scenarios = new Scenarios(3);
+		scenarios.setFlow("Src", 1, 40);
+		scenarios.setOpen("R", 2, false);
+
+		ScenarioResults results = example().compile().simulate(scenarios);
+
+		assertArrayEquals("Unset flows should be the compiled ones", new double[] {20, 40, 20}, results.getOutFlows("Src"), 0.0);
+		assertArrayEquals("Unset states should be the compiled ones", new double[] {20, 40, 0}, results.getOutFlows("R"), 0.0);
+		assertArrayEquals("Taps without states keep their status", new double[] {0, 0, 0}, results.getOutFlows("V"), 0.0);
+		assertArrayEquals("Wrong flows", new double[] {5, 10, 0}, results.getInFlows("T"), 0.0);
+		assertTrue("Source has no input flow", Double.isNaN(results.getInFlows("Src")[1]));
+		assertTrue("Sink has no output flow", Double.isNaN(results.getOutFlows("sink A")[1]));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownTap(){
+		Scenarios scenarios = new Scenarios(2);
+		scenarios.setOpen("Src", true, false);
+
+		example().compile().simulate(scenarios);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongLength(){
+		new Scenarios(2).setFlows("Src", 1, 2, 3);
+	}
+
+	private static Element tree(HSystem s, int depth, int[] counter) {
+		Tap tap = new Tap("Tap " + counter[0]++);
+		tap.setOpen(true);
+		s.addElement(tap);
+		if (depth == 0) {
+			Sink sink = new Sink("Sink " + counter[0]++);
+			s.addElement(sink);
+			tap.connect(sink);
+		} else {
+			Multisplit ms = new Multisplit("MS " + counter[0]++, 2);
+			ms.setProportions(.3, .7);
+			s.addElement(ms);
+			tap.connect(ms);
+			ms.connect(tree(s, depth - 1, counter), 0);
+			ms.connect(tree(s, depth - 1, counter), 1);
+		}
+		return tap;
+	}
+
+	/**
+	 * Sums the input flows of the sinks
+	 */
+	private static class SinkObserver implements SimulationObserver {
+		double total;
+
+		@Override
+		public void notify(Level level, String type, String name, double inFlow, double... flows) {
+			if (level == Level.STATUS && type.equals("Sink")) total += inFlow;
+		}
+	}
+
+	@Test
+	public void benchmarkScenarios(){
+		assumeTrue("Run with -Dbenchmark=true", Boolean.getBoolean("benchmark"));
+		final int n = 1000;
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		s.addElement(src);
+		src.connect(tree(s, 13, new int[1]));
+		Random random = new Random(7);
+		Scenarios scenarios = new Scenarios(n);
+		double[] flows = new double[n];
+		for (int j = 0; j < n; j++) {
+			flows[j] = random.nextInt(1000);
+		}
+		scenarios.setFlows("Src", flows);
+		List<Tap> taps = new ArrayList<>();
+		for (Element e : s.getElements()) {
+			if (e instanceof Tap) taps.add((Tap) e);
+		}
+		Tap[] toggled = new Tap[20];
+		boolean[][] open = new boolean[toggled.length][n];
+		for (int t = 0; t < toggled.length; t++) {
+			toggled[t] = taps.get(t * taps.size() / toggled.length);
+			for (int j = 0; j < n; j++) {
+				open[t][j] = random.nextInt(4) != 0;
+			}
+			scenarios.setOpen(toggled[t].getName(), open[t]);
+		}
+		CompiledSystem program = s.compile();
+
+		long bestBatch = Long.MAX_VALUE;
+		long bestOneByOne = Long.MAX_VALUE;
+		ScenarioResults results = null;
+		SinkObserver obs = null;
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			results = program.simulate(scenarios);
+			bestBatch = Math.min(bestBatch, System.nanoTime() - start);
+
+			obs = new SinkObserver();
+			start = System.nanoTime();
+			for (int j = 0; j < n; j++) {
+				src.setFlow(flows[j]);
+				for (int t = 0; t < toggled.length; t++) {
+					toggled[t].setOpen(open[t][j]);
+				}
+				s.simulate(obs);
+			}
+			bestOneByOne = Math.min(bestOneByOne, System.nanoTime() - start);
+		}
+
+		double total = 0;
+		for (Element e : s.getElements()) {
+			if (e instanceof Sink) {
+				for (double f : results.getInFlows(e.getName())) total += f;
+			}
+		}
+		System.out.printf("%d elements, %d scenarios: batch %d ms, one by one %d ms%n",
+							s.size(), n, bestBatch / 1_000_000, bestOneByOne / 1_000_000);
+		assertEquals(obs.total, total, 1e-6 * total);
+	}
+}